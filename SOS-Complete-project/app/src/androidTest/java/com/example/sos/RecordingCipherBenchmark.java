@@ -0,0 +1,107 @@
+package com.example.sos;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * Throughput of the chunked recording encryption with the real Keystore key, compared with what the
+ * recorder actually produces (AMR-NB at 12.2 kbit/s, about 1.5 KB/s). Results are logged under
+ * "RecordingCipherBenchmark" so they can be compared across devices.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RecordingCipherBenchmark {
+
+    private static final String TAG = "RecordingCipherBenchmark";
+    private static final int PAYLOAD_BYTES = 8 * 1024 * 1024;
+    private static final double AMR_NB_BYTES_PER_SECOND = 12200 / 8.0;
+    // The encoder must never wait on us: demand at least 100x its output rate
+    private static final double REQUIRED_HEADROOM = 100;
+
+    @Test
+    public void encryptAndDecryptThroughput() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SecretKey key = RecordingCrypto.getOrCreateKey();
+        File file = new File(context.getCacheDir(), "benchmark.amr" + RecordingCrypto.ENCRYPTED_SUFFIX);
+
+        byte[] block = new byte[4096]; // Same write size as EncryptedRecordingSink's pump
+        new Random(42).nextBytes(block);
+
+        long start = System.nanoTime();
+        try (EncryptingOutputStream out = new EncryptingOutputStream(new FileOutputStream(file), key)) {
+            for (int written = 0; written < PAYLOAD_BYTES; written += block.length) {
+                out.write(block, 0, block.length);
+            }
+        }
+        double encryptSeconds = (System.nanoTime() - start) / 1e9;
+
+        byte[] readBuffer = new byte[block.length];
+        start = System.nanoTime();
+        long position = 0;
+        try (EncryptedFileReader reader = new EncryptedFileReader(file, key)) {
+            assertEquals(PAYLOAD_BYTES, reader.getPlainSize());
+            int n;
+            while ((n = reader.read(position, readBuffer, 0, readBuffer.length)) > 0) {
+                position += n;
+            }
+            assertFalse(reader.isTruncated());
+        }
+        double decryptSeconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(PAYLOAD_BYTES, position);
+
+        double encryptRate = PAYLOAD_BYTES / encryptSeconds;
+        double decryptRate = PAYLOAD_BYTES / decryptSeconds;
+        double overhead = (file.length() - PAYLOAD_BYTES) * 100.0 / PAYLOAD_BYTES;
+        Log.i(TAG, String.format("encrypt %.1f MB/s (%.0fx AMR-NB), decrypt %.1f MB/s, size overhead %.2f%%",
+                encryptRate / 1e6, encryptRate / AMR_NB_BYTES_PER_SECOND, decryptRate / 1e6, overhead));
+        assertTrue(file.delete());
+
+        assertTrue("Encryption slower than " + REQUIRED_HEADROOM + "x the encoder rate",
+                encryptRate > AMR_NB_BYTES_PER_SECOND * REQUIRED_HEADROOM);
+        assertTrue("Decryption slower than " + REQUIRED_HEADROOM + "x the encoder rate",
+                decryptRate > AMR_NB_BYTES_PER_SECOND * REQUIRED_HEADROOM);
+    }
+
+    @Test
+    public void randomAccessReadsMatchPlaintext() throws IOException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        SecretKey key = RecordingCrypto.getOrCreateKey();
+        File file = new File(context.getCacheDir(), "seek.amr" + RecordingCrypto.ENCRYPTED_SUFFIX);
+
+        // Not a multiple of the chunk size, so the short final chunk is covered too
+        byte[] plain = new byte[RecordingCrypto.CHUNK_SIZE * 3 + 123];
+        new Random(7).nextBytes(plain);
+        try (EncryptingOutputStream out = new EncryptingOutputStream(new FileOutputStream(file), key)) {
+            out.write(plain, 0, plain.length);
+        }
+
+        try (EncryptedFileReader reader = new EncryptedFileReader(file, key)) {
+            long[] positions = {0, RecordingCrypto.CHUNK_SIZE - 10, RecordingCrypto.CHUNK_SIZE * 2 + 5, plain.length - 50};
+            byte[] buffer = new byte[100];
+            for (long position : positions) {
+                int n = reader.read(position, buffer, 0, buffer.length);
+                int expected = (int) Math.min(buffer.length, plain.length - position);
+                assertEquals(expected, n);
+                for (int i = 0; i < n; i++) {
+                    assertEquals(plain[(int) position + i], buffer[i]);
+                }
+            }
+            assertEquals(-1, reader.read(plain.length, buffer, 0, buffer.length));
+        }
+        assertTrue(file.delete());
+    }
+}
@@ -0,0 +1,74 @@
+// AlertExecutor.java
+package com.example.sos;
+
+import android.content.Context;
+import android.os.PowerManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.Locale;
+
+// Keeps the CPU awake for the parts of an alert that wait on something (a location fix, SMS
+// confirmations, the recording timer), so Doze can't put them off until the next maintenance window.
+// Each stage gets its own partial wakelock with a hard timeout, is released as soon as the stage ends,
+// and its held time is written to the incident log.
+public class AlertExecutor {
+
+    private static final String TAG = "AlertExecutor";
+
+    private final PowerManager powerManager;
+    private final IncidentLog incidentLog;
+    private long totalHeldMs = 0;  // Guarded by this
+    private int expiredStages = 0; // Stages that ran into their timeout instead of ending; guarded by this
+
+    public AlertExecutor(Context context, IncidentLog incidentLog) {
+        this.powerManager = (PowerManager) context.getApplicationContext().getSystemService(Context.POWER_SERVICE);
+        this.incidentLog = incidentLog;
+    }
+
+    // Starts a stage; the lock goes by itself after maxMs even if end() is never called
+    public Stage begin(String name, long maxMs) {
+        return new Stage(name, maxMs);
+    }
+
+    public synchronized String summary() {
+        return String.format(Locale.US, "Wakelocks held %d ms in total, %d stage(s) hit their timeout", totalHeldMs, expiredStages);
+    }
+
+    private synchronized void account(long heldMs, boolean expired) {
+        totalHeldMs += heldMs;
+        if (expired) expiredStages++;
+    }
+
+    public final class Stage {
+        private final String name;
+        private final long maxMs;
+        private final long startedAt = SystemClock.elapsedRealtime();
+        private final PowerManager.WakeLock wakeLock;
+        private boolean ended = false;
+
+        private Stage(String name, long maxMs) {
+            this.name = name;
+            this.maxMs = maxMs;
+            wakeLock = powerManager != null ? powerManager.newWakeLock(PowerManager.PARTIAL_WAKE_LOCK, "sos:alert-" + name) : null;
+            if (wakeLock != null) {
+                wakeLock.setReferenceCounted(false);
+                wakeLock.acquire(maxMs);
+            }
+        }
+
+        // Safe to call more than once and from any thread
+        public synchronized void end() {
+            if (ended) return;
+            ended = true;
+            long heldMs = SystemClock.elapsedRealtime() - startedAt;
+            boolean expired = heldMs >= maxMs;
+            if (wakeLock != null && wakeLock.isHeld()) wakeLock.release();
+            heldMs = Math.min(heldMs, maxMs);
+            account(heldMs, expired);
+            String message = "Wakelock for " + name + " held " + heldMs + " ms" + (expired ? " (timed out)" : "");
+            Log.d(TAG, message);
+            incidentLog.logEvent(message);
+        }
+    }
+}
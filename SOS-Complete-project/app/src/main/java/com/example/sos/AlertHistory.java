@@ -0,0 +1,133 @@
+// AlertHistory.java
+package com.example.sos;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.SQLException;
+import android.location.Location;
+import android.util.Log;
+
+import java.util.List;
+
+// Keeps one row per alert in the alerts table: what triggered it, when each stage happened, where the user
+// was, how the SMS dispatch went and which recording belongs to it.
+// Every write is queued on the database executor and errors are only logged, so recording history can
+// never slow down or break the alert itself.
+public class AlertHistory {
+
+    private static final String TAG = "AlertHistory";
+
+    public static final String STAGE_LOCATION = ContactMigrations.ALERT_LOCATION_AT;
+    public static final String STAGE_FIRST_SMS = ContactMigrations.ALERT_FIRST_SMS_AT;
+    public static final String STAGE_RECORDING_STARTED = ContactMigrations.ALERT_RECORDING_STARTED_AT;
+    public static final String STAGE_RECORDING_ENDED = ContactMigrations.ALERT_RECORDING_ENDED_AT;
+
+    private static AlertHistory instance;
+
+    private final DatabaseHelper db;
+
+    public static synchronized AlertHistory getInstance(Context context) {
+        if (instance == null) {
+            instance = new AlertHistory(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private AlertHistory(DatabaseHelper db) {
+        this.db = db;
+    }
+
+    // Starts the row for a new alert. Returns straight away; the insert happens in the background.
+    public Recorder begin(String sessionId, String source) {
+        Recorder recorder = new Recorder();
+        final long triggeredAt = System.currentTimeMillis();
+        write(() -> recorder.rowId = db.insertAlert(sessionId, source, triggeredAt));
+        return recorder;
+    }
+
+    // One page of history, newest first. Pass the last entry of the previous page (or Long.MAX_VALUE for
+    // both to start at the top); the callback runs on the main thread.
+    public void page(long beforeTriggeredAt, long beforeId, int limit, ContactDao.Callback<List<Entry>> callback) {
+        AppExecutors.database().execute(() -> {
+            List<Entry> entries = db.fetchAlerts(beforeTriggeredAt, beforeId, limit);
+            AppExecutors.mainThread().execute(() -> callback.onResult(entries));
+        });
+    }
+
+    private static void write(Runnable write) {
+        AppExecutors.database().execute(() -> {
+            try {
+                write.run();
+            } catch (SQLException e) {
+                Log.e(TAG, "Could not write alert history.", e);
+            }
+        });
+    }
+
+    // Handle for the alert in progress. Safe to call from any thread; updates are applied in call order
+    // because the database executor is serial, and the row id is only ever touched on that thread.
+    public class Recorder {
+        private long rowId = -1;
+
+        private Recorder() { }
+
+        // Stages only keep the first time they happen
+        public void stage(String stageColumn) {
+            final long at = System.currentTimeMillis();
+            write(() -> {
+                if (rowId > 0) db.markAlertStage(rowId, stageColumn, at);
+            });
+        }
+
+        public void location(Location location) {
+            final long at = System.currentTimeMillis();
+            write(() -> {
+                if (rowId <= 0) return;
+                db.markAlertStage(rowId, STAGE_LOCATION, at);
+                ContentValues values = new ContentValues();
+                values.put(ContactMigrations.ALERT_LATITUDE, location.getLatitude());
+                values.put(ContactMigrations.ALERT_LONGITUDE, location.getLongitude());
+                if (location.hasAccuracy()) values.put(ContactMigrations.ALERT_ACCURACY, location.getAccuracy());
+                db.updateAlert(rowId, values);
+            });
+        }
+
+        public void dispatchOutcome(int sent, int failed, int unconfirmed) {
+            final long at = System.currentTimeMillis();
+            write(() -> {
+                if (rowId > 0) db.addAlertDispatchOutcome(rowId, sent, failed, unconfirmed, at);
+            });
+        }
+
+        public void recording(String fileName) {
+            write(() -> {
+                if (rowId <= 0) return;
+                ContentValues values = new ContentValues();
+                values.put(ContactMigrations.ALERT_RECORDING, fileName);
+                db.updateAlert(rowId, values);
+            });
+        }
+    }
+
+    // One row of history. Stage times are wall-clock ms, or -1 if the stage never happened (or the
+    // entry has been compacted, see AlertRetention)
+    public static class Entry {
+        public long id;
+        public String sessionId;
+        public String source;
+        public long triggeredAt;
+        public long locationAt;
+        public long firstSmsAt;
+        public long dispatchDoneAt;
+        public long recordingStartedAt;
+        public long recordingEndedAt;
+        public boolean hasLocation;
+        public double latitude;
+        public double longitude;
+        public int smsSent;
+        public int smsFailed;
+        public int smsUnconfirmed;
+        public String recording;
+        public boolean compacted;
+    }
+}
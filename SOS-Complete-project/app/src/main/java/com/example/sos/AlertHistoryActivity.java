@@ -0,0 +1,150 @@
+// AlertHistoryActivity.java
+package com.example.sos;
+
+import android.os.Bundle;
+import android.text.format.DateFormat;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.material.appbar.MaterialToolbar;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Past alerts, newest first. Pages are fetched straight from the alerts table on demand (keyset on the
+// time index), so opening the screen costs the same with ten alerts or ten thousand.
+public class AlertHistoryActivity extends AppCompatActivity {
+
+    private static final int PAGE_SIZE = 30;
+    // Start loading the next page when the user is this close to the end of what is shown
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private RecyclerView recyclerView;
+    private TextView noAlertsView;
+    private AlertAdapter adapter;
+    private AlertHistory alertHistory;
+
+    private boolean loading = false;
+    private boolean reachedEnd = false;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_alert_history);
+
+        recyclerView = findViewById(R.id.recyclerViewAlerts);
+        noAlertsView = findViewById(R.id.tvNoAlerts);
+        MaterialToolbar topAppBar = findViewById(R.id.topAppBar);
+        topAppBar.setNavigationOnClickListener(v -> finish());
+
+        alertHistory = AlertHistory.getInstance(this);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        adapter = new AlertAdapter();
+        recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        loadNextPage();
+    }
+
+    private void loadNextPage() {
+        if (loading || reachedEnd) return;
+        loading = true;
+        AlertHistory.Entry last = adapter.getLast();
+        long beforeTime = last == null ? Long.MAX_VALUE : last.triggeredAt;
+        long beforeId = last == null ? Long.MAX_VALUE : last.id;
+        alertHistory.page(beforeTime, beforeId, PAGE_SIZE, page -> {
+            if (isFinishing() || isDestroyed()) return;
+            loading = false;
+            reachedEnd = page.size() < PAGE_SIZE;
+            adapter.append(page);
+            boolean empty = adapter.getItemCount() == 0;
+            noAlertsView.setVisibility(empty ? View.VISIBLE : View.GONE);
+            recyclerView.setVisibility(empty ? View.GONE : View.VISIBLE);
+        });
+    }
+
+    private String describe(AlertHistory.Entry entry) {
+        List<String> parts = new ArrayList<>();
+        int total = entry.smsSent + entry.smsFailed + entry.smsUnconfirmed;
+        if (total == 0) {
+            parts.add("No SMS sent");
+        } else {
+            String sms = entry.smsSent + " of " + total + " SMS sent";
+            if (entry.smsFailed > 0) sms += ", " + entry.smsFailed + " failed";
+            parts.add(sms);
+        }
+        if (entry.firstSmsAt > 0) parts.add("first SMS " + offset(entry, entry.firstSmsAt));
+        if (entry.locationAt > 0) parts.add("location " + offset(entry, entry.locationAt));
+        if (entry.hasLocation) {
+            parts.add(String.format(Locale.US, "%.4f, %.4f", entry.latitude, entry.longitude));
+        }
+        if (entry.recording != null) parts.add(RecordingCrypto.plainName(new File(entry.recording)));
+        return String.join("  •  ", parts);
+    }
+
+    private static String offset(AlertHistory.Entry entry, long atMs) {
+        return String.format(Locale.US, "+%.1f s", (atMs - entry.triggeredAt) / 1000.0);
+    }
+
+    private class AlertAdapter extends RecyclerView.Adapter<AlertAdapter.ViewHolder> {
+        private final List<AlertHistory.Entry> entries = new ArrayList<>();
+
+        AlertHistory.Entry getLast() {
+            return entries.isEmpty() ? null : entries.get(entries.size() - 1);
+        }
+
+        void append(List<AlertHistory.Entry> page) {
+            int start = entries.size();
+            entries.addAll(page);
+            notifyItemRangeInserted(start, page.size());
+        }
+
+        @NonNull
+        @Override
+        public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item_alert, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+            AlertHistory.Entry entry = entries.get(position);
+            String when = DateFormat.getMediumDateFormat(AlertHistoryActivity.this).format(entry.triggeredAt) + ", " +
+                    DateFormat.getTimeFormat(AlertHistoryActivity.this).format(entry.triggeredAt);
+            holder.title.setText(when + "  •  " + (entry.source != null ? entry.source : "Unknown"));
+            holder.details.setText(describe(entry));
+        }
+
+        @Override
+        public int getItemCount() {
+            return entries.size();
+        }
+
+        class ViewHolder extends RecyclerView.ViewHolder {
+            final TextView title;
+            final TextView details;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                title = itemView.findViewById(R.id.tvAlertTitle);
+                details = itemView.findViewById(R.id.tvAlertDetails);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+// AlertHistoryCompactionJob.java
+package com.example.sos;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.database.SQLException;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+// Runs AlertRetention about once a day, only while the phone is idle and charging, so keeping the
+// history tidy never costs battery or competes with an alert.
+public class AlertHistoryCompactionJob extends JobService {
+
+    private static final String TAG = "AlertHistoryCompaction";
+    private static final int JOB_ID = 3701;
+
+    // Cheap to call on every start: does nothing if the job is already scheduled
+    public static void scheduleIfNeeded(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) return;
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, AlertHistoryCompactionJob.class))
+                .setPeriodic(TimeUnit.DAYS.toMillis(1))
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)
+                .setPersisted(false)
+                .build();
+        scheduler.schedule(job);
+        Log.d(TAG, "Compaction job scheduled.");
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        final DatabaseHelper db = DatabaseHelper.getInstance(this);
+        AppExecutors.database().execute(() -> {
+            boolean retry = false;
+            try {
+                AlertRetention.Result result = db.compactAlerts(System.currentTimeMillis());
+                Log.d(TAG, "Compacted " + result.compacted + " alerts, deleted " + result.deleted + ".");
+            } catch (SQLException e) {
+                Log.e(TAG, "Alert history compaction failed.", e);
+                retry = true;
+            }
+            jobFinished(params, retry);
+        });
+        return true; // Still working on the database thread
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The compaction is one short transaction; let it finish and try again next period
+        return false;
+    }
+}
@@ -0,0 +1,58 @@
+// AlertRetention.java
+package com.example.sos;
+
+import java.util.List;
+
+// Retention policy for the alerts table, run in the background by AlertHistoryCompactionJob:
+//  - alerts older than FULL_DETAIL_MS are compacted: stage timings and accuracy are dropped and the location
+//    is rounded to about 1 km, leaving a summary (when, what triggered it, who was reached);
+//  - alerts older than MAX_AGE_MS are deleted, and so is anything beyond the newest MAX_ROWS.
+// Freed pages are reused by later inserts, so the file stops growing once the policy kicks in.
+// Plain Java on ContactMigrations.Database so the same SQL runs in the JVM tests.
+public final class AlertRetention {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    public static final long FULL_DETAIL_MS = 90 * DAY_MS;
+    public static final long MAX_AGE_MS = 2 * 365 * DAY_MS;
+    public static final int MAX_ROWS = 5000;
+
+    public static final class Result {
+        public int compacted;
+        public int deleted;
+    }
+
+    private AlertRetention() { }
+
+    public static Result compact(ContactMigrations.Database db, long nowMs) {
+        Result result = new Result();
+        db.execSQL("UPDATE " + ContactMigrations.ALERTS_TABLE + " SET " +
+                ContactMigrations.ALERT_LOCATION_AT + " = NULL, " +
+                ContactMigrations.ALERT_FIRST_SMS_AT + " = NULL, " +
+                ContactMigrations.ALERT_DISPATCH_DONE_AT + " = NULL, " +
+                ContactMigrations.ALERT_RECORDING_STARTED_AT + " = NULL, " +
+                ContactMigrations.ALERT_RECORDING_ENDED_AT + " = NULL, " +
+                ContactMigrations.ALERT_LATITUDE + " = ROUND(" + ContactMigrations.ALERT_LATITUDE + ", 2), " +
+                ContactMigrations.ALERT_LONGITUDE + " = ROUND(" + ContactMigrations.ALERT_LONGITUDE + ", 2), " +
+                ContactMigrations.ALERT_ACCURACY + " = NULL, " +
+                ContactMigrations.ALERT_COMPACTED + " = 1" +
+                " WHERE " + ContactMigrations.ALERT_COMPACTED + " = 0 AND " +
+                ContactMigrations.ALERT_TRIGGERED_AT + " < ?", new Object[]{nowMs - FULL_DETAIL_MS});
+        result.compacted = changes(db);
+
+        db.execSQL("DELETE FROM " + ContactMigrations.ALERTS_TABLE + " WHERE " +
+                ContactMigrations.ALERT_TRIGGERED_AT + " < ?", new Object[]{nowMs - MAX_AGE_MS});
+        result.deleted = changes(db);
+
+        // Both walk the time index from the newest end, so neither scans the whole table
+        db.execSQL("DELETE FROM " + ContactMigrations.ALERTS_TABLE + " WHERE " + ContactMigrations.ID + " IN (" +
+                "SELECT " + ContactMigrations.ID + " FROM " + ContactMigrations.ALERTS_TABLE +
+                " ORDER BY " + ContactMigrations.ALERT_TRIGGERED_AT + " DESC LIMIT -1 OFFSET " + MAX_ROWS + ")", null);
+        result.deleted += changes(db);
+        return result;
+    }
+
+    private static int changes(ContactMigrations.Database db) {
+        List<String[]> rows = db.query("SELECT changes()");
+        return rows.isEmpty() ? 0 : Integer.parseInt(rows.get(0)[0]);
+    }
+}
@@ -0,0 +1,57 @@
+// AppExecutors.java
+package com.example.sos;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Shared background threads for the whole app, so screens never do file or media work on the UI thread
+// and we don't end up with a new thread pool in every Activity.
+public final class AppExecutors {
+
+    // Serial executor for file listing and small disk reads/writes
+    private static final ExecutorService DISK_IO = Executors.newSingleThreadExecutor(namedFactory("sos-disk-io"));
+
+    // Serial executor reserved for SQLite, so a long export or decode never delays a contact query
+    private static final ExecutorService DATABASE = Executors.newSingleThreadExecutor(namedFactory("sos-database"));
+
+    // Small pool for media decoding (MediaMetadataRetriever etc.), kept at 2 so it never starves the device
+    private static final ExecutorService MEDIA = Executors.newFixedThreadPool(2, namedFactory("sos-media"));
+
+    // Serial executor for sending alert SMS. Normal priority: alerts must not queue behind disk or media work
+    private static final ExecutorService SMS = Executors.newSingleThreadExecutor(namedFactory("sos-sms", Thread.NORM_PRIORITY));
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    private static final Executor MAIN_THREAD = MAIN_HANDLER::post;
+
+    private AppExecutors() { }
+
+    public static ExecutorService diskIO() { return DISK_IO; }
+
+    public static ExecutorService database() { return DATABASE; }
+
+    public static ExecutorService media() { return MEDIA; }
+
+    public static ExecutorService sms() { return SMS; }
+
+    public static Executor mainThread() { return MAIN_THREAD; }
+
+    private static ThreadFactory namedFactory(final String prefix) {
+        // Background work should never compete with the UI thread for CPU
+        return namedFactory(prefix, Thread.MIN_PRIORITY);
+    }
+
+    private static ThreadFactory namedFactory(final String prefix, final int priority) {
+        final AtomicInteger count = new AtomicInteger(1);
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.getAndIncrement());
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
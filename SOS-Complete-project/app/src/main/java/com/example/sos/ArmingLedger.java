@@ -0,0 +1,93 @@
+// ArmingLedger.java
+package com.example.sos;
+
+import java.util.Locale;
+
+// Bookkeeping for zone arming (ZoneReceiver): how long protection has been armed versus not since zone
+// arming started, and what that cost. The battery level is noted at every transition, so each armed or
+// unarmed stretch gives a drain rate; the difference between the two is what protection itself costs an
+// hour, and every unarmed hour is an hour of that saved against leaving it on all day.
+// Stretches that were charging at either end aren't measured. Plain Java so it can be unit tested.
+public class ArmingLedger {
+
+    static final int UNKNOWN_LEVEL = -1; // Charging, or no reading
+
+    // Package-private so ZoneReceiver can persist them as they are
+    long since = -1;       // Wall-clock ms of the first transition, -1 before that
+    boolean armed = false;
+    long changedAt = -1;   // Last transition
+    int levelAtChange = UNKNOWN_LEVEL;
+    long armedMs, unarmedMs;                 // All time in each state
+    long armedMeasuredMs, unarmedMeasuredMs; // The part of it with a battery reading at both ends
+    int armedDrain, unarmedDrain;            // Percent used over the measured part
+
+    // Returns how long the previous state lasted, or -1 if nothing changed
+    public long transition(boolean armed, long now, int level) {
+        if (since < 0) {
+            since = now;
+            changedAt = now;
+            this.armed = armed;
+            levelAtChange = level;
+            return 0;
+        }
+        if (armed == this.armed) return -1;
+        long spent = Math.max(0, now - changedAt); // The wall clock can be set back
+        boolean measured = level != UNKNOWN_LEVEL && levelAtChange != UNKNOWN_LEVEL && level <= levelAtChange;
+        if (this.armed) {
+            armedMs += spent;
+            if (measured) {
+                armedMeasuredMs += spent;
+                armedDrain += levelAtChange - level;
+            }
+        } else {
+            unarmedMs += spent;
+            if (measured) {
+                unarmedMeasuredMs += spent;
+                unarmedDrain += levelAtChange - level;
+            }
+        }
+        this.armed = armed;
+        changedAt = now;
+        levelAtChange = level;
+        return spent;
+    }
+
+    public long armedMs(long now) {
+        return armedMs + (armed && since >= 0 ? Math.max(0, now - changedAt) : 0);
+    }
+
+    public long unarmedMs(long now) {
+        return unarmedMs + (!armed && since >= 0 ? Math.max(0, now - changedAt) : 0);
+    }
+
+    // Extra percent per hour while armed, or -1 until both states have a measured stretch
+    public double protectionCostPerHour() {
+        if (armedMeasuredMs <= 0 || unarmedMeasuredMs <= 0) return -1;
+        double armedRate = armedDrain / hours(armedMeasuredMs);
+        double unarmedRate = unarmedDrain / hours(unarmedMeasuredMs);
+        return Math.max(0, armedRate - unarmedRate);
+    }
+
+    // Battery percent not spent compared with always-on, or -1 if not known yet
+    public double savedPercent(long now) {
+        double cost = protectionCostPerHour();
+        return cost < 0 ? -1 : cost * hours(unarmedMs(now));
+    }
+
+    // e.g. "armed 3.5 h of 41.0 h (9%), protection costs 1.2%/h, about 45% battery saved against always-on"
+    public String describe(long now) {
+        if (since < 0) return "no zone transitions yet";
+        long armed = armedMs(now);
+        long total = armed + unarmedMs(now);
+        String text = String.format(Locale.US, "armed %.1f h of %.1f h (%d%%)",
+                hours(armed), hours(total), total > 0 ? Math.round(100.0 * armed / total) : 0);
+        double cost = protectionCostPerHour();
+        if (cost < 0) return text + ", battery saving not measured yet";
+        return text + String.format(Locale.US, ", protection costs %.1f%%/h, about %.0f%% battery saved against always-on",
+                cost, savedPercent(now));
+    }
+
+    private static double hours(long ms) {
+        return ms / 3600000.0;
+    }
+}
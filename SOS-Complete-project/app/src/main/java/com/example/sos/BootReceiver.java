@@ -0,0 +1,116 @@
+// BootReceiver.java
+package com.example.sos;
+
+import android.Manifest;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Brings protection back after a reboot or an app update, if the user had it on (ConfigStore's
+// protectionEnabled). Before this the service stayed down until someone opened MainActivity and tapped
+// start. Zones for zone arming are registered again too, since the platform drops geofences on reboot.
+// Runs in the ":detector" process so booting doesn't spin up the UI process as well.
+public class BootReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "BootReceiver";
+    private static final int NOTIFICATION_ID = 116;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+        final String reason;
+        if (Intent.ACTION_BOOT_COMPLETED.equals(action)) {
+            reason = "boot";
+        } else if (Intent.ACTION_MY_PACKAGE_REPLACED.equals(action)) {
+            reason = "update";
+        } else {
+            return;
+        }
+        final long receivedAt = SystemClock.elapsedRealtime();
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        // The config may still have to come off disk
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                restore(appContext, reason, receivedAt);
+                ZoneReceiver.sync(appContext, Intent.ACTION_BOOT_COMPLETED.equals(action));
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    private static void restore(Context context, String reason, long receivedAt) {
+        Log.i(TAG, "Received " + reason + " " + receivedAt + " ms after boot.");
+        if (!ConfigStore.getInstance(context).get().protectionEnabled) {
+            Log.d(TAG, "Protection was off, leaving it off.");
+            return;
+        }
+        // Checked up front: a service that can't send SMS or locate anyone would only look protected
+        List<String> missing = missingForBackgroundStart(context);
+        if (!missing.isEmpty()) {
+            Log.w(TAG, "Not restoring protection, missing " + missing);
+            notifyNeedsAttention(context);
+            return;
+        }
+        Intent serviceIntent = new Intent(context, ServiceMine.class)
+                .setAction("Start")
+                .putExtra(ServiceMine.EXTRA_START_REASON, reason)
+                .putExtra(ServiceMine.EXTRA_REQUESTED_AT, receivedAt);
+        try {
+            context.startForegroundService(serviceIntent);
+            Log.i(TAG, "Restoring protection after " + reason + ".");
+        } catch (IllegalStateException e) {
+            // ForegroundServiceStartNotAllowedException on newer versions
+            Log.e(TAG, "Could not start the service after " + reason + ".", e);
+            notifyNeedsAttention(context);
+        }
+    }
+
+    // What ServiceMine needs when it's started without the app on screen (boot, update, a zone). Its
+    // foreground service type is location, and on Android 14+ starting one of those from the background
+    // without background location makes startForeground throw inside the service.
+    static List<String> missingForBackgroundStart(Context context) {
+        List<String> missing = new ArrayList<>();
+        for (String permission : ServiceMine.REQUIRED_PERMISSIONS) {
+            if (ContextCompat.checkSelfPermission(context, permission) != PackageManager.PERMISSION_GRANTED) missing.add(permission);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_BACKGROUND_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            missing.add(Manifest.permission.ACCESS_BACKGROUND_LOCATION);
+        }
+        return missing;
+    }
+
+    // The user thinks they're protected and they aren't: say so where they'll see it
+    static void notifyNeedsAttention(Context context) {
+        NotificationManager manager = context.getSystemService(NotificationManager.class);
+        if (manager == null) return;
+        if (!manager.areNotificationsEnabled()) {
+            // No POST_NOTIFICATIONS (Android 13+) or turned off by the user: this would be dropped silently
+            Log.w(TAG, "Protection is off and notifications are blocked, the user can't be told.");
+            return;
+        }
+        PendingIntent open = PendingIntent.getActivity(context, 0,
+                new Intent(context, MainActivity.class), PendingIntent.FLAG_IMMUTABLE);
+        manager.notify(NOTIFICATION_ID, new NotificationCompat.Builder(context, "MYID")
+                .setContentTitle("SOS protection is off")
+                .setContentText("Tap to turn it back on.")
+                .setSmallIcon(R.drawable.siren)
+                .setContentIntent(open)
+                .setAutoCancel(true)
+                .build());
+    }
+}
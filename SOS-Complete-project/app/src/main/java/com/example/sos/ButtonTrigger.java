@@ -0,0 +1,103 @@
+// ButtonTrigger.java
+package com.example.sos;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.media.AudioManager;
+import android.media.VolumeProvider;
+import android.media.session.MediaSession;
+import android.media.session.PlaybackState;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+// Raises the alarm on a rapid press pattern (PRESSES presses within WINDOW_MS) of the power or the volume
+// keys, for when the phone is in a pocket and shaking or speaking isn't possible.
+// Apps can't see the power key itself, but every press turns the screen on or off, so the screen
+// broadcasts stand in for it. Volume keys with the screen off reach a media session that claims remote
+// playback, so one is held only while the screen is off, and only when nothing else is playing (it
+// would otherwise take the volume keys away from the user's music). Both feed the TriggerBus.
+public class ButtonTrigger {
+
+    private static final String TAG = "ButtonTrigger";
+    static final int PRESSES = 5;
+    static final long WINDOW_MS = 3000;
+    // Held volume keys repeat every ~50 ms; a real press and release takes well over this
+    static final long MIN_GAP_MS = 100;
+    // A pattern is already deliberate; the bucket just stops a stuck key from alerting over and over
+    private static final TriggerBus.Limits LIMITS = new TriggerBus.Limits(1000, 2, 60000);
+
+    private final Context context;
+    private final AudioManager audioManager;
+    private final TriggerBus.Source powerSource;
+    private final TriggerBus.Source volumeSource;
+    // Main thread only
+    private final PressPattern powerPattern = new PressPattern(PRESSES, WINDOW_MS);
+    private final PressPattern volumePattern = new PressPattern(PRESSES, WINDOW_MS, MIN_GAP_MS);
+    private MediaSession mediaSession; // Only while the screen is off
+    private boolean started = false;
+
+    private final BroadcastReceiver screenReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            press(powerPattern, powerSource);
+            if (Intent.ACTION_SCREEN_OFF.equals(intent.getAction())) startVolumeHook();
+            else stopVolumeHook();
+        }
+    };
+
+    public ButtonTrigger(Context context, TriggerBus bus) {
+        this.context = context.getApplicationContext();
+        this.audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        this.powerSource = bus.register("Power button", LIMITS);
+        this.volumeSource = bus.register("Volume buttons", LIMITS);
+    }
+
+    public void start() {
+        if (started) return;
+        IntentFilter filter = new IntentFilter(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        ContextCompat.registerReceiver(context, screenReceiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        started = true;
+    }
+
+    public void stop() {
+        if (!started) return;
+        context.unregisterReceiver(screenReceiver);
+        stopVolumeHook();
+        started = false;
+    }
+
+    private void press(PressPattern pattern, TriggerBus.Source source) {
+        if (!pattern.press(SystemClock.elapsedRealtime())) return;
+        Log.i(TAG, source.getName() + ": " + PRESSES + " presses in " + pattern.getLastSpanMs() + " ms");
+        source.fire();
+    }
+
+    private void startVolumeHook() {
+        if (mediaSession != null) return;
+        if (audioManager != null && audioManager.isMusicActive()) return;
+        mediaSession = new MediaSession(context, TAG);
+        mediaSession.setPlaybackState(new PlaybackState.Builder()
+                .setState(PlaybackState.STATE_PLAYING, 0, 1f)
+                .build());
+        // Relative control: we only want the key presses, there's no volume to keep track of
+        mediaSession.setPlaybackToRemote(new VolumeProvider(VolumeProvider.VOLUME_CONTROL_RELATIVE, 100, 50) {
+            @Override
+            public void onAdjustVolume(int direction) {
+                // Called again for every auto-repeat while the key is held; volumePattern drops those
+                if (direction != 0) press(volumePattern, volumeSource);
+            }
+        });
+        mediaSession.setActive(true);
+    }
+
+    private void stopVolumeHook() {
+        if (mediaSession == null) return;
+        mediaSession.release();
+        mediaSession = null;
+    }
+}
@@ -0,0 +1,235 @@
+// ConfigStore.java
+package com.example.sos;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.UnaryOperator;
+
+// All user settings as one immutable in-memory snapshot. Reads (including the alert path) are a field
+// access; changes swap in a new snapshot, tell the listeners on the main thread, and write the whole
+// snapshot back in a single commit on the disk executor, so the file never holds half an update.
+// Loading starts when the store is first created (SplashScreen / ServiceMine) and runs in the background.
+// ServiceMine has its own process and its own copy: saved changes are broadcast to it (DetectorChannel)
+// and it reloads the file.
+public class ConfigStore {
+
+    private static final String TAG = "ConfigStore";
+    private static final String PREFS_NAME = "sos_config";
+    private static final String KEY_VERSION = "version";
+    private static final String KEY_ALERT_MESSAGE = "alert_message";
+    private static final String KEY_ENCRYPT_RECORDINGS = "encrypt_recordings";
+    private static final String KEY_MAX_CONTACTS = "max_contacts";
+    private static final String KEY_PROTECTION_ENABLED = "protection_enabled";
+    private static final String KEY_DETERRENT_ENABLED = "deterrent_enabled";
+    private static final String KEY_ZONE_ARMING_ENABLED = "zone_arming_enabled";
+    private static final int VERSION = 1;
+
+    public static final String DEFAULT_ALERT_MESSAGE = "I am in DANGER, I need help. Please urgently reach me out.";
+
+    public static final class Config {
+        public final String alertMessage; // null until the user saves one; see getAlertMessage()
+        public final boolean encryptRecordings;
+        public final int maxContacts;
+        // The user's choice (start/stop in MainActivity), not whether the service is up right now: that's
+        // ServiceStatus. BootReceiver uses it to bring protection back after a reboot or an update.
+        public final boolean protectionEnabled;
+        public final boolean deterrentEnabled; // Siren and torch strobe during an alert, see Deterrent
+        // Arm inside SafetyZones and disarm outside them (ZoneReceiver). protectionEnabled still wins:
+        // leaving a zone never switches off protection the user turned on themselves.
+        public final boolean zoneArmingEnabled;
+
+        Config(String alertMessage, boolean encryptRecordings, int maxContacts, boolean protectionEnabled,
+               boolean deterrentEnabled, boolean zoneArmingEnabled) {
+            this.alertMessage = alertMessage;
+            this.encryptRecordings = encryptRecordings;
+            this.maxContacts = maxContacts;
+            this.protectionEnabled = protectionEnabled;
+            this.deterrentEnabled = deterrentEnabled;
+            this.zoneArmingEnabled = zoneArmingEnabled;
+        }
+
+        public String getAlertMessage() {
+            return alertMessage != null ? alertMessage : DEFAULT_ALERT_MESSAGE;
+        }
+
+        public Config withAlertMessage(String alertMessage) {
+            return new Config(alertMessage, encryptRecordings, maxContacts, protectionEnabled, deterrentEnabled, zoneArmingEnabled);
+        }
+
+        public Config withEncryptRecordings(boolean encryptRecordings) {
+            return new Config(alertMessage, encryptRecordings, maxContacts, protectionEnabled, deterrentEnabled, zoneArmingEnabled);
+        }
+
+        public Config withMaxContacts(int maxContacts) {
+            return new Config(alertMessage, encryptRecordings, maxContacts, protectionEnabled, deterrentEnabled, zoneArmingEnabled);
+        }
+
+        public Config withProtectionEnabled(boolean protectionEnabled) {
+            if (protectionEnabled == this.protectionEnabled) return this;
+            return new Config(alertMessage, encryptRecordings, maxContacts, protectionEnabled, deterrentEnabled, zoneArmingEnabled);
+        }
+
+        public Config withDeterrentEnabled(boolean deterrentEnabled) {
+            return new Config(alertMessage, encryptRecordings, maxContacts, protectionEnabled, deterrentEnabled, zoneArmingEnabled);
+        }
+
+        public Config withZoneArmingEnabled(boolean zoneArmingEnabled) {
+            return new Config(alertMessage, encryptRecordings, maxContacts, protectionEnabled, deterrentEnabled, zoneArmingEnabled);
+        }
+    }
+
+    public interface Listener {
+        void onConfigChanged(Config config);
+    }
+
+    private static ConfigStore instance;
+
+    private final Context context;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Object lock = new Object();
+    private volatile Config snapshot;
+    private boolean writeQueued = false; // Guarded by lock
+
+    public static synchronized ConfigStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ConfigStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ConfigStore(Context context) {
+        this.context = context;
+        AppExecutors.diskIO().execute(this::ensureLoaded);
+    }
+
+    // Normally a field read. Only the very first caller after process start can end up waiting for the
+    // prefs file, if it gets here before the background load has finished.
+    public Config get() {
+        Config config = snapshot;
+        return config != null ? config : ensureLoaded();
+    }
+
+    // Applies the change to the latest snapshot; safe from any thread
+    public void update(UnaryOperator<Config> change) {
+        Config updated;
+        synchronized (lock) {
+            Config current = get();
+            updated = change.apply(current);
+            if (updated == current) return;
+            snapshot = updated;
+            scheduleWrite();
+        }
+        notifyListeners(updated);
+    }
+
+    // Another process saved the file. MODE_MULTI_PROCESS is the only way to make SharedPreferences
+    // re-read a file it already has cached.
+    @SuppressWarnings("deprecation")
+    public void reload() {
+        AppExecutors.diskIO().execute(() -> {
+            Config loaded;
+            synchronized (lock) {
+                loaded = load(context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS));
+                snapshot = loaded;
+            }
+            Log.d(TAG, "Config reloaded.");
+            notifyListeners(loaded);
+        });
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notifyListeners(final Config config) {
+        AppExecutors.mainThread().execute(() -> {
+            for (Listener listener : listeners) listener.onConfigChanged(config);
+        });
+    }
+
+    private Config ensureLoaded() {
+        synchronized (lock) {
+            if (snapshot == null) {
+                snapshot = load(prefs());
+                Log.d(TAG, "Config loaded.");
+            }
+            return snapshot;
+        }
+    }
+
+    // Rapid changes collapse into one write of whatever the snapshot is when the disk thread gets to it
+    private void scheduleWrite() {
+        if (writeQueued) return;
+        writeQueued = true;
+        AppExecutors.diskIO().execute(() -> {
+            Config config;
+            synchronized (lock) {
+                writeQueued = false;
+                config = snapshot;
+            }
+            if (write(prefs(), config)) {
+                DetectorChannel.notifyDataChanged(context, DetectorChannel.DATA_CONFIG);
+            } else {
+                Log.e(TAG, "Could not save config.");
+            }
+        });
+    }
+
+    private Config load(SharedPreferences prefs) {
+        if (!prefs.contains(KEY_VERSION)) {
+            // First run after the upgrade: settings used to be spread over several files
+            Config imported = importLegacy();
+            write(prefs, imported);
+            return imported;
+        }
+        return new Config(
+                prefs.getString(KEY_ALERT_MESSAGE, null),
+                prefs.getBoolean(KEY_ENCRYPT_RECORDINGS, false),
+                prefs.getInt(KEY_MAX_CONTACTS, ContactPolicy.DEFAULT_MAX_CONTACTS),
+                // Not written by older versions of this file; the update itself shouldn't switch protection off
+                prefs.contains(KEY_PROTECTION_ENABLED) ? prefs.getBoolean(KEY_PROTECTION_ENABLED, false) : legacyServiceRunning(),
+                prefs.getBoolean(KEY_DETERRENT_ENABLED, false),
+                prefs.getBoolean(KEY_ZONE_ARMING_ENABLED, false));
+    }
+
+    // The old files are left alone so a downgrade still finds its settings
+    private Config importLegacy() {
+        return new Config(
+                context.getSharedPreferences("message", Context.MODE_PRIVATE).getString("msg", null),
+                context.getSharedPreferences("recording_settings", Context.MODE_PRIVATE).getBoolean("encrypt_recordings", false),
+                context.getSharedPreferences("contact_settings", Context.MODE_PRIVATE).getInt("max_contacts", ContactPolicy.DEFAULT_MAX_CONTACTS),
+                legacyServiceRunning(),
+                false,
+                false);
+    }
+
+    // The old "is_running" flag was written on start/stop, so it's the best guess at what the user wanted
+    private boolean legacyServiceRunning() {
+        return context.getSharedPreferences("SOS_SERVICE_STATUS", Context.MODE_PRIVATE).getBoolean("is_running", false);
+    }
+
+    // One commit for every key: SharedPreferences swaps the whole file, so it's all or nothing
+    private static boolean write(SharedPreferences prefs, Config config) {
+        return prefs.edit()
+                .putInt(KEY_VERSION, VERSION)
+                .putString(KEY_ALERT_MESSAGE, config.alertMessage)
+                .putBoolean(KEY_ENCRYPT_RECORDINGS, config.encryptRecordings)
+                .putInt(KEY_MAX_CONTACTS, config.maxContacts)
+                .putBoolean(KEY_PROTECTION_ENABLED, config.protectionEnabled)
+                .putBoolean(KEY_DETERRENT_ENABLED, config.deterrentEnabled)
+                .putBoolean(KEY_ZONE_ARMING_ENABLED, config.zoneArmingEnabled)
+                .commit();
+    }
+
+    private SharedPreferences prefs() {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.sos;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+// Async front for the contact queries ContactRepository doesn't cover: searching and paging the list.
+// Every call runs on the database executor and returns a Future; screens pass a Callback instead, which
+// is delivered on the main thread. Adding, editing and removing contacts goes through ContactRepository,
+// which enforces the contact limit, keeps its snapshot current and tells the detector.
+public class ContactDao {
+
+    public interface Callback<T> {
+        void onResult(T result);
+    }
+
+    private static ContactDao instance;
+
+    private final DatabaseHelper db;
+
+    public static synchronized ContactDao getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactDao(DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private ContactDao(DatabaseHelper db) {
+        this.db = db;
+    }
+
+    // One page of the (optionally filtered) contact list, see DatabaseHelper.searchContacts
+    public Future<List<ContactModel>> search(String input, long afterId, int limit, @Nullable Callback<List<ContactModel>> callback) {
+        return submit(() -> db.searchContacts(input, afterId, limit), callback);
+    }
+
+    private <T> Future<T> submit(Callable<T> query, @Nullable Callback<? super T> callback) {
+        return AppExecutors.database().submit(() -> {
+            T result = query.call();
+            if (callback != null) {
+                AppExecutors.mainThread().execute(() -> callback.onResult(result));
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,94 @@
+// ContactImporter.java
+package com.example.sos;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.provider.ContactsContract;
+import android.text.TextUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Reads the device contact book for the multi-select import. One query for the list to choose from and one
+// for every selected contact's number (one per MAX_IDS_PER_QUERY contacts, for very large selections).
+// Both block, so call them on AppExecutors.diskIO().
+public final class ContactImporter {
+
+    // SQLite allows 999 bind variables per statement on older Android versions; stay well under it
+    static final int MAX_IDS_PER_QUERY = 500;
+
+    public static final class Candidate {
+        public final String contactId;
+        public final String name;
+
+        Candidate(String contactId, String name) {
+            this.contactId = contactId;
+            this.name = name;
+        }
+    }
+
+    private ContactImporter() { }
+
+    // Every contact with at least one phone number, sorted the way the contacts app shows them
+    public static List<Candidate> loadCandidates(ContentResolver resolver) {
+        List<Candidate> candidates = new ArrayList<>();
+        String[] projection = {ContactsContract.Contacts._ID, ContactsContract.Contacts.DISPLAY_NAME};
+        try (Cursor cursor = resolver.query(ContactsContract.Contacts.CONTENT_URI, projection,
+                ContactsContract.Contacts.HAS_PHONE_NUMBER + " = ?", new String[]{"1"},
+                ContactsContract.Contacts.DISPLAY_NAME + " COLLATE LOCALIZED ASC")) {
+            if (cursor == null) return candidates;
+            while (cursor.moveToNext()) {
+                candidates.add(new Candidate(cursor.getString(0), cursor.getString(1)));
+            }
+        }
+        return candidates;
+    }
+
+    // One number per contact (the default one if the user set it, otherwise the first), in selection order.
+    // Contacts whose number can't be read are left out.
+    public static List<ContactModel> resolveNumbers(ContentResolver resolver, List<Candidate> selected) {
+        List<ContactModel> contacts = new ArrayList<>();
+        if (selected.isEmpty()) return contacts;
+
+        String[] projection = {
+                ContactsContract.CommonDataKinds.Phone.CONTACT_ID,
+                ContactsContract.CommonDataKinds.Phone.NUMBER
+        };
+        Map<String, String> numbers = new LinkedHashMap<>();
+        for (int from = 0; from < selected.size(); from += MAX_IDS_PER_QUERY) {
+            int to = Math.min(selected.size(), from + MAX_IDS_PER_QUERY);
+            String[] ids = new String[to - from];
+            String[] placeholders = new String[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = selected.get(from + i).contactId;
+                placeholders[i] = "?";
+            }
+            try (Cursor cursor = resolver.query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, projection,
+                    ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " IN (" + TextUtils.join(",", Arrays.asList(placeholders)) + ")",
+                    ids,
+                    // Default numbers sort first, so the first row we see for a contact is the one to keep
+                    ContactsContract.CommonDataKinds.Phone.IS_SUPER_PRIMARY + " DESC, "
+                            + ContactsContract.CommonDataKinds.Phone.IS_PRIMARY + " DESC")) {
+                if (cursor == null) continue;
+                while (cursor.moveToNext()) {
+                    String contactId = cursor.getString(0);
+                    String number = cursor.getString(1);
+                    if (!TextUtils.isEmpty(number) && !numbers.containsKey(contactId)) {
+                        numbers.put(contactId, number);
+                    }
+                }
+            }
+        }
+
+        for (Candidate candidate : selected) {
+            String number = numbers.get(candidate.contactId);
+            if (number != null) {
+                contacts.add(new ContactModel(null, candidate.name, number));
+            }
+        }
+        return contacts;
+    }
+}
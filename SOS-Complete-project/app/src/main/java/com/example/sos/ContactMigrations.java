@@ -0,0 +1,206 @@
+// ContactMigrations.java
+package com.example.sos;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Versioned schema for CONTACT.db. Every version bump is one step from N to N + 1, and a fresh install
+// creates the v1 table and then runs the same steps, so new and upgraded databases can't drift apart.
+// SQLiteOpenHelper already wraps onCreate/onUpgrade in a transaction, so a failed step rolls back completely.
+// No Android classes in here, so the steps can be run against v1 fixtures in JVM tests.
+public final class ContactMigrations {
+
+    public static final int LATEST_VERSION = 5;
+
+    static final String TABLE_NAME = "contact_table";
+    static final String ID = "ID";
+    static final String NAME_COLUMN = "NAME";
+    static final String MOBILE_COLUMN = "MOBILE";
+    static final String PRIORITY_COLUMN = "PRIORITY";
+    static final String CHANNEL_COLUMN = "CHANNEL";
+    static final String MOBILE_INDEX = "contact_mobile_unique";
+    // Full-text index over names and numbers; docid is the contact ID
+    static final String FTS_TABLE = "contact_fts";
+    static final String FTS_NAME_COLUMN = "NAME";
+    static final String FTS_NUMBER_COLUMN = "NUMBER";
+
+    // One row per alert; times are wall-clock ms, stage columns stay NULL until the stage happens
+    static final String ALERTS_TABLE = "alerts";
+    static final String ALERT_SESSION = "SESSION_ID";
+    static final String ALERT_SOURCE = "SOURCE";
+    static final String ALERT_TRIGGERED_AT = "TRIGGERED_AT";
+    static final String ALERT_LOCATION_AT = "LOCATION_AT";
+    static final String ALERT_FIRST_SMS_AT = "FIRST_SMS_AT";
+    static final String ALERT_DISPATCH_DONE_AT = "DISPATCH_DONE_AT";
+    static final String ALERT_RECORDING_STARTED_AT = "RECORDING_STARTED_AT";
+    static final String ALERT_RECORDING_ENDED_AT = "RECORDING_ENDED_AT";
+    static final String ALERT_LATITUDE = "LATITUDE";
+    static final String ALERT_LONGITUDE = "LONGITUDE";
+    static final String ALERT_ACCURACY = "ACCURACY";
+    static final String ALERT_SMS_SENT = "SMS_SENT";
+    static final String ALERT_SMS_FAILED = "SMS_FAILED";
+    static final String ALERT_SMS_UNCONFIRMED = "SMS_UNCONFIRMED";
+    static final String ALERT_RECORDING = "RECORDING";
+    static final String ALERT_COMPACTED = "COMPACTED";
+    static final String ALERTS_TIME_INDEX = "alerts_triggered_at";
+
+    // Places where protection arms itself (see ZoneReceiver); radius in metres
+    static final String ZONES_TABLE = "zones";
+    static final String ZONE_NAME = "NAME";
+    static final String ZONE_LATITUDE = "LATITUDE";
+    static final String ZONE_LONGITUDE = "LONGITUDE";
+    static final String ZONE_RADIUS = "RADIUS";
+
+    // The small part of SQLiteDatabase the migrations use
+    public interface Database {
+        void execSQL(String sql, Object[] bindArgs);
+        // Every column is returned as a string (or null)
+        List<String[]> query(String sql);
+    }
+
+    private interface Migration {
+        void migrate(Database db, String defaultCallingCode);
+    }
+
+    // MIGRATIONS[i] upgrades version i + 1 to version i + 2
+    private static final Migration[] MIGRATIONS = {
+            ContactMigrations::addPriorityChannelAndUniqueNumbers,
+            ContactMigrations::addFullTextSearch,
+            ContactMigrations::addAlertHistory,
+            ContactMigrations::addZones,
+    };
+
+    private ContactMigrations() { }
+
+    public static void create(Database db, String defaultCallingCode) {
+        db.execSQL("CREATE TABLE " + TABLE_NAME + " (" +
+                ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                NAME_COLUMN + " TEXT, " +
+                MOBILE_COLUMN + " TEXT)", null);
+        migrate(db, 1, LATEST_VERSION, defaultCallingCode);
+    }
+
+    public static void migrate(Database db, int oldVersion, int newVersion, String defaultCallingCode) {
+        if (newVersion > LATEST_VERSION || oldVersion < 1) {
+            throw new IllegalArgumentException("No migration path from " + oldVersion + " to " + newVersion);
+        }
+        for (int version = oldVersion; version < newVersion; version++) {
+            MIGRATIONS[version - 1].migrate(db, defaultCallingCode);
+        }
+    }
+
+    // v1 -> v2: priority and preferred channel columns, E.164 numbers and one row per number
+    private static void addPriorityChannelAndUniqueNumbers(Database db, String defaultCallingCode) {
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + PRIORITY_COLUMN +
+                " INTEGER NOT NULL DEFAULT " + ContactModel.PRIORITY_PRIMARY, null);
+        db.execSQL("ALTER TABLE " + TABLE_NAME + " ADD COLUMN " + CHANNEL_COLUMN +
+                " TEXT NOT NULL DEFAULT '" + ContactModel.CHANNEL_SMS + "'", null);
+
+        NormalizationPlan plan = planNormalization(
+                db.query("SELECT " + ID + ", " + MOBILE_COLUMN + " FROM " + TABLE_NAME + " ORDER BY " + ID),
+                defaultCallingCode);
+        // Duplicates go first, otherwise rewriting a number could briefly collide with a row we're about to drop
+        for (String id : plan.deletes) {
+            db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + ID + " = ?", new Object[]{id});
+        }
+        for (String id : plan.clears) {
+            db.execSQL("UPDATE " + TABLE_NAME + " SET " + MOBILE_COLUMN + " = NULL WHERE " + ID + " = ?", new Object[]{id});
+        }
+        for (Map.Entry<String, String> update : plan.updates.entrySet()) {
+            db.execSQL("UPDATE " + TABLE_NAME + " SET " + MOBILE_COLUMN + " = ? WHERE " + ID + " = ?",
+                    new Object[]{update.getValue(), update.getKey()});
+        }
+        db.execSQL("CREATE UNIQUE INDEX " + MOBILE_INDEX + " ON " + TABLE_NAME + " (" + MOBILE_COLUMN + ")", null);
+    }
+
+    // v2 -> v3: FTS4 index for the contact search. Triggers keep it in step with contact_table, so
+    // DatabaseHelper never has to remember to update it. Numbers are indexed without the '+' because
+    // the FTS tokenizer would drop it anyway.
+    private static void addFullTextSearch(Database db, String defaultCallingCode) {
+        db.execSQL("CREATE VIRTUAL TABLE " + FTS_TABLE + " USING fts4(" +
+                FTS_NAME_COLUMN + ", " + FTS_NUMBER_COLUMN + ")", null);
+        String indexNew = "INSERT INTO " + FTS_TABLE + " (docid, " + FTS_NAME_COLUMN + ", " + FTS_NUMBER_COLUMN + ") " +
+                "VALUES (new." + ID + ", new." + NAME_COLUMN + ", replace(new." + MOBILE_COLUMN + ", '+', ''));";
+        String dropOld = "DELETE FROM " + FTS_TABLE + " WHERE docid = old." + ID + ";";
+        db.execSQL("CREATE TRIGGER contact_fts_insert AFTER INSERT ON " + TABLE_NAME +
+                " BEGIN " + indexNew + " END", null);
+        db.execSQL("CREATE TRIGGER contact_fts_update AFTER UPDATE ON " + TABLE_NAME +
+                " BEGIN " + dropOld + " " + indexNew + " END", null);
+        db.execSQL("CREATE TRIGGER contact_fts_delete AFTER DELETE ON " + TABLE_NAME +
+                " BEGIN " + dropOld + " END", null);
+        // Index whatever is already there
+        db.execSQL("INSERT INTO " + FTS_TABLE + " (docid, " + FTS_NAME_COLUMN + ", " + FTS_NUMBER_COLUMN + ") " +
+                "SELECT " + ID + ", " + NAME_COLUMN + ", replace(" + MOBILE_COLUMN + ", '+', '') FROM " + TABLE_NAME, null);
+    }
+
+    // v3 -> v4: alert history. History is read newest first a page at a time, so the time index is what
+    // keeps it fast however many years of alerts pile up (see AlertRetention for the clean-up side).
+    private static void addAlertHistory(Database db, String defaultCallingCode) {
+        db.execSQL("CREATE TABLE " + ALERTS_TABLE + " (" +
+                ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                ALERT_SESSION + " TEXT NOT NULL, " +
+                ALERT_SOURCE + " TEXT, " +
+                ALERT_TRIGGERED_AT + " INTEGER NOT NULL, " +
+                ALERT_LOCATION_AT + " INTEGER, " +
+                ALERT_FIRST_SMS_AT + " INTEGER, " +
+                ALERT_DISPATCH_DONE_AT + " INTEGER, " +
+                ALERT_RECORDING_STARTED_AT + " INTEGER, " +
+                ALERT_RECORDING_ENDED_AT + " INTEGER, " +
+                ALERT_LATITUDE + " REAL, " +
+                ALERT_LONGITUDE + " REAL, " +
+                ALERT_ACCURACY + " REAL, " +
+                ALERT_SMS_SENT + " INTEGER NOT NULL DEFAULT 0, " +
+                ALERT_SMS_FAILED + " INTEGER NOT NULL DEFAULT 0, " +
+                ALERT_SMS_UNCONFIRMED + " INTEGER NOT NULL DEFAULT 0, " +
+                ALERT_RECORDING + " TEXT, " +
+                ALERT_COMPACTED + " INTEGER NOT NULL DEFAULT 0)", null);
+        db.execSQL("CREATE INDEX " + ALERTS_TIME_INDEX + " ON " + ALERTS_TABLE + " (" + ALERT_TRIGGERED_AT + ")", null);
+    }
+
+    // v4 -> v5: safety zones. A handful of rows at most, always read whole, so no index.
+    private static void addZones(Database db, String defaultCallingCode) {
+        db.execSQL("CREATE TABLE " + ZONES_TABLE + " (" +
+                ID + " INTEGER PRIMARY KEY AUTOINCREMENT, " +
+                ZONE_NAME + " TEXT NOT NULL, " +
+                ZONE_LATITUDE + " REAL NOT NULL, " +
+                ZONE_LONGITUDE + " REAL NOT NULL, " +
+                ZONE_RADIUS + " REAL NOT NULL)", null);
+    }
+
+    // What the v2 migration does to the existing rows: ids to delete, ids whose number is cleared, and
+    // id -> new number for the rest
+    static final class NormalizationPlan {
+        final List<String> deletes = new ArrayList<>();
+        final List<String> clears = new ArrayList<>();
+        final Map<String, String> updates = new LinkedHashMap<>();
+    }
+
+    // Rows are {id, mobile} in id order. The oldest row for each number wins, since that's the one the
+    // user added first; later copies are dropped.
+    static NormalizationPlan planNormalization(List<String[]> rows, String defaultCallingCode) {
+        NormalizationPlan plan = new NormalizationPlan();
+        Set<String> seen = new HashSet<>();
+        for (String[] row : rows) {
+            String id = row[0];
+            String mobile = row[1];
+            String normalized = PhoneNumberNormalizer.normalize(mobile, defaultCallingCode);
+            if (normalized == null) {
+                // Empty or digitless numbers can't be sent to anyway. They become NULL, the same as a new contact
+                // saved without a number: the unique index lets NULL repeat, but two "" rows would make it fail
+                // and the upgrade with it. The row stays for the user to fix or delete.
+                if (mobile != null) plan.clears.add(id);
+                continue;
+            }
+            if (!seen.add(normalized)) {
+                plan.deletes.add(id);
+            } else if (!normalized.equals(mobile)) {
+                plan.updates.put(id, normalized);
+            }
+        }
+        return plan;
+    }
+}
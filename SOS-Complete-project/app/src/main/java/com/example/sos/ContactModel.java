@@ -1,7 +1,18 @@
 package com.example.sos;
 
 public class ContactModel {
+
+    // Lower priority values are alerted first
+    public static final int PRIORITY_PRIMARY = 0;
+    public static final int PRIORITY_SECONDARY = 1;
+
+    // Preferred way to reach the contact during an alert
+    public static final String CHANNEL_SMS = "sms";
+    public static final String CHANNEL_CALL = "call";
+
     String id, name, number;
+    int priority = PRIORITY_PRIMARY;
+    String channel = CHANNEL_SMS;
 
     public ContactModel(String id, String name, String number) {
         this.id = id;
@@ -9,6 +20,12 @@ public class ContactModel {
         this.number = number;
     }
 
+    public ContactModel(String id, String name, String number, int priority, String channel) {
+        this(id, name, number);
+        this.priority = priority;
+        this.channel = channel;
+    }
+
     public ContactModel() {
     }
 
@@ -34,4 +51,12 @@ public class ContactModel {
     public void setNumber(String number) {
         this.number = number;
     }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getChannel() {
+        return channel;
+    }
 }
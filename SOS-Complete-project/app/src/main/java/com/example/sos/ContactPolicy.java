@@ -0,0 +1,29 @@
+// ContactPolicy.java
+package com.example.sos;
+
+import android.content.Context;
+
+// How many emergency contacts a user may register. Used to be a hard-coded 5; families and security
+// teams need more, so it's a setting now (changed from the contact list menu).
+public final class ContactPolicy {
+
+    public static final int DEFAULT_MAX_CONTACTS = 5;
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // Offered in the contact list menu
+    public static final int[] CHOICES = {5, 10, 25, 100, UNLIMITED};
+
+    private ContactPolicy() { }
+
+    public static int getMaxContacts(Context context) {
+        return ConfigStore.getInstance(context).get().maxContacts;
+    }
+
+    public static void setMaxContacts(Context context, int maxContacts) {
+        ConfigStore.getInstance(context).update(config -> config.withMaxContacts(maxContacts));
+    }
+
+    public static String describe(int maxContacts) {
+        return maxContacts == UNLIMITED ? "No limit" : "Up to " + maxContacts + " contacts";
+    }
+}
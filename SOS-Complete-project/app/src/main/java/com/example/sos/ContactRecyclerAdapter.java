@@ -196,7 +196,7 @@ public class ContactRecyclerAdapter extends RecyclerView.Adapter<ContactRecycler
     private static final int REQUEST_CALL_PHONE_PERMISSION = 1;
     Context context;
     ArrayList<ContactModel> modelArrayList;
-    DatabaseHelper databaseHelper;
+    ContactRepository contactRepository;
     OnContactDeleteListener deleteListener;
 
     // Interface for callback when contact is deleted
@@ -208,6 +208,7 @@ public class ContactRecyclerAdapter extends RecyclerView.Adapter<ContactRecycler
         this.context = context;
         this.modelArrayList = modelArrayList;
         this.deleteListener = deleteListener;
+        this.contactRepository = ContactRepository.getInstance(context);
     }
 
     @NonNull
@@ -222,7 +223,10 @@ public class ContactRecyclerAdapter extends RecyclerView.Adapter<ContactRecycler
         ContactModel currentModel = modelArrayList.get(position);
 
         holder.name.setText(currentModel.getName());
-        holder.number.setText(currentModel.getNumber());
+        // Backup contacts are only alerted after the "alert first" tier has been confirmed
+        holder.number.setText(currentModel.getPriority() == ContactModel.PRIORITY_PRIMARY
+                ? currentModel.getNumber()
+                : currentModel.getNumber() + "  ·  backup");
 
         // Call button click listener
         holder.callButton.setOnClickListener(new View.OnClickListener() {
@@ -259,21 +263,7 @@ public class ContactRecyclerAdapter extends RecyclerView.Adapter<ContactRecycler
                             .setPositiveButton("Yes", new DialogInterface.OnClickListener() {
                                 @Override
                                 public void onClick(DialogInterface dialog, int which) {
-                                    databaseHelper = new DatabaseHelper(context);
-                                    boolean checkData = databaseHelper.deleteData(model.getId());
-                                    if (checkData) {
-                                        Toast.makeText(context, "Contact Deleted", Toast.LENGTH_SHORT).show();
-                                        modelArrayList.remove(adapterPosition);
-                                        notifyItemRemoved(adapterPosition);
-                                        notifyItemRangeChanged(adapterPosition, modelArrayList.size());
-
-                                        // Notify the activity that a contact was deleted
-                                        if (deleteListener != null) {
-                                            deleteListener.onContactDeleted();
-                                        }
-                                    } else {
-                                        Toast.makeText(context, "Failed to delete contact", Toast.LENGTH_SHORT).show();
-                                    }
+                                    deleteContact(model);
                                 }
                             })
                             .setNegativeButton("No", new DialogInterface.OnClickListener() {
@@ -287,43 +277,29 @@ public class ContactRecyclerAdapter extends RecyclerView.Adapter<ContactRecycler
             }
         });
 
-        // Long click listener for item view
+        // Long click: choose whether the contact is alerted first or as a backup, or delete it
         holder.itemView.setOnLongClickListener(new View.OnLongClickListener() {
             @Override
             public boolean onLongClick(View view) {
                 int adapterPosition = holder.getAdapterPosition();
                 if (adapterPosition != RecyclerView.NO_POSITION) {
                     ContactModel model = modelArrayList.get(adapterPosition);
+                    boolean primary = model.getPriority() == ContactModel.PRIORITY_PRIMARY;
+                    String[] options = {primary ? "Alert as backup" : "Alert first", "Delete"};
 
                     new AlertDialog.Builder(context)
-                            .setTitle("Delete")
-                            .setMessage("Are you sure you want to delete this contact?")
-                            .setPositiveButton("Yes", new DialogInterface.OnClickListener() {
+                            .setTitle(model.getName())
+                            .setItems(options, new DialogInterface.OnClickListener() {
                                 @Override
                                 public void onClick(DialogInterface dialog, int which) {
-                                    databaseHelper = new DatabaseHelper(context);
-                                    boolean checkData = databaseHelper.deleteData(model.getId());
-                                    if (checkData) {
-                                        Toast.makeText(context, "Contact Deleted", Toast.LENGTH_SHORT).show();
-                                        modelArrayList.remove(adapterPosition);
-                                        notifyItemRemoved(adapterPosition);
-                                        notifyItemRangeChanged(adapterPosition, modelArrayList.size());
-
-                                        // Notify the activity that a contact was deleted
-                                        if (deleteListener != null) {
-                                            deleteListener.onContactDeleted();
-                                        }
+                                    if (which == 0) {
+                                        contactRepository.setPriority(model.getId(),
+                                                primary ? ContactModel.PRIORITY_SECONDARY : ContactModel.PRIORITY_PRIMARY, null);
                                     } else {
-                                        Toast.makeText(context, "Failed to delete contact", Toast.LENGTH_SHORT).show();
+                                        confirmDelete(model);
                                     }
                                 }
                             })
-                            .setNegativeButton("No", new DialogInterface.OnClickListener() {
-                                @Override
-                                public void onClick(DialogInterface dialog, int which) {
-                                    dialog.dismiss();
-                                }
-                            })
                             .show();
                 }
                 return true;
@@ -331,6 +307,42 @@ public class ContactRecyclerAdapter extends RecyclerView.Adapter<ContactRecycler
         });
     }
 
+    private void confirmDelete(ContactModel model) {
+        new AlertDialog.Builder(context)
+                .setTitle("Delete")
+                .setMessage("Are you sure you want to delete this contact?")
+                .setPositiveButton("Yes", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        deleteContact(model);
+                    }
+                })
+                .setNegativeButton("No", new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        dialog.dismiss();
+                    }
+                })
+                .show();
+    }
+
+    // The repository deletes on the database thread; the row itself disappears when the activity
+    // receives the new contact snapshot
+    private void deleteContact(ContactModel model) {
+        contactRepository.delete(model.getId(), checkData -> {
+            if (checkData) {
+                Toast.makeText(context, "Contact Deleted", Toast.LENGTH_SHORT).show();
+
+                // Notify the activity that a contact was deleted
+                if (deleteListener != null) {
+                    deleteListener.onContactDeleted();
+                }
+            } else {
+                Toast.makeText(context, "Failed to delete contact", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
     @Override
     public int getItemCount() {
         return modelArrayList.size();
@@ -0,0 +1,262 @@
+package com.example.sos;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// In-memory copy of the contact table, loaded once per process and kept in sync on every write.
+// Writes made here are broadcast to the detector process (see DetectorChannel), which reloads its copy.
+// Readers get an immutable snapshot (O(1), any thread); writers replace it copy-on-write from the
+// database thread and observers are told about the new snapshot on the main thread.
+public class ContactRepository {
+
+    private static final String TAG = "ContactRepository";
+
+    // Outcomes of insert()
+    public static final int INSERTED = 0;
+    public static final int LIMIT_REACHED = 1;
+    public static final int INSERT_FAILED = 2;
+    public static final int DUPLICATE = 3;
+
+    public interface Observer {
+        void onContactsChanged(List<ContactModel> contacts);
+    }
+
+    // Progress of insertAll, delivered on the main thread
+    public interface ImportListener {
+        void onImportProgress(int done, int total);
+        void onImportFinished(ImportResult result);
+    }
+
+    public static final class ImportResult {
+        public int inserted;
+        public int duplicates;   // Already saved, or picked twice
+        public int overLimit;    // Didn't fit under the contact limit
+        public int failed;
+    }
+
+    private static ContactRepository instance;
+
+    private final Context context;
+    private final DatabaseHelper db;
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+    // Only replaced on the database thread, never mutated
+    private volatile List<ContactModel> snapshot = Collections.emptyList();
+    private volatile boolean loaded = false;
+
+    public static synchronized ContactRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ContactRepository(context.getApplicationContext(), DatabaseHelper.getInstance(context));
+        }
+        return instance;
+    }
+
+    private ContactRepository(Context context, DatabaseHelper db) {
+        this.context = context;
+        this.db = db;
+        // Cold start: queued before any write, so writes always see a loaded snapshot
+        AppExecutors.database().execute(() -> {
+            publish(db.fetchData());
+            loaded = true;
+            Log.d(TAG, "Loaded " + snapshot.size() + " contacts.");
+        });
+    }
+
+    // Current contacts; empty until the first load has finished (see whenLoaded)
+    public List<ContactModel> getContacts() {
+        return snapshot;
+    }
+
+    // Another process changed the table; re-reads it and tells observers
+    public void reload() {
+        AppExecutors.database().execute(() -> {
+            publish(db.fetchData());
+            Log.d(TAG, "Reloaded " + snapshot.size() + " contacts.");
+        });
+    }
+
+    public int getCount() {
+        return snapshot.size();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    // Delivers the snapshot on the main thread, straight away if it's already loaded
+    public void whenLoaded(ContactDao.Callback<List<ContactModel>> callback) {
+        if (loaded) {
+            AppExecutors.mainThread().execute(() -> callback.onResult(snapshot));
+        } else {
+            // Anything queued on the database thread runs after the cold-start load
+            AppExecutors.database().execute(() -> {
+                List<ContactModel> contacts = snapshot;
+                AppExecutors.mainThread().execute(() -> callback.onResult(contacts));
+            });
+        }
+    }
+
+    // The observer gets the current snapshot right away (once loaded) and every change after that
+    public void addObserver(Observer observer) {
+        observers.addIfAbsent(observer);
+        whenLoaded(contacts -> {
+            if (observers.contains(observer)) observer.onContactsChanged(contacts);
+        });
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    public void insert(String name, String number, int limit, @Nullable ContactDao.Callback<Integer> callback) {
+        AppExecutors.database().execute(() -> {
+            int result;
+            String normalized = db.normalizeNumber(number);
+            if (snapshot.size() >= limit) {
+                result = LIMIT_REACHED;
+            } else if (findByNumber(normalized) != null) {
+                result = DUPLICATE;
+            } else {
+                long id = db.insertContact(name, number);
+                if (id == -1) {
+                    result = INSERT_FAILED;
+                } else {
+                    List<ContactModel> next = new ArrayList<>(snapshot);
+                    next.add(new ContactModel(String.valueOf(id), name, normalized));
+                    publishChange(next);
+                    result = INSERTED;
+                }
+            }
+            deliver(callback, result);
+        });
+    }
+
+    // Batch version of insert for the contact-book import: duplicates and anything over the limit are
+    // filtered against the snapshot first, the rest goes into the database in a single transaction and
+    // observers hear about it once.
+    public void insertAll(List<ContactModel> contacts, int limit, ImportListener listener) {
+        AppExecutors.database().execute(() -> {
+            ImportResult result = new ImportResult();
+            List<ContactModel> accepted = new ArrayList<>();
+            List<String> numbers = new ArrayList<>();
+            for (ContactModel contact : contacts) {
+                String normalized = db.normalizeNumber(contact.getNumber());
+                if (normalized == null) {
+                    result.failed++;
+                } else if (findByNumber(normalized) != null || numbers.contains(normalized)) {
+                    result.duplicates++;
+                } else if (snapshot.size() + accepted.size() >= limit) {
+                    result.overLimit++;
+                } else {
+                    numbers.add(normalized);
+                    accepted.add(new ContactModel(null, contact.getName(), normalized,
+                            contact.getPriority(), contact.getChannel()));
+                }
+            }
+
+            final int total = accepted.size();
+            long[] ids = db.insertContacts(accepted, done ->
+                    AppExecutors.mainThread().execute(() -> listener.onImportProgress(done, total)));
+
+            List<ContactModel> next = new ArrayList<>(snapshot);
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == -1) {
+                    result.failed++;
+                } else {
+                    ContactModel contact = accepted.get(i);
+                    next.add(new ContactModel(String.valueOf(ids[i]), contact.getName(), contact.getNumber(),
+                            contact.getPriority(), contact.getChannel()));
+                    result.inserted++;
+                }
+            }
+            if (result.inserted > 0) publishChange(next);
+            Log.d(TAG, "Imported " + result.inserted + " of " + contacts.size() + " contacts.");
+            AppExecutors.mainThread().execute(() -> listener.onImportFinished(result));
+        });
+    }
+
+    public void update(String id, String name, String number, @Nullable ContactDao.Callback<Boolean> callback) {
+        AppExecutors.database().execute(() -> {
+            boolean updated = db.updateData(id, name, number);
+            if (updated) {
+                String normalized = db.normalizeNumber(number);
+                List<ContactModel> next = new ArrayList<>(snapshot.size());
+                for (ContactModel contact : snapshot) {
+                    next.add(id.equals(contact.getId())
+                            ? new ContactModel(id, name, normalized, contact.getPriority(), contact.getChannel())
+                            : contact);
+                }
+                publishChange(next);
+            }
+            deliver(callback, updated);
+        });
+    }
+
+    // Which alert tier the contact is in (see SmsDispatcher)
+    public void setPriority(String id, int priority, @Nullable ContactDao.Callback<Boolean> callback) {
+        AppExecutors.database().execute(() -> {
+            boolean updated = db.updatePriority(id, priority);
+            if (updated) {
+                List<ContactModel> next = new ArrayList<>(snapshot.size());
+                for (ContactModel contact : snapshot) {
+                    next.add(id.equals(contact.getId())
+                            ? new ContactModel(id, contact.getName(), contact.getNumber(), priority, contact.getChannel())
+                            : contact);
+                }
+                publishChange(next);
+            }
+            deliver(callback, updated);
+        });
+    }
+
+    public void delete(String id, @Nullable ContactDao.Callback<Boolean> callback) {
+        AppExecutors.database().execute(() -> {
+            boolean deleted = db.deleteData(id);
+            if (deleted) {
+                List<ContactModel> next = new ArrayList<>(snapshot.size());
+                for (ContactModel contact : snapshot) {
+                    if (!id.equals(contact.getId())) next.add(contact);
+                }
+                publishChange(next);
+            }
+            deliver(callback, deleted);
+        });
+    }
+
+    @Nullable
+    private ContactModel findByNumber(String normalized) {
+        if (normalized == null) return null;
+        for (ContactModel contact : snapshot) {
+            if (normalized.equals(contact.getNumber())) return contact;
+        }
+        return null;
+    }
+
+    // Database thread only
+    private void publish(List<ContactModel> contacts) {
+        final List<ContactModel> next = Collections.unmodifiableList(contacts);
+        snapshot = next;
+        if (!loaded) return; // The cold-start load is delivered through whenLoaded/addObserver
+        AppExecutors.mainThread().execute(() -> {
+            for (Observer observer : observers) observer.onContactsChanged(next);
+        });
+    }
+
+    // Database thread only; for changes made in this process
+    private void publishChange(List<ContactModel> contacts) {
+        publish(contacts);
+        DetectorChannel.notifyDataChanged(context, DetectorChannel.DATA_CONTACTS);
+    }
+
+    private static <T> void deliver(@Nullable ContactDao.Callback<T> callback, T result) {
+        if (callback != null) {
+            AppExecutors.mainThread().execute(() -> callback.onResult(result));
+        }
+    }
+}
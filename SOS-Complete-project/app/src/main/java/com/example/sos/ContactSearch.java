@@ -0,0 +1,80 @@
+// ContactSearch.java
+package com.example.sos;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Turns what the user types into the search box into an FTS4 MATCH expression for contact_fts.
+// Every word becomes a prefix term, so results narrow as they type. Numbers are indexed as bare
+// international digits, so digits typed in national form get the default country code put in front.
+// Plain Java so it can be unit tested.
+public final class ContactSearch {
+
+    private ContactSearch() { }
+
+    // Returns null when there is nothing searchable in the input (show everything instead)
+    public static String buildMatchQuery(String input, String defaultCallingCode) {
+        if (input == null) return null;
+        List<String> terms = new ArrayList<>();
+        StringBuilder number = new StringBuilder();
+        for (String word : input.trim().split("\\s+")) {
+            if (looksLikeNumber(word)) {
+                // "+91 98765 43210" is one number typed with spaces
+                number.append(word);
+                continue;
+            }
+            addNumberTerm(terms, number, defaultCallingCode);
+            addNameTerms(terms, word);
+        }
+        addNumberTerm(terms, number, defaultCallingCode);
+        if (terms.isEmpty()) return null;
+        // Space means AND in FTS4
+        StringBuilder query = new StringBuilder();
+        for (String term : terms) {
+            if (query.length() > 0) query.append(' ');
+            query.append(term);
+        }
+        return query.toString();
+    }
+
+    private static boolean looksLikeNumber(String word) {
+        boolean hasDigit = false;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c != '+' && c != '-' && c != '(' && c != ')') {
+                return false;
+            }
+        }
+        return hasDigit;
+    }
+
+    private static void addNumberTerm(List<String> terms, StringBuilder number, String defaultCallingCode) {
+        if (number.length() == 0) return;
+        String word = number.toString();
+        number.setLength(0);
+        boolean international = word.startsWith("+");
+        String digits = word.replaceAll("[^0-9]", "");
+        if (international) {
+            // Already international
+        } else if (digits.startsWith("00")) {
+            digits = digits.substring(2);
+        } else if (defaultCallingCode != null && digits.startsWith("0")) {
+            digits = defaultCallingCode + digits.replaceFirst("^0+", "");
+        } else if (defaultCallingCode != null && !digits.startsWith(defaultCallingCode)) {
+            digits = defaultCallingCode + digits;
+        }
+        if (!digits.isEmpty()) terms.add(ContactMigrations.FTS_NUMBER_COLUMN + ":" + digits + "*");
+    }
+
+    // Splits on anything that isn't a letter or digit, like the FTS tokenizer does ("O'Brien" is "o" and
+    // "brien"), which also drops FTS syntax characters (quotes, '*', '-', ':') so input can't break the query.
+    // Lower-cased so a typed "OR" or "NOT" is searched for rather than read as an operator.
+    private static void addNameTerms(List<String> terms, String word) {
+        for (String part : word.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!part.isEmpty()) terms.add(ContactMigrations.FTS_NAME_COLUMN + ":" + part + "*");
+        }
+    }
+}
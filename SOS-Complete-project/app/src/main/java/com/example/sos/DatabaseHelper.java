@@ -3,74 +3,171 @@ package com.example.sos;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.telephony.TelephonyManager;
+import android.text.TextUtils;
+import android.util.Log;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntConsumer;
 
+// One instance per process (see getInstance): SQLite connections are expensive to open and WAL only helps
+// if every reader and writer shares the same connection pool. Don't call these methods on the UI thread,
+// go through ContactRepository (or ContactDao for searches) instead.
 public class DatabaseHelper extends SQLiteOpenHelper {
 
+    private static final String TAG = "DatabaseHelper";
     private static final String DATABASE_NAME = "CONTACT.db";
-    private static final int DATABASE_VERSION = 1;
-    private static final String TABLE_NAME = "contact_table";
-    private static final String ID = "ID";
-    private static final String NAME_COLUMN = "NAME";
-    private static final String MOBILE_COLUMN = "MOBILE";
+    // The schema itself lives in ContactMigrations
+    private static final int DATABASE_VERSION = ContactMigrations.LATEST_VERSION;
+    private static final String TABLE_NAME = ContactMigrations.TABLE_NAME;
+    private static final String ID = ContactMigrations.ID;
+    private static final String NAME_COLUMN = ContactMigrations.NAME_COLUMN;
+    private static final String MOBILE_COLUMN = ContactMigrations.MOBILE_COLUMN;
+    private static final String PRIORITY_COLUMN = ContactMigrations.PRIORITY_COLUMN;
+    private static final String CHANNEL_COLUMN = ContactMigrations.CHANNEL_COLUMN;
 
+    private static final String CONTACT_COLUMNS = ID + ", " + NAME_COLUMN + ", " + MOBILE_COLUMN + ", " +
+            PRIORITY_COLUMN + ", " + CHANNEL_COLUMN;
 
-    DatabaseHelper(Context context)
+    private static DatabaseHelper instance;
+
+    // Country code used for numbers typed without one, worked out once from the SIM
+    private final String defaultCallingCode;
+
+    // Compiled once on first use and reused for every call
+    private SQLiteStatement insertStatement;
+    private SQLiteStatement countStatement;
+    private SQLiteStatement deleteStatement;
+
+    public static synchronized DatabaseHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new DatabaseHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DatabaseHelper(Context context)
     {
         super(context, DATABASE_NAME,null,DATABASE_VERSION);
+        defaultCallingCode = PhoneNumberNormalizer.callingCodeForRegion(detectRegion(context));
+        // Readers (the alert path) never wait behind a writer (the contact screens) and vice versa
+        setWriteAheadLoggingEnabled(true);
     }
 
     @Override
     public void onCreate(SQLiteDatabase db) {
-        db.execSQL("create table " + TABLE_NAME +
-                "("+ ID +" INTEGER PRIMARY KEY AUTOINCREMENT," +
-                NAME_COLUMN + " TEXT," +
-                MOBILE_COLUMN + " TEXT" + ")");
+        ContactMigrations.create(wrap(db), defaultCallingCode);
     }
 
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.d(TAG, "Migrating contacts from v" + oldVersion + " to v" + newVersion);
+        ContactMigrations.migrate(wrap(db), oldVersion, newVersion, defaultCallingCode);
+    }
+
+    // Every number goes through here before it is written, so the unique index sees one spelling per number
+    public String normalizeNumber(String mob) {
+        return PhoneNumberNormalizer.normalize(mob, defaultCallingCode);
     }
 
     public boolean insertDataFunc (String name, String mob)
     {
-            SQLiteDatabase db = this.getWritableDatabase();
-            ContentValues contentValues = new ContentValues();
+        return insertContact(name, mob) != -1;
+    }
 
-            contentValues.put(NAME_COLUMN, name);
-            contentValues.put(MOBILE_COLUMN, mob);
+    public long insertContact(String name, String mob)
+    {
+        return insertContact(name, mob, ContactModel.PRIORITY_PRIMARY, ContactModel.CHANNEL_SMS);
+    }
 
-            long result = db.insert(TABLE_NAME, null, contentValues);
-        return result != -1;
+    // Returns the new row id, or -1 on failure (including a number that is already saved)
+    public synchronized long insertContact(String name, String mob, int priority, String channel)
+    {
+        if (insertStatement == null) {
+            insertStatement = getWritableDatabase().compileStatement(
+                    "INSERT INTO " + TABLE_NAME + " (" + NAME_COLUMN + ", " + MOBILE_COLUMN + ", " +
+                            PRIORITY_COLUMN + ", " + CHANNEL_COLUMN + ") VALUES (?, ?, ?, ?)");
+        }
+        insertStatement.clearBindings();
+        bindNullable(insertStatement, 1, name);
+        bindNullable(insertStatement, 2, normalizeNumber(mob));
+        insertStatement.bindLong(3, priority);
+        insertStatement.bindString(4, channel);
+        try {
+            return insertStatement.executeInsert();
+        } catch (SQLiteConstraintException e) {
+            Log.w(TAG, "Number is already saved, not inserting it again.");
+            return -1;
+        }
     }
 
-    public int count(){
-        int count=0;
-        String query="SELECT COUNT(*) FROM "+TABLE_NAME;
-        SQLiteDatabase db = this.getReadableDatabase();
-        Cursor c=db.rawQuery(query,null);
-        if(c.getCount()>0){
-            c.moveToFirst();
-            count=c.getInt(0);
+    // Inserts every contact in one transaction, so there's one journal commit instead of one per row.
+    // Rows are accepted or rejected one by one: ids[i] is -1 for a row that was rejected (e.g. a duplicate
+    // number) and the rest still go in. Only an I/O failure rolls the whole batch back.
+    public synchronized long[] insertContacts(List<ContactModel> contacts, IntConsumer onRowDone)
+    {
+        long[] ids = new long[contacts.size()];
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            for (int i = 0; i < contacts.size(); i++) {
+                ContactModel contact = contacts.get(i);
+                ids[i] = insertContact(contact.getName(), contact.getNumber(), contact.getPriority(), contact.getChannel());
+                if (onRowDone != null) onRowDone.accept(i + 1);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
         }
-        c.close();
-        return count;
+        return ids;
+    }
+
+    public synchronized int count(){
+        if (countStatement == null) {
+            countStatement = getReadableDatabase().compileStatement("SELECT COUNT(*) FROM " + TABLE_NAME);
+        }
+        return (int) countStatement.simpleQueryForLong();
     }
 
     public ArrayList<ContactModel> fetchData(){
+        return queryContacts("SELECT " + CONTACT_COLUMNS + " FROM " + TABLE_NAME + " ORDER BY " + ID, null);
+    }
+
+    // One page of the contact list, optionally filtered by what the user typed. Keyset paging on ID:
+    // pass the last ID of the previous page (or 0), so a page costs the same wherever you are in the list.
+    public ArrayList<ContactModel> searchContacts(String input, long afterId, int limit){
+        String match = ContactSearch.buildMatchQuery(input, defaultCallingCode);
+        if (match == null) {
+            return queryContacts("SELECT " + CONTACT_COLUMNS + " FROM " + TABLE_NAME +
+                            " WHERE " + ID + " > ? ORDER BY " + ID + " LIMIT " + limit,
+                    new String[]{String.valueOf(afterId)});
+        }
+        return queryContacts("SELECT " + CONTACT_COLUMNS + " FROM " + TABLE_NAME +
+                        " WHERE " + ID + " IN (SELECT docid FROM " + ContactMigrations.FTS_TABLE +
+                        " WHERE " + ContactMigrations.FTS_TABLE + " MATCH ?)" +
+                        " AND " + ID + " > ? ORDER BY " + ID + " LIMIT " + limit,
+                new String[]{match, String.valueOf(afterId)});
+    }
 
+    private ArrayList<ContactModel> queryContacts(String sql, String[] args){
         SQLiteDatabase db = this.getReadableDatabase();
-        Cursor result = db.rawQuery(" select * from "+TABLE_NAME,null);
         ArrayList<ContactModel> dataArrayList = new ArrayList<>();
-        while (result.moveToNext()){
-            ContactModel model = new ContactModel();
-            model.id = result.getString(0);
-            model.name = result.getString(1);
-            model.number = result.getString(2);
-            dataArrayList.add(model);
+        try (Cursor result = db.rawQuery(sql, args)) {
+            while (result.moveToNext()){
+                ContactModel model = new ContactModel();
+                model.id = result.getString(0);
+                model.name = result.getString(1);
+                model.number = result.getString(2);
+                model.priority = result.getInt(3);
+                model.channel = result.getString(4);
+                dataArrayList.add(model);
+            }
         }
         return dataArrayList;
     }
@@ -82,21 +179,194 @@ public class DatabaseHelper extends SQLiteOpenHelper {
 
         contentValues.put(ID,id);
         contentValues.put(NAME_COLUMN, name);
-        contentValues.put(MOBILE_COLUMN, mob);
+        contentValues.put(MOBILE_COLUMN, normalizeNumber(mob));
 
-        int result = db.update(TABLE_NAME, contentValues, "ID = ?",new String[]{id});
-        if (result==-1)
+        try {
+            int result = db.update(TABLE_NAME, contentValues, "ID = ?",new String[]{id});
+            return result > 0;
+        } catch (SQLiteConstraintException e) {
+            // Another contact already has this number
             return false;
-        else
-            return true;
+        }
     }
 
-    public boolean deleteData (String id) {
-        SQLiteDatabase db = this.getWritableDatabase();
-        int result = db.delete(TABLE_NAME, " ID = ?",new String[]{id});
-        if (result==-1)
-            return false;
-        else
-            return true;
+    public boolean updatePriority(String id, int priority)
+    {
+        ContentValues contentValues = new ContentValues();
+        contentValues.put(PRIORITY_COLUMN, priority);
+        return getWritableDatabase().update(TABLE_NAME, contentValues, ID + " = ?", new String[]{id}) > 0;
+    }
+
+    public synchronized boolean deleteData (String id) {
+        if (deleteStatement == null) {
+            deleteStatement = getWritableDatabase().compileStatement("DELETE FROM " + TABLE_NAME + " WHERE " + ID + " = ?");
+        }
+        deleteStatement.clearBindings();
+        deleteStatement.bindString(1, id);
+        return deleteStatement.executeUpdateDelete() > 0;
+    }
+
+    // --- Alert history (see AlertHistory) ---
+
+    public long insertAlert(String sessionId, String source, long triggeredAt) {
+        ContentValues values = new ContentValues();
+        values.put(ContactMigrations.ALERT_SESSION, sessionId);
+        values.put(ContactMigrations.ALERT_SOURCE, source);
+        values.put(ContactMigrations.ALERT_TRIGGERED_AT, triggeredAt);
+        return getWritableDatabase().insert(ContactMigrations.ALERTS_TABLE, null, values);
+    }
+
+    // Stage columns only keep their first value, e.g. a follow-up SMS doesn't move FIRST_SMS_AT
+    public void markAlertStage(long alertId, String stageColumn, long atMs) {
+        getWritableDatabase().execSQL("UPDATE " + ContactMigrations.ALERTS_TABLE + " SET " + stageColumn +
+                " = COALESCE(" + stageColumn + ", ?) WHERE " + ID + " = ?", new Object[]{atMs, alertId});
+    }
+
+    public void updateAlert(long alertId, ContentValues values) {
+        getWritableDatabase().update(ContactMigrations.ALERTS_TABLE, values, ID + " = ?", new String[]{String.valueOf(alertId)});
+    }
+
+    // Dispatches add up (the first alert SMS plus any location follow-up)
+    public void addAlertDispatchOutcome(long alertId, int sent, int failed, int unconfirmed, long doneAt) {
+        getWritableDatabase().execSQL("UPDATE " + ContactMigrations.ALERTS_TABLE + " SET " +
+                ContactMigrations.ALERT_SMS_SENT + " = " + ContactMigrations.ALERT_SMS_SENT + " + ?, " +
+                ContactMigrations.ALERT_SMS_FAILED + " = " + ContactMigrations.ALERT_SMS_FAILED + " + ?, " +
+                ContactMigrations.ALERT_SMS_UNCONFIRMED + " = " + ContactMigrations.ALERT_SMS_UNCONFIRMED + " + ?, " +
+                ContactMigrations.ALERT_DISPATCH_DONE_AT + " = ? WHERE " + ID + " = ?",
+                new Object[]{sent, failed, unconfirmed, doneAt, alertId});
+    }
+
+    // Newest first, keyset paged on (TRIGGERED_AT, ID): pass the last
+    // entry of the previous page, or Long.MAX_VALUE for both to start at the top
+    public ArrayList<AlertHistory.Entry> fetchAlerts(long beforeTriggeredAt, long beforeId, int limit) {
+        ArrayList<AlertHistory.Entry> entries = new ArrayList<>();
+        String t = ContactMigrations.ALERT_TRIGGERED_AT;
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + ID + ", " +
+                ContactMigrations.ALERT_SESSION + ", " + ContactMigrations.ALERT_SOURCE + ", " + t + ", " +
+                ContactMigrations.ALERT_LOCATION_AT + ", " + ContactMigrations.ALERT_FIRST_SMS_AT + ", " +
+                ContactMigrations.ALERT_DISPATCH_DONE_AT + ", " + ContactMigrations.ALERT_RECORDING_STARTED_AT + ", " +
+                ContactMigrations.ALERT_RECORDING_ENDED_AT + ", " + ContactMigrations.ALERT_LATITUDE + ", " +
+                ContactMigrations.ALERT_LONGITUDE + ", " + ContactMigrations.ALERT_SMS_SENT + ", " +
+                ContactMigrations.ALERT_SMS_FAILED + ", " + ContactMigrations.ALERT_SMS_UNCONFIRMED + ", " +
+                ContactMigrations.ALERT_RECORDING + ", " + ContactMigrations.ALERT_COMPACTED +
+                " FROM " + ContactMigrations.ALERTS_TABLE +
+                // Written as a range on TRIGGERED_AT plus a tie-break, so SQLite seeks into the index
+                // instead of walking it from the newest entry on every page
+                " WHERE " + t + " <= ? AND (" + t + " < ? OR " + ID + " < ?)" +
+                " ORDER BY " + t + " DESC, " + ID + " DESC LIMIT " + limit,
+                new String[]{String.valueOf(beforeTriggeredAt), String.valueOf(beforeTriggeredAt), String.valueOf(beforeId)})) {
+            while (cursor.moveToNext()) {
+                AlertHistory.Entry entry = new AlertHistory.Entry();
+                entry.id = cursor.getLong(0);
+                entry.sessionId = cursor.getString(1);
+                entry.source = cursor.getString(2);
+                entry.triggeredAt = cursor.getLong(3);
+                entry.locationAt = getNullableLong(cursor, 4);
+                entry.firstSmsAt = getNullableLong(cursor, 5);
+                entry.dispatchDoneAt = getNullableLong(cursor, 6);
+                entry.recordingStartedAt = getNullableLong(cursor, 7);
+                entry.recordingEndedAt = getNullableLong(cursor, 8);
+                entry.hasLocation = !cursor.isNull(9) && !cursor.isNull(10);
+                entry.latitude = cursor.getDouble(9);
+                entry.longitude = cursor.getDouble(10);
+                entry.smsSent = cursor.getInt(11);
+                entry.smsFailed = cursor.getInt(12);
+                entry.smsUnconfirmed = cursor.getInt(13);
+                entry.recording = cursor.getString(14);
+                entry.compacted = cursor.getInt(15) != 0;
+                entries.add(entry);
+            }
+        }
+        return entries;
+    }
+
+    // Applies the retention policy in one transaction
+    public AlertRetention.Result compactAlerts(long nowMs) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransactionNonExclusive();
+        try {
+            AlertRetention.Result result = AlertRetention.compact(wrap(db), nowMs);
+            db.setTransactionSuccessful();
+            return result;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    // --- Safety zones (see SafetyZones) ---
+
+    public long insertZone(String name, double latitude, double longitude, float radiusM) {
+        ContentValues values = new ContentValues();
+        values.put(ContactMigrations.ZONE_NAME, name);
+        values.put(ContactMigrations.ZONE_LATITUDE, latitude);
+        values.put(ContactMigrations.ZONE_LONGITUDE, longitude);
+        values.put(ContactMigrations.ZONE_RADIUS, radiusM);
+        return getWritableDatabase().insert(ContactMigrations.ZONES_TABLE, null, values);
+    }
+
+    public boolean deleteZone(long zoneId) {
+        return getWritableDatabase().delete(ContactMigrations.ZONES_TABLE, ID + " = ?",
+                new String[]{String.valueOf(zoneId)}) > 0;
+    }
+
+    public ArrayList<SafetyZones.Zone> fetchZones() {
+        ArrayList<SafetyZones.Zone> zones = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + ID + ", " + ContactMigrations.ZONE_NAME + ", " +
+                ContactMigrations.ZONE_LATITUDE + ", " + ContactMigrations.ZONE_LONGITUDE + ", " +
+                ContactMigrations.ZONE_RADIUS + " FROM " + ContactMigrations.ZONES_TABLE + " ORDER BY " + ID, null)) {
+            while (cursor.moveToNext()) {
+                zones.add(new SafetyZones.Zone(cursor.getLong(0), cursor.getString(1),
+                        cursor.getDouble(2), cursor.getDouble(3), cursor.getFloat(4)));
+            }
+        }
+        return zones;
+    }
+
+    private static long getNullableLong(Cursor cursor, int index) {
+        return cursor.isNull(index) ? -1 : cursor.getLong(index);
+    }
+
+    // SIM country first (where the user's contacts most likely are), then the network, then the locale
+    private static String detectRegion(Context context) {
+        TelephonyManager telephony = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+        if (telephony != null) {
+            if (!TextUtils.isEmpty(telephony.getSimCountryIso())) return telephony.getSimCountryIso();
+            if (!TextUtils.isEmpty(telephony.getNetworkCountryIso())) return telephony.getNetworkCountryIso();
+        }
+        return Locale.getDefault().getCountry();
+    }
+
+    private static ContactMigrations.Database wrap(SQLiteDatabase db) {
+        return new ContactMigrations.Database() {
+            @Override
+            public void execSQL(String sql, Object[] bindArgs) {
+                if (bindArgs == null) {
+                    db.execSQL(sql);
+                } else {
+                    db.execSQL(sql, bindArgs);
+                }
+            }
+
+            @Override
+            public List<String[]> query(String sql) {
+                List<String[]> rows = new ArrayList<>();
+                try (Cursor cursor = db.rawQuery(sql, null)) {
+                    while (cursor.moveToNext()) {
+                        String[] row = new String[cursor.getColumnCount()];
+                        for (int i = 0; i < row.length; i++) row[i] = cursor.getString(i);
+                        rows.add(row);
+                    }
+                }
+                return rows;
+            }
+        };
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
     }
 }
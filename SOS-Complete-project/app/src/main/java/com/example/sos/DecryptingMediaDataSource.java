@@ -0,0 +1,32 @@
+// DecryptingMediaDataSource.java
+package com.example.sos;
+
+import android.media.MediaDataSource;
+
+import java.io.IOException;
+
+// Lets MediaPlayer, MediaExtractor and MediaMetadataRetriever read an encrypted recording directly,
+// decrypting chunk by chunk as they seek, without a plaintext copy on disk.
+public class DecryptingMediaDataSource extends MediaDataSource {
+
+    private final EncryptedFileReader reader;
+
+    public DecryptingMediaDataSource(EncryptedFileReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public int readAt(long position, byte[] buffer, int offset, int size) throws IOException {
+        return reader.read(position, buffer, offset, size);
+    }
+
+    @Override
+    public long getSize() {
+        return reader.getPlainSize();
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,142 @@
+// DetectorChannel.java
+package com.example.sos;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The small IPC link between ServiceMine, which runs in its own ":detector" process, and the UI process.
+// Status goes one way over a Messenger: the UI (DetectorLink) registers and gets every ServiceStatus
+// change as a Bundle. Changes go the other way as a package-local broadcast: when the UI saves contacts
+// or settings, the detector re-reads them, because its in-memory snapshots would otherwise go stale.
+public final class DetectorChannel {
+
+    private static final String TAG = "DetectorChannel";
+
+    static final int MSG_REGISTER = 1;   // replyTo: the client's Messenger
+    static final int MSG_STATUS = 2;     // data: a ServiceStatus.State, see toBundle
+
+    static final String ACTION_DATA_CHANGED = "com.example.sos.action.DATA_CHANGED";
+    static final String EXTRA_WHAT = "what";
+    static final String DATA_CONTACTS = "contacts";
+    static final String DATA_CONFIG = "config";
+
+    private static DetectorChannel instance; // Only ever created in the detector process
+
+    private final List<Messenger> clients = new ArrayList<>(); // Main thread only
+    private final Messenger messenger = new Messenger(new Handler(Looper.getMainLooper(), this::handleMessage));
+    private Context context; // Set while the receiver is registered
+
+    private final BroadcastReceiver dataChangedReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String what = intent.getStringExtra(EXTRA_WHAT);
+            Log.d(TAG, "UI changed " + what + ", reloading.");
+            if (DATA_CONTACTS.equals(what)) {
+                ContactRepository.getInstance(context).reload();
+            } else if (DATA_CONFIG.equals(what)) {
+                ConfigStore.getInstance(context).reload();
+            }
+        }
+    };
+
+    public static synchronized DetectorChannel getInstance() {
+        if (instance == null) {
+            instance = new DetectorChannel();
+        }
+        return instance;
+    }
+
+    private DetectorChannel() {
+        // Lives as long as the process, so the final "stopped" state still goes out after ServiceMine is gone
+        ServiceStatus.getInstance().addObserver(this::send);
+    }
+
+    // Called by the UI process after it saved something the detector keeps in memory
+    public static void notifyDataChanged(Context context, String what) {
+        context.sendBroadcast(new Intent(ACTION_DATA_CHANGED)
+                .setPackage(context.getPackageName())
+                .putExtra(EXTRA_WHAT, what));
+    }
+
+    // --- Detector side (ServiceMine) ---
+
+    public IBinder getBinder() {
+        return messenger.getBinder();
+    }
+
+    public void start(Context context) {
+        if (this.context != null) return;
+        this.context = context.getApplicationContext();
+        ContextCompat.registerReceiver(this.context, dataChangedReceiver,
+                new IntentFilter(ACTION_DATA_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    public void stop() {
+        if (context == null) return;
+        context.unregisterReceiver(dataChangedReceiver);
+        context = null;
+    }
+
+    private boolean handleMessage(Message msg) {
+        if (msg.what != MSG_REGISTER || msg.replyTo == null) return false;
+        // Same Messenger again when the UI reconnects to a restarted service
+        if (!clients.contains(msg.replyTo)) clients.add(msg.replyTo);
+        send(msg.replyTo, ServiceStatus.getInstance().get());
+        return true;
+    }
+
+    private void send(ServiceStatus.State state) {
+        for (Messenger client : new ArrayList<>(clients)) send(client, state);
+    }
+
+    private void send(Messenger client, ServiceStatus.State state) {
+        Message msg = Message.obtain(null, MSG_STATUS);
+        msg.setData(toBundle(state));
+        try {
+            client.send(msg);
+        } catch (RemoteException e) {
+            // The UI process is gone; it registers again when it comes back
+            clients.remove(client);
+        }
+    }
+
+    // --- Wire format ---
+
+    static Bundle toBundle(ServiceStatus.State state) {
+        Bundle bundle = new Bundle();
+        bundle.putBoolean("running", state.running);
+        bundle.putBoolean("sensor", state.sensorArmed);
+        bundle.putBoolean("voice", state.voiceArmed);
+        bundle.putBoolean("alert", state.alertInProgress);
+        bundle.putInt("stalls", state.stalls);
+        bundle.putInt("recoveries", state.recoveries);
+        bundle.putInt("pss", state.pssKb);
+        return bundle;
+    }
+
+    static ServiceStatus.State fromBundle(Bundle bundle) {
+        return new ServiceStatus.State(
+                bundle.getBoolean("running"),
+                bundle.getBoolean("sensor"),
+                bundle.getBoolean("voice"),
+                bundle.getBoolean("alert"),
+                bundle.getInt("stalls"),
+                bundle.getInt("recoveries"),
+                bundle.getInt("pss"));
+    }
+}
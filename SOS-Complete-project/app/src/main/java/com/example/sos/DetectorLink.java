@@ -0,0 +1,66 @@
+// DetectorLink.java
+package com.example.sos;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.RemoteException;
+import android.util.Log;
+
+// UI-process end of DetectorChannel. Binds to ServiceMine without starting it (the binding simply
+// connects whenever the detector is running) and copies every status it pushes into this process's
+// ServiceStatus, so screens keep observing ServiceStatus as if the service were local.
+public class DetectorLink {
+
+    private static final String TAG = "DetectorLink";
+
+    private static DetectorLink instance;
+
+    private final Messenger replyTo = new Messenger(new Handler(Looper.getMainLooper(), this::handleMessage));
+
+    private final ServiceConnection connection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            Message msg = Message.obtain(null, DetectorChannel.MSG_REGISTER);
+            msg.replyTo = replyTo;
+            try {
+                new Messenger(binder).send(msg);
+                Log.d(TAG, "Connected to the detector process.");
+            } catch (RemoteException e) {
+                // Died between connecting and now; onServiceDisconnected follows
+                Log.w(TAG, "Detector went away while registering.", e);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            // The detector process died (low memory kill or crash); it can't report that itself
+            Log.w(TAG, "Lost the detector process.");
+            ServiceStatus.getInstance().setRunning(false);
+        }
+    };
+
+    public static synchronized DetectorLink getInstance(Context context) {
+        if (instance == null) {
+            instance = new DetectorLink(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private DetectorLink(Context context) {
+        // Flags 0: no BIND_AUTO_CREATE, so watching the service never starts it or keeps it alive
+        context.bindService(new Intent(context, ServiceMine.class), connection, 0);
+    }
+
+    private boolean handleMessage(Message msg) {
+        if (msg.what != DetectorChannel.MSG_STATUS) return false;
+        ServiceStatus.getInstance().mirror(DetectorChannel.fromBundle(msg.getData()));
+        return true;
+    }
+}
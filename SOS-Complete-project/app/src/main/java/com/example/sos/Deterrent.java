@@ -0,0 +1,142 @@
+// Deterrent.java
+package com.example.sos;
+
+import android.content.Context;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraManager;
+import android.media.AudioAttributes;
+import android.media.SoundPool;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+// Optional siren and torch strobe while an alert runs (ConfigStore's deterrentEnabled).
+// The siren is loaded into a SoundPool when the service arms, so starting it at alert time is a single
+// play() on an already decoded sample. Everything runs on its own thread so it can never hold up the SMS
+// or the recording. ServiceMine stops it when the alert session ends normally, or when the user switches
+// the deterrent off. If the recording fails the session ends early and the siren carries on until MAX_MS,
+// which is also the backstop if nothing stops it.
+// Note: the siren will be loud on the evidence recording too; that's the user's trade-off.
+public class Deterrent {
+
+    private static final String TAG = "Deterrent";
+    private static final long STROBE_MS = 100; // On 100 ms, off 100 ms
+    private static final long MAX_MS = 60000;
+
+    private final Context context;
+    private final HandlerThread thread = new HandlerThread("deterrent");
+    private final Handler handler;
+    // Deterrent thread only
+    private SoundPool soundPool;
+    private int sirenId = 0;
+    private boolean sirenLoaded = false;
+    private int sirenStream = 0;
+    private String torchId; // null if there's no flash
+    private boolean torchOn = false;
+    private boolean running = false;
+
+    private final Runnable timeout = this::stopNow;
+    private final Runnable strobe = new Runnable() {
+        @Override
+        public void run() {
+            setTorch(!torchOn);
+            handler.postDelayed(this, STROBE_MS);
+        }
+    };
+
+    public Deterrent(Context context) {
+        this.context = context.getApplicationContext();
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    // Loads the siren and finds the flash; cheap to call again
+    public void prepare() {
+        handler.post(() -> {
+            if (soundPool != null) return;
+            soundPool = new SoundPool.Builder()
+                    .setMaxStreams(1)
+                    .setAudioAttributes(new AudioAttributes.Builder()
+                            .setUsage(AudioAttributes.USAGE_ALARM)
+                            .setContentType(AudioAttributes.CONTENT_TYPE_SONIFICATION)
+                            .build())
+                    .build();
+            soundPool.setOnLoadCompleteListener((pool, sampleId, status) -> {
+                sirenLoaded = status == 0;
+                Log.d(TAG, "Siren loaded: " + sirenLoaded);
+            });
+            sirenId = soundPool.load(context, R.raw.siren, 1);
+            torchId = findTorch();
+        });
+    }
+
+    public void start() {
+        handler.post(() -> {
+            if (running) {
+                // Still going from the previous alert: this alert gets its own full MAX_MS, not the leftovers
+                handler.removeCallbacks(timeout);
+                handler.postDelayed(timeout, MAX_MS);
+                return;
+            }
+            running = true;
+            if (sirenLoaded) {
+                sirenStream = soundPool.play(sirenId, 1f, 1f, 1, -1, 1f); // Loops until stopped
+            } else {
+                Log.w(TAG, "Siren not loaded, strobe only.");
+            }
+            if (torchId != null) handler.post(strobe);
+            handler.postDelayed(timeout, MAX_MS);
+        });
+    }
+
+    public void stop() {
+        handler.post(this::stopNow);
+    }
+
+    public void release() {
+        handler.post(() -> {
+            stopNow();
+            if (soundPool != null) soundPool.release();
+            soundPool = null;
+            sirenLoaded = false;
+        });
+        thread.quitSafely();
+    }
+
+    private void stopNow() {
+        if (!running) return;
+        running = false;
+        handler.removeCallbacks(strobe);
+        handler.removeCallbacks(timeout);
+        if (sirenStream != 0) soundPool.stop(sirenStream);
+        sirenStream = 0;
+        setTorch(false);
+    }
+
+    private String findTorch() {
+        CameraManager cameras = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+        if (cameras == null) return null;
+        try {
+            for (String id : cameras.getCameraIdList()) {
+                Boolean flash = cameras.getCameraCharacteristics(id).get(CameraCharacteristics.FLASH_INFO_AVAILABLE);
+                if (Boolean.TRUE.equals(flash)) return id;
+            }
+        } catch (CameraAccessException e) {
+            Log.w(TAG, "Could not look for a flash.", e);
+        }
+        return null;
+    }
+
+    private void setTorch(boolean on) {
+        if (torchId == null || on == torchOn) return;
+        try {
+            ((CameraManager) context.getSystemService(Context.CAMERA_SERVICE)).setTorchMode(torchId, on);
+            torchOn = on;
+        } catch (CameraAccessException | IllegalArgumentException e) {
+            // Another app has the camera; keep the siren going without the strobe
+            Log.w(TAG, "Torch unavailable.", e);
+            torchId = null;
+        }
+    }
+}
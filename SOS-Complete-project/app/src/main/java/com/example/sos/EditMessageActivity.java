@@ -3,7 +3,6 @@ package com.example.sos;
 import androidx.appcompat.app.ActionBar;
 import androidx.appcompat.app.AppCompatActivity;
 
-import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.view.MenuItem;
 import android.view.View;
@@ -11,13 +10,16 @@ import android.widget.Toast;
 
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.materialswitch.MaterialSwitch;
 import com.google.android.material.textfield.TextInputEditText;
 
 public class EditMessageActivity extends AppCompatActivity {
     TextInputEditText etMessage;
     MaterialButton btnSave, btnReset;
+    MaterialSwitch switchDeterrent;
     String editMsg;
     MaterialToolbar appBar;
+    ConfigStore configStore;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,13 +31,19 @@ public class EditMessageActivity extends AppCompatActivity {
         appBar = findViewById(R.id.topAppBar);
         setSupportActionBar(appBar);
 
-        SharedPreferences sp = getSharedPreferences("message", MODE_PRIVATE);
-        editMsg = sp.getString("msg", null);
+        configStore = ConfigStore.getInstance(this);
+        editMsg = configStore.get().alertMessage;
 
         if (editMsg!=null){
             showMessage();
         }
 
+        // Saved straight away, like the other toggles; ServiceMine picks it up even while running
+        switchDeterrent = findViewById(R.id.switchDeterrent);
+        switchDeterrent.setChecked(configStore.get().deterrentEnabled);
+        switchDeterrent.setOnCheckedChangeListener((buttonView, isChecked) ->
+                configStore.update(config -> config.withDeterrentEnabled(isChecked)));
+
         btnSave.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
@@ -44,10 +52,7 @@ public class EditMessageActivity extends AppCompatActivity {
                 }
                 else{
                     String msg = etMessage.getText().toString();
-                    SharedPreferences sp = getSharedPreferences("message", MODE_PRIVATE);
-                    SharedPreferences.Editor editor = sp.edit();
-                    editor.putString("msg", msg);
-                    editor.apply();
+                    configStore.update(config -> config.withAlertMessage(msg));
                     Toast.makeText(EditMessageActivity.this, "Message save successfully", Toast.LENGTH_SHORT).show();
                     showMessage();
                 }
@@ -57,14 +62,12 @@ public class EditMessageActivity extends AppCompatActivity {
         btnReset.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View v) {
-                etMessage.setText("I am in DANGER, i need help. Please urgently reach me out.");
+                etMessage.setText(ConfigStore.DEFAULT_ALERT_MESSAGE);
             }
         });
     }
     public void showMessage(){
-        SharedPreferences sp = getSharedPreferences("message", MODE_PRIVATE);
-        String msg = sp.getString("msg", null);
-        etMessage.setText(msg);
+        etMessage.setText(configStore.get().alertMessage);
     }
 
     @Override
@@ -0,0 +1,151 @@
+// EncryptedFileReader.java
+package com.example.sos;
+
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+// Random-access plaintext view of a file written by EncryptingOutputStream. Any position can be read by
+// decrypting just the chunk that holds it; the most recent chunk is kept so sequential reads decrypt each
+// chunk once. Nothing is ever written back to disk in plaintext.
+public class EncryptedFileReader implements Closeable {
+
+    private static final String TAG = "EncryptedFileReader";
+
+    private final FileInputStream input;
+    private final FileChannel channel;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] header = new byte[RecordingCrypto.HEADER_LENGTH];
+    private final byte[] noncePrefix = new byte[RecordingCrypto.NONCE_PREFIX_LENGTH];
+    private final int chunkSize;
+    private final long chunkCount;
+    private final long plainSize;
+    private final ByteBuffer sealed;
+    private final byte[] plain;
+    private long cachedChunk = -1;
+    private int cachedLength = 0;
+    private boolean truncated = false;
+
+    public EncryptedFileReader(File file, SecretKey key) throws IOException {
+        this.input = new FileInputStream(file);
+        this.channel = input.getChannel();
+        this.key = key;
+        try {
+            readFully(ByteBuffer.wrap(header), 0);
+            ByteBuffer parsed = ByteBuffer.wrap(header);
+            byte[] magic = new byte[RecordingCrypto.MAGIC.length];
+            parsed.get(magic);
+            if (!Arrays.equals(magic, RecordingCrypto.MAGIC) || parsed.get() != RecordingCrypto.VERSION) {
+                throw new IOException("Not an encrypted recording: " + file.getName());
+            }
+            chunkSize = parsed.getInt();
+            if (chunkSize <= 0 || chunkSize > 1024 * 1024) {
+                throw new IOException("Bad chunk size in " + file.getName());
+            }
+            parsed.get(noncePrefix);
+
+            long body = channel.size() - RecordingCrypto.HEADER_LENGTH;
+            long sealedChunk = chunkSize + RecordingCrypto.TAG_LENGTH;
+            chunkCount = (body + sealedChunk - 1) / sealedChunk;
+            plainSize = body - chunkCount * RecordingCrypto.TAG_LENGTH;
+            if (chunkCount == 0 || plainSize < 0) {
+                throw new IOException("Encrypted recording is empty or cut short: " + file.getName());
+            }
+            sealed = ByteBuffer.allocate((int) sealedChunk);
+            plain = new byte[chunkSize];
+            cipher = Cipher.getInstance(RecordingCrypto.TRANSFORMATION);
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            input.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Could not open " + file.getName(), e);
+        }
+    }
+
+    public long getPlainSize() {
+        return plainSize;
+    }
+
+    // True if the final chunk was never sealed, i.e. the recorder was killed before it could close the file
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    // Same contract as MediaDataSource.readAt: returns -1 at end of stream
+    public synchronized int read(long position, byte[] buffer, int offset, int size) throws IOException {
+        if (position >= plainSize) return -1;
+        int total = 0;
+        while (size > 0 && position < plainSize) {
+            long chunk = position / chunkSize;
+            loadChunk(chunk);
+            int inChunk = (int) (position - chunk * chunkSize);
+            int n = Math.min(size, cachedLength - inChunk);
+            if (n <= 0) break;
+            System.arraycopy(plain, inChunk, buffer, offset, n);
+            position += n;
+            offset += n;
+            size -= n;
+            total += n;
+        }
+        return total;
+    }
+
+    private void loadChunk(long chunk) throws IOException {
+        if (chunk == cachedChunk) return;
+        long sealedChunk = chunkSize + RecordingCrypto.TAG_LENGTH;
+        long offset = RecordingCrypto.HEADER_LENGTH + chunk * sealedChunk;
+        int length = (int) Math.min(sealedChunk, channel.size() - offset);
+        sealed.clear();
+        sealed.limit(length);
+        readFully(sealed, offset);
+
+        boolean last = chunk == chunkCount - 1;
+        try {
+            cachedLength = decrypt(chunk, length, last);
+        } catch (AEADBadTagException e) {
+            if (!last) throw new IOException("Recording chunk " + chunk + " failed authentication", e);
+            // An unsealed tail means the recording was interrupted; its data is still authentic, just incomplete
+            try {
+                cachedLength = decrypt(chunk, length, false);
+                truncated = true;
+                Log.w(TAG, "Encrypted recording was not closed cleanly; final chunk is missing.");
+            } catch (GeneralSecurityException retry) {
+                throw new IOException("Recording chunk " + chunk + " failed authentication", retry);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not decrypt chunk " + chunk, e);
+        }
+        cachedChunk = chunk;
+    }
+
+    private int decrypt(long chunk, int length, boolean finalChunk) throws GeneralSecurityException {
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(RecordingCrypto.TAG_LENGTH * 8,
+                RecordingCrypto.nonce(noncePrefix, chunk, finalChunk)));
+        cipher.updateAAD(header);
+        return cipher.doFinal(sealed.array(), 0, length, plain, 0);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position);
+            if (n < 0) throw new IOException("Unexpected end of encrypted recording");
+            position += n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
@@ -0,0 +1,59 @@
+// EncryptedRecordingSink.java
+package com.example.sos;
+
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import javax.crypto.SecretKey;
+
+// Gives MediaRecorder the write end of a pipe and encrypts whatever comes out of the other end straight
+// into the target file, chunk by chunk. The encoder output never touches the disk in plaintext.
+public class EncryptedRecordingSink {
+
+    private static final String TAG = "EncryptedRecordingSink";
+
+    private final ParcelFileDescriptor readSide;
+    private final ParcelFileDescriptor writeSide;
+    private final Thread pump;
+
+    public EncryptedRecordingSink(final File target, final SecretKey key) throws IOException {
+        ParcelFileDescriptor[] pipe = ParcelFileDescriptor.createPipe();
+        readSide = pipe[0];
+        writeSide = pipe[1];
+        pump = new Thread(() -> {
+            byte[] buffer = new byte[4096];
+            try (InputStream in = new ParcelFileDescriptor.AutoCloseInputStream(readSide);
+                 OutputStream out = new EncryptingOutputStream(new FileOutputStream(target), key)) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                Log.d(TAG, "Encrypted recording sealed: " + target.getName());
+            } catch (IOException e) {
+                Log.e(TAG, "Encrypting recording failed: " + target.getName(), e);
+            }
+        }, "sos-recording-encrypt");
+        pump.start();
+    }
+
+    public FileDescriptor getRecorderFd() {
+        return writeSide.getFileDescriptor();
+    }
+
+    // Call after MediaRecorder has been released: closing our end of the pipe lets the pump see
+    // end-of-stream and seal the final chunk.
+    public void finish() {
+        try {
+            writeSide.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not close recorder pipe.", e);
+        }
+    }
+}
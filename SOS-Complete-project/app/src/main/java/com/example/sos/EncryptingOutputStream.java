@@ -0,0 +1,104 @@
+// EncryptingOutputStream.java
+package com.example.sos;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+// Writes the format described in RecordingCrypto. Plaintext is collected into one chunk-sized buffer and
+// sealed as soon as the next byte arrives, so memory use is a single chunk no matter how long the recording
+// runs. close() seals the remainder as the final chunk; a stream that is never closed reads back as truncated.
+public class EncryptingOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final SecretKey key;
+    private final Cipher cipher;
+    private final byte[] header = new byte[RecordingCrypto.HEADER_LENGTH];
+    private final byte[] noncePrefix = new byte[RecordingCrypto.NONCE_PREFIX_LENGTH];
+    private final byte[] plain;
+    private final byte[] sealed;
+    private int buffered = 0;
+    private long chunkIndex = 0;
+    private boolean closed = false;
+
+    public EncryptingOutputStream(OutputStream out, SecretKey key) throws IOException {
+        this(out, key, RecordingCrypto.CHUNK_SIZE);
+    }
+
+    public EncryptingOutputStream(OutputStream out, SecretKey key, int chunkSize) throws IOException {
+        this.out = out;
+        this.key = key;
+        this.plain = new byte[chunkSize];
+        this.sealed = new byte[chunkSize + RecordingCrypto.TAG_LENGTH];
+        try {
+            this.cipher = Cipher.getInstance(RecordingCrypto.TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("AES-GCM not available", e);
+        }
+        new SecureRandom().nextBytes(noncePrefix);
+        ByteBuffer.wrap(header)
+                .put(RecordingCrypto.MAGIC)
+                .put(RecordingCrypto.VERSION)
+                .putInt(chunkSize)
+                .put(noncePrefix);
+        out.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        while (len > 0) {
+            // Only seal a full buffer once we know more data follows, so the final flag lands on the right chunk
+            if (buffered == plain.length) {
+                sealChunk(false);
+            }
+            int n = Math.min(len, plain.length - buffered);
+            System.arraycopy(b, off, plain, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try {
+            sealChunk(true);
+            out.flush();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void sealChunk(boolean finalChunk) throws IOException {
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(RecordingCrypto.TAG_LENGTH * 8,
+                    RecordingCrypto.nonce(noncePrefix, chunkIndex, finalChunk)));
+            cipher.updateAAD(header);
+            int n = cipher.doFinal(plain, 0, buffered, sealed, 0);
+            out.write(sealed, 0, n);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not encrypt chunk " + chunkIndex, e);
+        }
+        chunkIndex++;
+        buffered = 0;
+    }
+}
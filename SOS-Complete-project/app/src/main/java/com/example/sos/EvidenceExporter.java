@@ -0,0 +1,217 @@
+// EvidenceExporter.java
+package com.example.sos;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// Streams everything we have for one alert session (recordings, alert log, location fixes) into a
+// single uncompressed tar archive with a SHA-256 manifest. Plain files are copied with
+// FileChannel.transferTo, so memory use is the same for a 10 KB or a 1 GB bundle. Call off the UI thread.
+// The archive is never stored: EvidenceProvider hands the receiving app one end of a pipe and writeArchive
+// fills the other as it's read, so decrypted recordings never reach the disk.
+public final class EvidenceExporter {
+
+    private static final String TAG = "EvidenceExporter";
+    public static final String MIME_TYPE = "application/x-tar";
+    private static final String MANIFEST_NAME = "MANIFEST.sha256";
+    private static final int BLOCK_SIZE = 512;
+    // Each chunk is mapped once for hashing and then handed to transferTo while its pages are still hot
+    private static final long WINDOW_SIZE = 4L * 1024 * 1024;
+
+    // The files of one session and the names they get inside the archive
+    static final class Session {
+        final String id;
+        final List<File> files = new ArrayList<>();
+        final List<String> entryNames = new ArrayList<>();
+
+        Session(String id) {
+            this.id = id;
+        }
+    }
+
+    private EvidenceExporter() { }
+
+    // Recordings are named SOS_Recording_<sessionId>.<ext>, so the session id is the middle part
+    public static String sessionIdFromRecording(File recording) {
+        String name = recording.getName();
+        if (!name.startsWith("SOS_Recording_")) return null;
+        int dot = name.indexOf('.');
+        return dot > 0 ? name.substring("SOS_Recording_".length(), dot) : name.substring("SOS_Recording_".length());
+    }
+
+    public static String archiveName(String sessionId) {
+        return "SOS_Incident_" + sessionId + ".tar";
+    }
+
+    static Session findSession(Context context, String sessionId) throws FileNotFoundException {
+        Session session = new Session(sessionId);
+        File recordingsDir = new File(context.getExternalFilesDir(null), "Recordings");
+        File[] recordings = recordingsDir.listFiles((dir, name) -> name.startsWith("SOS_Recording_" + sessionId));
+        if (recordings != null) {
+            for (File recording : recordings) {
+                session.files.add(recording);
+                // Encrypted recordings are decrypted into the archive, so it is usable on its own
+                session.entryNames.add("recordings/" + RecordingCrypto.plainName(recording));
+            }
+        }
+        File[] logs = IncidentLog.getSessionDir(context, sessionId).listFiles();
+        if (logs != null) {
+            for (File log : logs) {
+                session.files.add(log);
+                session.entryNames.add(log.getName());
+            }
+        }
+        if (session.files.isEmpty()) {
+            throw new FileNotFoundException("Nothing recorded for session " + sessionId);
+        }
+        return session;
+    }
+
+    // target may be a pipe: the archive is written strictly in order and never seeked
+    static void writeArchive(Session session, FileChannel target) throws IOException {
+        String root = "SOS_Incident_" + session.id + "/";
+        MessageDigest digest = newSha256();
+        StringBuilder manifest = new StringBuilder();
+        for (int i = 0; i < session.files.size(); i++) {
+            File file = session.files.get(i);
+            String entryName = session.entryNames.get(i);
+            byte[] hash = RecordingCrypto.isEncrypted(file)
+                    ? writeDecryptedEntry(target, root + entryName, file, digest)
+                    : writeFileEntry(target, root + entryName, file, digest);
+            manifest.append(toHex(hash)).append("  ").append(entryName).append('\n');
+        }
+        // The manifest goes last so it can be built while streaming the files above
+        writeBytesEntry(target, root + MANIFEST_NAME, manifest.toString().getBytes(StandardCharsets.UTF_8));
+        // A tar archive ends with two empty blocks
+        writeFully(target, ByteBuffer.allocate(BLOCK_SIZE * 2));
+        Log.d(TAG, "Exported " + session.files.size() + " files for session " + session.id);
+    }
+
+    private static byte[] writeFileEntry(FileChannel target, String entryName, File file, MessageDigest digest) throws IOException {
+        try (FileInputStream in = new FileInputStream(file); FileChannel source = in.getChannel()) {
+            long size = source.size();
+            writeFully(target, ByteBuffer.wrap(header(entryName, size, file.lastModified())));
+            digest.reset();
+            long position = 0;
+            while (position < size) {
+                long length = Math.min(WINDOW_SIZE, size - position);
+                MappedByteBuffer window = source.map(FileChannel.MapMode.READ_ONLY, position, length);
+                digest.update(window);
+                long sent = 0;
+                while (sent < length) {
+                    sent += source.transferTo(position + sent, length - sent, target);
+                }
+                position += length;
+            }
+            writePadding(target, size);
+            return digest.digest();
+        }
+    }
+
+    // Encrypted recordings can't go through transferTo; they are decrypted one chunk at a time through a single
+    // reused buffer instead, so memory still stays constant and the plaintext only exists in that buffer.
+    private static byte[] writeDecryptedEntry(FileChannel target, String entryName, File file, MessageDigest digest) throws IOException {
+        try (EncryptedFileReader reader = new EncryptedFileReader(file, RecordingCrypto.getOrCreateKey())) {
+            long size = reader.getPlainSize();
+            writeFully(target, ByteBuffer.wrap(header(entryName, size, file.lastModified())));
+            digest.reset();
+            byte[] chunk = new byte[RecordingCrypto.CHUNK_SIZE];
+            long position = 0;
+            int n;
+            while ((n = reader.read(position, chunk, 0, chunk.length)) > 0) {
+                digest.update(chunk, 0, n);
+                writeFully(target, ByteBuffer.wrap(chunk, 0, n));
+                position += n;
+            }
+            if (position != size) {
+                throw new IOException("Short read while decrypting " + file.getName());
+            }
+            if (reader.isTruncated()) {
+                Log.w(TAG, file.getName() + " was interrupted while recording; exported what was sealed.");
+            }
+            writePadding(target, size);
+            return digest.digest();
+        }
+    }
+
+    private static void writeBytesEntry(FileChannel target, String entryName, byte[] data) throws IOException {
+        writeFully(target, ByteBuffer.wrap(header(entryName, data.length, System.currentTimeMillis())));
+        writeFully(target, ByteBuffer.wrap(data));
+        writePadding(target, data.length);
+    }
+
+    private static void writePadding(FileChannel target, long size) throws IOException {
+        int remainder = (int) (size % BLOCK_SIZE);
+        if (remainder != 0) {
+            writeFully(target, ByteBuffer.allocate(BLOCK_SIZE - remainder));
+        }
+    }
+
+    private static void writeFully(FileChannel target, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            target.write(buffer);
+        }
+    }
+
+    // POSIX ustar header for a regular file
+    private static byte[] header(String name, long size, long modifiedMs) throws IOException {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        if (nameBytes.length > 100) {
+            throw new IOException("Entry name too long for tar: " + name);
+        }
+        byte[] header = new byte[BLOCK_SIZE];
+        System.arraycopy(nameBytes, 0, header, 0, nameBytes.length);
+        putOctal(header, 100, 8, 0644);                 // mode
+        putOctal(header, 108, 8, 0);                    // uid
+        putOctal(header, 116, 8, 0);                    // gid
+        putOctal(header, 124, 12, size);                // size
+        putOctal(header, 136, 12, modifiedMs / 1000);   // mtime
+        header[156] = '0';                              // regular file
+        byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(magic, 0, header, 257, magic.length);
+
+        // Checksum is computed with its own field set to spaces
+        for (int i = 148; i < 156; i++) header[i] = ' ';
+        long checksum = 0;
+        for (byte b : header) checksum += b & 0xFF;
+        byte[] checksumField = String.format(Locale.US, "%06o", checksum).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(checksumField, 0, header, 148, 6);
+        header[154] = 0;
+        header[155] = ' ';
+        return header;
+    }
+
+    private static void putOctal(byte[] header, int offset, int length, long value) {
+        byte[] digits = String.format(Locale.US, "%0" + (length - 1) + "o", value).getBytes(StandardCharsets.US_ASCII);
+        System.arraycopy(digits, 0, header, offset, length - 1);
+        header[offset + length - 1] = 0;
+    }
+
+    private static MessageDigest newSha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 not available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) hex.append(String.format(Locale.US, "%02x", b));
+        return hex.toString();
+    }
+}
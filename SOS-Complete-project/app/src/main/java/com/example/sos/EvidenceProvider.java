@@ -0,0 +1,128 @@
+// EvidenceProvider.java
+package com.example.sos;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+// Serves incident bundles to the app the user shares them with, as content://<package>.evidence/<sessionId>/<name>.
+// Each open gets a fresh pipe that EvidenceExporter writes the tar into while the other app reads it, so a
+// bundle with decrypted recordings never exists as a file. Not exported: only URIs we grant can be opened.
+public class EvidenceProvider extends ContentProvider {
+
+    private static final String TAG = "EvidenceProvider";
+    private static final String SESSION_ID_PATTERN = "\\d{8}_\\d{6}"; // See IncidentLog.newSessionId
+
+    public static Uri uriForSession(Context context, String sessionId) {
+        return new Uri.Builder()
+                .scheme("content")
+                .authority(context.getPackageName() + ".evidence")
+                .appendPath(sessionId)
+                .appendPath(EvidenceExporter.archiveName(sessionId))
+                .build();
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Nullable
+    @Override
+    public String getType(@NonNull Uri uri) {
+        return EvidenceExporter.MIME_TYPE;
+    }
+
+    // Only the name is known up front; the size is left null because the archive doesn't exist until it's read
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        String sessionId = sessionId(uri);
+        if (sessionId == null) return null;
+        String[] columns = projection != null ? projection : new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        Object[] row = new Object[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            if (OpenableColumns.DISPLAY_NAME.equals(columns[i])) row[i] = EvidenceExporter.archiveName(sessionId);
+        }
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        cursor.addRow(row);
+        return cursor;
+    }
+
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (!"r".equals(mode)) throw new SecurityException("Evidence bundles are read-only");
+        String sessionId = sessionId(uri);
+        if (sessionId == null) throw new FileNotFoundException("Not an evidence bundle: " + uri);
+        EvidenceExporter.Session session = EvidenceExporter.findSession(getContext(), sessionId);
+
+        ParcelFileDescriptor[] pipe;
+        try {
+            // Reliable, so a reader sees an error instead of a short but well-formed looking archive
+            pipe = ParcelFileDescriptor.createReliablePipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Could not open a pipe: " + e.getMessage());
+        }
+        ParcelFileDescriptor sink = pipe[1];
+        // Its own thread: the reader sets the pace, and a slow upload mustn't hold up the shared disk thread
+        new Thread(() -> {
+            try {
+                FileOutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(sink);
+                EvidenceExporter.writeArchive(session, out.getChannel());
+                out.close(); // Closes the pipe, which the reader sees as a clean end of file
+            } catch (IOException e) {
+                Log.e(TAG, "Evidence export failed for " + sessionId, e);
+                try {
+                    sink.closeWithError("Export failed: " + e.getMessage());
+                } catch (IOException ignored) {
+                    // The reader went away first
+                }
+            }
+        }, "evidence-export-" + sessionId).start();
+        return pipe[0];
+    }
+
+    // Null unless the URI is exactly /<sessionId>/<archive name>; the id ends up in file paths
+    @Nullable
+    private static String sessionId(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        if (segments.size() != 2) return null;
+        String sessionId = segments.get(0);
+        if (!sessionId.matches(SESSION_ID_PATTERN)) return null;
+        if (!EvidenceExporter.archiveName(sessionId).equals(segments.get(1))) return null;
+        return sessionId;
+    }
+
+    @Nullable
+    @Override
+    public Uri insert(@NonNull Uri uri, @Nullable ContentValues values) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+
+    @Override
+    public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+
+    @Override
+    public int update(@NonNull Uri uri, @Nullable ContentValues values, @Nullable String selection,
+                      @Nullable String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+}
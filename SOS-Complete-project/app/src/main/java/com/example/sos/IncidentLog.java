@@ -0,0 +1,78 @@
+// IncidentLog.java
+package com.example.sos;
+
+import android.content.Context;
+import android.location.Location;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// Append-only record of one alert session: what happened (alert.log) and every location fix we got
+// (locations.csv). Files live in files/Incidents/<sessionId>/ so EvidenceExporter can bundle them with
+// the session's recordings. Writes go through the disk executor and never block the alert path.
+public class IncidentLog {
+
+    private static final String TAG = "IncidentLog";
+    public static final String INCIDENTS_DIR = "Incidents";
+    public static final String ALERT_LOG = "alert.log";
+    public static final String LOCATIONS_CSV = "locations.csv";
+
+    private final String sessionId;
+    private final File sessionDir;
+
+    public IncidentLog(Context context, String sessionId) {
+        this.sessionId = sessionId;
+        this.sessionDir = getSessionDir(context, sessionId);
+    }
+
+    public static File getSessionDir(Context context, String sessionId) {
+        return new File(new File(context.getFilesDir(), INCIDENTS_DIR), sessionId);
+    }
+
+    // Session ids use the same timestamp format as recording file names, so the two can be matched up
+    public static String newSessionId() {
+        return new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US).format(new Date());
+    }
+
+    public String getSessionId() {
+        return sessionId;
+    }
+
+    public void logEvent(String message) {
+        final String line = timestamp() + "  " + message + "\n";
+        append(ALERT_LOG, line, null);
+    }
+
+    public void logLocation(Location location) {
+        final String line = timestamp() + "," + location.getLatitude() + "," + location.getLongitude()
+                + "," + location.getAccuracy() + "," + location.getProvider() + "\n";
+        append(LOCATIONS_CSV, line, "time,latitude,longitude,accuracy_m,provider\n");
+    }
+
+    private void append(final String fileName, final String line, final String header) {
+        AppExecutors.diskIO().execute(() -> {
+            if (!sessionDir.exists() && !sessionDir.mkdirs()) {
+                Log.e(TAG, "Could not create incident dir for " + sessionId);
+                return;
+            }
+            File file = new File(sessionDir, fileName);
+            boolean isNew = !file.exists();
+            try (Writer writer = new FileWriter(file, true)) {
+                if (isNew && header != null) writer.write(header);
+                writer.write(line);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not write " + fileName + " for " + sessionId, e);
+            }
+        });
+    }
+
+    private static String timestamp() {
+        return new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ", Locale.US).format(new Date());
+    }
+}
@@ -0,0 +1,105 @@
+// InputWatchdog.java
+package com.example.sos;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Notices when a trigger source goes quiet while it's supposed to be armed (recognizer died, sensor
+// stopped delivering) and restarts it. Sources call Heartbeat.beat() from their callbacks, which is a
+// single volatile write, and ServiceMine calls check() every few seconds.
+// A restart only counts as a recovery once the source beats again afterwards.
+// Times are SystemClock.elapsedRealtime() values passed in by the caller, so this is plain Java and testable.
+public final class InputWatchdog {
+
+    public interface Listener {
+        void onStalled(String source, long silentMs);
+        void onRecovered(String source);
+    }
+
+    public static final class Heartbeat {
+        final String name;
+        final long stallAfterMs;
+        final Runnable restart;
+        private volatile long lastBeatMs;
+        private volatile boolean armed;
+        private long restartedAtMs = -1; // Only touched in check()
+
+        Heartbeat(String name, long stallAfterMs, Runnable restart) {
+            this.name = name;
+            this.stallAfterMs = stallAfterMs;
+            this.restart = restart;
+        }
+
+        public void beat(long nowMs) {
+            lastBeatMs = nowMs;
+        }
+
+        // Silence only counts from the moment the source is supposed to be running
+        public void arm(long nowMs) {
+            lastBeatMs = nowMs;
+            armed = true;
+        }
+
+        public void disarm() {
+            armed = false;
+        }
+    }
+
+    private final List<Heartbeat> heartbeats = new ArrayList<>();
+    private final Listener listener;
+    private final long checkIntervalMs;
+    private long lastCheckMs = -1;
+    private int stalls = 0;
+    private int recoveries = 0;
+
+    public InputWatchdog(long checkIntervalMs, Listener listener) {
+        this.checkIntervalMs = checkIntervalMs;
+        this.listener = listener;
+    }
+
+    public synchronized Heartbeat add(String name, long stallAfterMs, Runnable restart) {
+        Heartbeat heartbeat = new Heartbeat(name, stallAfterMs, restart);
+        heartbeats.add(heartbeat);
+        return heartbeat;
+    }
+
+    public synchronized void check(long nowMs) {
+        // A check that comes far too late means the CPU was asleep (screen off, Doze), and sources don't
+        // deliver while it sleeps either. That silence isn't a stall, so start counting again from now.
+        boolean slept = lastCheckMs >= 0 && nowMs - lastCheckMs > 3 * checkIntervalMs;
+        lastCheckMs = nowMs;
+        for (Heartbeat heartbeat : heartbeats) {
+            if (!heartbeat.armed) {
+                heartbeat.restartedAtMs = -1;
+                continue;
+            }
+            long lastBeat = heartbeat.lastBeatMs;
+            if (heartbeat.restartedAtMs >= 0 && lastBeat > heartbeat.restartedAtMs) {
+                recoveries++;
+                listener.onRecovered(heartbeat.name);
+                heartbeat.restartedAtMs = -1;
+            }
+            if (slept) {
+                heartbeat.lastBeatMs = nowMs;
+                if (heartbeat.restartedAtMs >= 0) heartbeat.restartedAtMs = nowMs;
+                continue;
+            }
+            // After a restart the source gets a whole stall period to come back before we try again
+            long since = Math.max(lastBeat, heartbeat.restartedAtMs);
+            if (nowMs - since > heartbeat.stallAfterMs) {
+                stalls++;
+                listener.onStalled(heartbeat.name, nowMs - lastBeat);
+                heartbeat.restartedAtMs = nowMs;
+                heartbeat.restart.run();
+            }
+        }
+    }
+
+    public synchronized int getStalls() {
+        return stalls;
+    }
+
+    public synchronized int getRecoveries() {
+        return recoveries;
+    }
+}
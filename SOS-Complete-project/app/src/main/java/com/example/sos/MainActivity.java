@@ -5,21 +5,24 @@ import android.app.AlertDialog;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.content.res.ColorStateList;
 import android.location.LocationManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
 import android.provider.Settings;
 import android.util.Log;
+import android.view.View;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.IntentSenderRequest;
 import androidx.activity.result.contract.ActivityResultContracts;
@@ -44,20 +47,20 @@ public class MainActivity extends AppCompatActivity {
     private MaterialButton startButton;
     private MaterialButton stopButton;
     private TextView serviceStatusTextView;
+    private TextView serviceStatusDetailView;
     private ImageView serviceStatusIcon;
 
-    private DatabaseHelper databaseHelper;
+    private ContactRepository contactRepository;
+    private ServiceStatus serviceStatus;
     private ActivityResultLauncher<String[]> requestPermissionLauncher;
+    private ActivityResultLauncher<String> notificationPermissionLauncher;
+    private boolean notificationsAsked = false; // Once per screen, not on every start
     private ActivityResultLauncher<IntentSenderRequest> locationSettingsLauncher;
 
-    private final Handler uiUpdateHandler = new Handler(Looper.getMainLooper());
-    private Runnable uiUpdateRunnable;
+    private final ServiceStatus.Observer statusObserver = this::updateUiState;
+    private ServiceStatus.State shownState; // What the screen currently shows; null forces a redraw
 
-    private static final String[] REQUIRED_PERMISSIONS = {
-            Manifest.permission.SEND_SMS, Manifest.permission.ACCESS_FINE_LOCATION,
-            Manifest.permission.ACCESS_COARSE_LOCATION, Manifest.permission.RECORD_AUDIO,
-            Manifest.permission.FOREGROUND_SERVICE, Manifest.permission.FOREGROUND_SERVICE_LOCATION
-    };
+    private static final String[] REQUIRED_PERMISSIONS = ServiceMine.REQUIRED_PERMISSIONS;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -69,50 +72,62 @@ public class MainActivity extends AppCompatActivity {
         stopButton = findViewById(R.id.stop);
         serviceStatusTextView = findViewById(R.id.statusText);
         serviceStatusIcon = findViewById(R.id.statusIcon);
+        serviceStatusDetailView = findViewById(R.id.statusDetailText);
 
-        databaseHelper = new DatabaseHelper(this);
+        contactRepository = ContactRepository.getInstance(this);
+        serviceStatus = ServiceStatus.getInstance();
+        // ServiceMine lives in another process; the link keeps our ServiceStatus in step with it
+        DetectorLink.getInstance(this);
         setupLaunchers();
         createNotificationChannel();
 
         startButton.setOnClickListener(v -> handleStartClick());
         stopButton.setOnClickListener(v -> handleStopClick());
+        findViewById(R.id.zones).setOnClickListener(v -> startActivity(new Intent(this, SafetyZonesActivity.class)));
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        Log.d(TAG, "onResume: Starting UI updater.");
-        startUiUpdater();
+        // ServiceMine pushes every change (and we get the current state right away), so nothing to poll
+        shownState = null;
+        serviceStatus.addObserver(statusObserver);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        Log.d(TAG, "onPause: Stopping UI updater.");
-        stopUiUpdater();
-    }
-
-    private void startUiUpdater() {
-        uiUpdateRunnable = () -> {
-            updateUiState();
-            uiUpdateHandler.postDelayed(uiUpdateRunnable, 500);
-        };
-        uiUpdateHandler.post(uiUpdateRunnable);
-    }
-
-    private void stopUiUpdater() {
-        if (uiUpdateRunnable != null) {
-            uiUpdateHandler.removeCallbacks(uiUpdateRunnable);
-        }
+        serviceStatus.removeObserver(statusObserver);
     }
 
-    private void updateUiState() {
-        SharedPreferences prefs = getSharedPreferences("SOS_SERVICE_STATUS", MODE_PRIVATE);
-        boolean isServiceRunning = prefs.getBoolean("is_running", false);
+    private void updateUiState(ServiceStatus.State state) {
+        if (state.equals(shownState)) return;
+        shownState = state;
+        boolean isServiceRunning = state.running;
 
         startButton.setEnabled(!isServiceRunning);
         stopButton.setEnabled(isServiceRunning);
-        serviceStatusTextView.setText(isServiceRunning ? "Service Active" : "Service Inactive");
+        if (state.alertInProgress) {
+            serviceStatusTextView.setText("Alert in Progress");
+        } else if (isServiceRunning) {
+            serviceStatusTextView.setText(state.isArmed() ? "Service Active" : "Service Starting...");
+        } else {
+            serviceStatusTextView.setText("Service Inactive");
+        }
+        if (isServiceRunning) {
+            String detail = "Shake " + (state.sensorArmed ? "armed" : "off") + "  •  Voice " + (state.voiceArmed ? "armed" : "paused");
+            if (state.stalls > 0) {
+                // A trigger went silent at some point and the watchdog restarted it
+                detail += "\nRestarted " + state.stalls + (state.stalls == 1 ? " time" : " times") + ", " + state.recoveries + " recovered";
+            }
+            if (state.pssKb > 0) {
+                detail += String.format(Locale.US, "\nDetector memory %.1f MB", state.pssKb / 1024f);
+            }
+            serviceStatusDetailView.setText(detail);
+            serviceStatusDetailView.setVisibility(View.VISIBLE);
+        } else {
+            serviceStatusDetailView.setVisibility(View.GONE);
+        }
 
         if (isServiceRunning) {
             serviceStatusIcon.setImageResource(R.drawable.safety_check);
@@ -131,13 +146,27 @@ public class MainActivity extends AppCompatActivity {
 
     private void handleStartClick() {
         Log.d(TAG, "Start button clicked.");
-        if (databaseHelper.count() == 0) { promptToRegisterContacts(); return; }
+        // Served from the in-memory contact snapshot (only waits if it hasn't finished loading yet)
+        contactRepository.whenLoaded(contacts -> {
+            if (isFinishing() || isDestroyed()) return;
+            if (contacts.isEmpty()) { promptToRegisterContacts(); return; }
+            continueStart();
+        });
+    }
+
+    private void continueStart() {
         if (!areAllPermissionsGranted()) { requestMissingPermissions(); return; }
         if (!isLocationEnabled()) { promptToEnableLocation(); return; }
 
         startTheService();
+        // Everything required is granted by now; notifications are asked for on their own if they're still missing
+        if (!notificationsAsked && isNotificationPermissionMissing()) {
+            notificationsAsked = true;
+            notificationPermissionLauncher.launch(Manifest.permission.POST_NOTIFICATIONS);
+        }
 
-        // Immediate feedback
+        // Immediate feedback; the real state follows from ServiceStatus
+        shownState = null;
         startButton.setEnabled(false);
         stopButton.setEnabled(true);
         serviceStatusTextView.setText("Service Active");
@@ -153,8 +182,11 @@ public class MainActivity extends AppCompatActivity {
         Intent serviceIntent = new Intent(this, ServiceMine.class);
         serviceIntent.setAction("stop");
         startService(serviceIntent);
+        // Stays off across reboots too
+        ConfigStore.getInstance(this).update(config -> config.withProtectionEnabled(false));
 
-        // Immediate feedback
+        // Immediate feedback; the real state follows from ServiceStatus
+        shownState = null;
         startButton.setEnabled(true);
         stopButton.setEnabled(false);
         serviceStatusTextView.setText("Service Inactive");
@@ -169,6 +201,8 @@ public class MainActivity extends AppCompatActivity {
 
     private void startTheService() {
         Log.d(TAG, "Attempting to start the service now.");
+        // Remembered so BootReceiver turns it back on after a reboot or an update
+        ConfigStore.getInstance(this).update(config -> config.withProtectionEnabled(true));
         Intent serviceIntent = new Intent(this, ServiceMine.class);
         serviceIntent.setAction("Start");
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -184,6 +218,9 @@ public class MainActivity extends AppCompatActivity {
             if (areAllPermissionsGranted()) handleStartClick();
             else showPermissionDeniedDialog();
         });
+        notificationPermissionLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+            if (!granted) Log.w(TAG, "Notifications denied: the user won't be told if protection can't be restored.");
+        });
         locationSettingsLauncher = registerForActivityResult(new ActivityResultContracts.StartIntentSenderForResult(), result -> {
             if (result.getResultCode() == RESULT_OK) handleStartClick();
             else Toast.makeText(this, "Location must be enabled to start.", Toast.LENGTH_LONG).show();
@@ -203,7 +240,20 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void requestMissingPermissions() {
-        requestPermissionLauncher.launch(REQUIRED_PERMISSIONS);
+        // Optional ones ride along; only the required ones decide whether we can start
+        List<String> permissions = new ArrayList<>(Arrays.asList(REQUIRED_PERMISSIONS));
+        permissions.addAll(Arrays.asList(ServiceMine.OPTIONAL_PERMISSIONS));
+        if (isNotificationPermissionMissing()) {
+            notificationsAsked = true;
+            permissions.add(Manifest.permission.POST_NOTIFICATIONS);
+        }
+        requestPermissionLauncher.launch(permissions.toArray(new String[0]));
+    }
+
+    // Android 13+ drops notifications without it, including the one telling the user protection is off
+    private boolean isNotificationPermissionMissing() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED;
     }
 
     private void promptToRegisterContacts() {
@@ -0,0 +1,134 @@
+// MicrophoneArbiter.java
+package com.example.sos;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Hands out exclusive, prioritised leases on the microphone so voice activation and evidence recording
+// never fight over it. A higher-priority request pre-empts the current holder; the pre-empted (or refused)
+// lease waits and gets the microphone back automatically when the higher-priority holder releases it.
+public final class MicrophoneArbiter {
+
+    private static final String TAG = "MicrophoneArbiter";
+
+    public static final int PRIORITY_VOICE_TRIGGER = 10;
+    public static final int PRIORITY_EVIDENCE_RECORDING = 100;
+
+    private static final MicrophoneArbiter INSTANCE = new MicrophoneArbiter();
+
+    private final Handler mainThreadHandler = new Handler(Looper.getMainLooper());
+    private final List<Lease> waiting = new ArrayList<>();
+    private Lease holder;
+
+    private int conflictCount = 0;   // Requests that found the microphone already taken
+    private int preemptionCount = 0; // Of those, how many took it away from a lower-priority holder
+
+    // Callbacks always arrive on the main thread
+    public interface Client {
+        void onMicrophonePreempted();
+        void onMicrophoneAvailable();
+    }
+
+    public final class Lease {
+        private final String owner;
+        private final int priority;
+        private final Client client;
+        private boolean released = false;
+
+        private Lease(String owner, int priority, Client client) {
+            this.owner = owner;
+            this.priority = priority;
+            this.client = client;
+        }
+
+        // True while this lease actually holds the microphone
+        public boolean isActive() {
+            synchronized (MicrophoneArbiter.this) {
+                return holder == this;
+            }
+        }
+
+        public void release() {
+            MicrophoneArbiter.this.release(this);
+        }
+    }
+
+    public static MicrophoneArbiter getInstance() {
+        return INSTANCE;
+    }
+
+    private MicrophoneArbiter() { }
+
+    // Always returns a lease. If it is not active yet, the client's onMicrophoneAvailable() fires once it is granted.
+    public Lease acquire(String owner, int priority, Client client) {
+        Lease lease = new Lease(owner, priority, client);
+        Lease preempted = null;
+        synchronized (this) {
+            if (holder == null) {
+                holder = lease;
+                Log.d(TAG, owner + " acquired the microphone.");
+                return lease;
+            }
+            conflictCount++;
+            if (priority > holder.priority) {
+                preemptionCount++;
+                preempted = holder;
+                waiting.add(preempted);
+                holder = lease;
+                Log.w(TAG, owner + " pre-empted " + preempted.owner + " (conflicts=" + conflictCount + ", preemptions=" + preemptionCount + ")");
+            } else {
+                waiting.add(lease);
+                Log.w(TAG, owner + " is waiting for the microphone held by " + holder.owner + " (conflicts=" + conflictCount + ")");
+            }
+        }
+        if (preempted != null) {
+            // Delivered before we return, so the old holder lets go before the new one opens the microphone
+            deliver(preempted.client, true);
+        }
+        return lease;
+    }
+
+    private void release(Lease lease) {
+        Lease next = null;
+        synchronized (this) {
+            if (lease.released) return;
+            lease.released = true;
+            waiting.remove(lease);
+            if (holder != lease) return;
+            holder = null;
+            Log.d(TAG, lease.owner + " released the microphone.");
+            for (Lease candidate : waiting) {
+                if (next == null || candidate.priority > next.priority) next = candidate;
+            }
+            if (next != null) {
+                waiting.remove(next);
+                holder = next;
+            }
+        }
+        if (next != null) {
+            Log.d(TAG, "Microphone handed back to " + next.owner);
+            deliver(next.client, false);
+        }
+    }
+
+    public synchronized int getConflictCount() {
+        return conflictCount;
+    }
+
+    public synchronized int getPreemptionCount() {
+        return preemptionCount;
+    }
+
+    private void deliver(Client client, boolean preempted) {
+        Runnable callback = preempted ? client::onMicrophonePreempted : client::onMicrophoneAvailable;
+        if (Looper.myLooper() == Looper.getMainLooper()) {
+            callback.run();
+        } else {
+            mainThreadHandler.post(callback);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+// PhoneNumberNormalizer.java
+package com.example.sos;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+// Turns whatever the user typed (or the contact book returned) into E.164, e.g. "098765 43210" -> "+919876543210",
+// so the same person can't be saved twice under two spellings and get every alert SMS twice.
+// Plain Java on purpose: the same rules run in the schema migration and in the JVM tests.
+public final class PhoneNumberNormalizer {
+
+    // E.164 allows at most 15 digits after the '+'
+    private static final int MAX_E164_DIGITS = 15;
+    // Anything shorter is a short code (e.g. "112" or a carrier service number) and is left as dialled
+    private static final int MIN_SUBSCRIBER_DIGITS = 7;
+    // Longest national number we expect without a country code; longer ones already start with one
+    private static final int MAX_NATIONAL_DIGITS = 10;
+
+    // Country calling codes for the regions we're most likely to run in. Unknown regions fall back to
+    // digits-only numbers, which still compare consistently on this device.
+    private static final Map<String, String> CALLING_CODES = new HashMap<>();
+
+    static {
+        String[][] codes = {
+                {"IN", "91"}, {"US", "1"}, {"CA", "1"}, {"GB", "44"}, {"IE", "353"}, {"AU", "61"}, {"NZ", "64"},
+                {"PK", "92"}, {"BD", "880"}, {"LK", "94"}, {"NP", "977"}, {"AE", "971"}, {"SA", "966"},
+                {"QA", "974"}, {"KW", "965"}, {"OM", "968"}, {"BH", "973"}, {"SG", "65"}, {"MY", "60"},
+                {"ID", "62"}, {"PH", "63"}, {"TH", "66"}, {"VN", "84"}, {"CN", "86"}, {"HK", "852"},
+                {"JP", "81"}, {"KR", "82"}, {"DE", "49"}, {"FR", "33"}, {"ES", "34"}, {"NL", "31"},
+                {"BE", "32"}, {"CH", "41"}, {"AT", "43"}, {"SE", "46"}, {"NO", "47"}, {"DK", "45"},
+                {"PL", "48"}, {"PT", "351"}, {"GR", "30"}, {"TR", "90"}, {"RU", "7"}, {"ZA", "27"},
+                {"NG", "234"}, {"KE", "254"}, {"EG", "20"}, {"BR", "55"}, {"MX", "52"}, {"AR", "54"}
+        };
+        for (String[] code : codes) {
+            CALLING_CODES.put(code[0], code[1]);
+        }
+    }
+
+    private PhoneNumberNormalizer() { }
+
+    // ISO 3166 region (e.g. from the SIM) to calling code, or null if we don't know it
+    public static String callingCodeForRegion(String region) {
+        if (region == null) return null;
+        return CALLING_CODES.get(region.toUpperCase(Locale.US));
+    }
+
+    // Returns the E.164 form, the bare digits when no country can be worked out, or null for empty input.
+    // Running it again on its own output returns the same value.
+    public static String normalize(String raw, String defaultCallingCode) {
+        if (raw == null) return null;
+        String trimmed = raw.trim();
+        boolean international = trimmed.startsWith("+");
+
+        StringBuilder digitsBuilder = new StringBuilder(trimmed.length());
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c >= '0' && c <= '9') digitsBuilder.append(c);
+        }
+        String digits = digitsBuilder.toString();
+        if (digits.isEmpty()) return null;
+
+        if (international) return "+" + digits;
+        if (digits.length() < MIN_SUBSCRIBER_DIGITS) return digits;
+        // "00" is the international dialling prefix in most of the world
+        if (digits.startsWith("00")) return "+" + digits.substring(2);
+        if (defaultCallingCode == null) return digits;
+
+        // Leading zeros are the national trunk prefix
+        int start = 0;
+        while (start < digits.length() - 1 && digits.charAt(start) == '0') start++;
+        String national = digits.substring(start);
+
+        // Typed with the country code but without the '+', e.g. "919876543210"
+        if (national.length() > MAX_NATIONAL_DIGITS && national.startsWith(defaultCallingCode)) {
+            return "+" + national;
+        }
+        if (defaultCallingCode.length() + national.length() > MAX_E164_DIGITS) return digits;
+        return "+" + defaultCallingCode + national;
+    }
+}
@@ -0,0 +1,53 @@
+// PressPattern.java
+package com.example.sos;
+
+// Recognises "N presses within W ms" from press timestamps. Only the last N times are kept, in a ring
+// buffer, so a press is a couple of array writes and nothing is allocated: it runs on every screen
+// toggle and volume key for as long as protection is on. Plain Java so it can be unit tested.
+// Events closer together than minGapMs are key auto-repeat, not presses: holding a volume key against
+// something in a pocket would otherwise count five "presses" in well under a second.
+public class PressPattern {
+
+    private final long[] presses;
+    private final long windowMs;
+    private final long minGapMs;
+    private long lastEventMs;
+    private boolean anyEvent = false;
+    private int next = 0;  // Slot the next press goes into
+    private int count = 0; // Presses in the buffer, up to presses.length
+    private long lastSpanMs = -1;
+
+    public PressPattern(int presses, long windowMs) {
+        this(presses, windowMs, 0);
+    }
+
+    public PressPattern(int presses, long windowMs, long minGapMs) {
+        this.presses = new long[presses];
+        this.windowMs = windowMs;
+        this.minGapMs = minGapMs;
+    }
+
+    // True when this press completes the pattern. The buffer then starts over, so holding on for a
+    // sixth press doesn't match again; the next match needs a whole new set.
+    public boolean press(long now) {
+        // Measured from the last event, counted or not, so a held key counts once however long it repeats
+        boolean repeat = anyEvent && now - lastEventMs < minGapMs;
+        lastEventMs = now;
+        anyEvent = true;
+        if (repeat) return false;
+        presses[next] = now;
+        next = (next + 1) % presses.length;
+        if (count < presses.length) count++;
+        if (count < presses.length) return false;
+        long oldest = presses[next]; // Once full, the slot about to be overwritten holds the oldest press
+        if (now - oldest > windowMs) return false;
+        lastSpanMs = now - oldest;
+        count = 0;
+        return true;
+    }
+
+    // First to last press of the most recent match, or -1
+    public long getLastSpanMs() {
+        return lastSpanMs;
+    }
+}
@@ -0,0 +1,101 @@
+// ProtectionGovernor.java
+package com.example.sos;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+// Watches battery level, charging, battery saver and the screen, and tells ServiceMine which
+// ProtectionPolicy mode to run in. Battery broadcasts arrive often (voltage and temperature changes
+// too), so the listener is only called when the mode or the screen state actually changes.
+public class ProtectionGovernor {
+
+    private static final String TAG = "ProtectionGovernor";
+
+    public interface Listener {
+        void onModeChanged(ProtectionPolicy.Mode mode, boolean screenOn);
+    }
+
+    private final Context context;
+    private final Listener listener;
+    private final PowerManager powerManager;
+    private ProtectionPolicy.Mode mode;
+    private boolean screenOn;
+    private boolean lastScreenOn; // As last handed to the listener
+    private int level = -1;
+    private boolean charging;
+    private boolean registered = false;
+
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (Intent.ACTION_BATTERY_CHANGED.equals(action)) {
+                readBattery(intent);
+            } else if (Intent.ACTION_SCREEN_ON.equals(action)) {
+                screenOn = true;
+            } else if (Intent.ACTION_SCREEN_OFF.equals(action)) {
+                screenOn = false;
+            }
+            evaluate();
+        }
+    };
+
+    public ProtectionGovernor(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.listener = listener;
+        this.powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    // Delivers the current mode straight away, then every change (on the main thread)
+    public void start() {
+        if (registered) return;
+        IntentFilter filter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+        filter.addAction(Intent.ACTION_SCREEN_ON);
+        filter.addAction(Intent.ACTION_SCREEN_OFF);
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        // ACTION_BATTERY_CHANGED is sticky, so registering hands back the current battery state
+        Intent battery = ContextCompat.registerReceiver(context, receiver, filter, ContextCompat.RECEIVER_NOT_EXPORTED);
+        registered = true;
+        if (battery != null) readBattery(battery);
+        screenOn = powerManager == null || powerManager.isInteractive();
+        mode = null;
+        evaluate();
+    }
+
+    public void stop() {
+        if (!registered) return;
+        context.unregisterReceiver(receiver);
+        registered = false;
+    }
+
+    public ProtectionPolicy.Mode getMode() {
+        return mode;
+    }
+
+    private void readBattery(Intent intent) {
+        int raw = intent.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = intent.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        level = raw >= 0 && scale > 0 ? raw * 100 / scale : -1;
+        int status = intent.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+    }
+
+    private void evaluate() {
+        boolean powerSaver = powerManager != null && powerManager.isPowerSaveMode();
+        ProtectionPolicy.Mode next = ProtectionPolicy.select(level, charging, powerSaver);
+        if (next == mode && screenOn == lastScreenOn) return;
+        if (next != mode) {
+            Log.d(TAG, "Protection mode " + next + " (battery " + level + "%, charging " + charging + ", saver " + powerSaver + ")");
+        }
+        mode = next;
+        lastScreenOn = screenOn;
+        listener.onModeChanged(mode, screenOn);
+    }
+}
@@ -0,0 +1,68 @@
+// ProtectionPolicy.java
+package com.example.sos;
+
+// How hard ServiceMine works at detecting an emergency, picked from the battery situation so protection
+// lasts a full day on one charge. The table runs from most to least effort; the shake trigger is the
+// cheapest (the accelerometer is a low-power sensor) so it is the one that survives into LAST_RESORT.
+// Plain Java so the table can be unit tested; ProtectionGovernor feeds it the live device state.
+public final class ProtectionPolicy {
+
+    public enum Mode {
+        // FULL is what the service did before the governor (SENSOR_DELAY_NORMAL, no location until an
+        // alert), so the common case never costs more than that; only the charger pays for faster
+        // sampling and an active warm fix.
+        //           label                sensor rate  batching    voice on  voice off  warm location
+        CHARGING(    "Charging",          60_000,      0,          -1,       0,         60_000),
+        FULL(        "Full protection",   200_000,     0,          -1,       0,         0),
+        BALANCED(    "Balanced",          200_000,     500_000,    -1,       0,         0),
+        SAVER(       "Battery saver",     200_000,     1_000_000,  10_000,   10_000,    0),
+        LAST_RESORT( "Last resort",       200_000,     2_000_000,  0,        0,         -1);
+
+        public final String label;
+        public final int sensorPeriodUs;       // Accelerometer sampling period
+        public final int sensorBatchUs;        // Max report latency; lets the sensor hub hold events while the CPU sleeps
+        public final long voiceListenMs;       // -1: listen continuously, 0: voice off, else listen this long...
+        public final long voicePauseMs;        // ...then pause this long
+        public final long warmLocationMs;      // Keep a fresh fix at this interval; 0: passive only, -1: none
+
+        Mode(String label, int sensorPeriodUs, int sensorBatchUs, long voiceListenMs, long voicePauseMs, long warmLocationMs) {
+            this.label = label;
+            this.sensorPeriodUs = sensorPeriodUs;
+            this.sensorBatchUs = sensorBatchUs;
+            this.voiceListenMs = voiceListenMs;
+            this.voicePauseMs = voicePauseMs;
+            this.warmLocationMs = warmLocationMs;
+        }
+
+        public boolean voiceEnabled() {
+            return voiceListenMs != 0;
+        }
+
+        // For the notification, e.g. "Battery saver: shake & voice"
+        public String describe() {
+            return label + ": " + (voiceEnabled() ? "shake & voice" : "shake only");
+        }
+    }
+
+    public static final int LAST_RESORT_LEVEL = 10;
+    public static final int SAVER_LEVEL = 20;
+    public static final int BALANCED_LEVEL = 50;
+
+    private ProtectionPolicy() { }
+
+    // level is the battery percentage, or -1 if unknown (treated as healthy)
+    public static Mode select(int level, boolean charging, boolean powerSaver) {
+        if (charging) return Mode.CHARGING;
+        if (level >= 0 && level <= LAST_RESORT_LEVEL) return Mode.LAST_RESORT;
+        if (powerSaver || (level >= 0 && level <= SAVER_LEVEL)) return Mode.SAVER;
+        if (level >= 0 && level <= BALANCED_LEVEL) return Mode.BALANCED;
+        return Mode.FULL;
+    }
+
+    // While the screen is on the user has the phone in hand and can raise the alert from it, so the
+    // battery-saving modes don't spend the microphone on voice then
+    public static boolean listenForVoice(Mode mode, boolean screenOn) {
+        if (!mode.voiceEnabled()) return false;
+        return !(screenOn && mode.voiceListenMs > 0);
+    }
+}
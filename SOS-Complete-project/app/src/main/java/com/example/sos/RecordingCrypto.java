@@ -0,0 +1,90 @@
+// RecordingCrypto.java
+package com.example.sos;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+// Shared pieces of the encrypted recording format.
+//
+// File layout: a 16-byte header (magic "SOSE", version, chunk size, 7-byte random nonce prefix) followed by
+// AES-GCM chunks of CHUNK_SIZE plaintext bytes (the last one may be shorter). Each chunk's nonce is
+// prefix || chunk index || final flag and the header is authenticated with every chunk, so chunks can't be
+// reordered, swapped between files or cut off at the end without decryption failing.
+public final class RecordingCrypto {
+
+    public static final String ENCRYPTED_SUFFIX = ".enc";
+    static final String KEY_ALIAS = "sos_recordings_v1";
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+
+    static final byte[] MAGIC = {'S', 'O', 'S', 'E'};
+    static final byte VERSION = 1;
+    static final int HEADER_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 7;
+    static final int NONCE_LENGTH = 12;
+    static final int TAG_LENGTH = 16;
+    // About 10 seconds of AMR-NB: a crash mid-recording loses at most the chunk being filled
+    public static final int CHUNK_SIZE = 16 * 1024;
+
+    private static SecretKey cachedKey;
+
+    private RecordingCrypto() { }
+
+    public static boolean isEncrypted(File file) {
+        return file.getName().endsWith(ENCRYPTED_SUFFIX);
+    }
+
+    // Name the file would have once decrypted, e.g. for the export archive
+    public static String plainName(File file) {
+        String name = file.getName();
+        return isEncrypted(file) ? name.substring(0, name.length() - ENCRYPTED_SUFFIX.length()) : name;
+    }
+
+    // The key never leaves the Android Keystore; we supply our own nonces, hence no randomized encryption
+    public static synchronized SecretKey getOrCreateKey() throws IOException {
+        if (cachedKey != null) return cachedKey;
+        try {
+            KeyStore keyStore = KeyStore.getInstance("AndroidKeyStore");
+            keyStore.load(null);
+            KeyStore.Entry entry = keyStore.getEntry(KEY_ALIAS, null);
+            if (entry instanceof KeyStore.SecretKeyEntry) {
+                cachedKey = ((KeyStore.SecretKeyEntry) entry).getSecretKey();
+            } else {
+                KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, "AndroidKeyStore");
+                generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS,
+                        KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                        .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                        .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                        .setKeySize(256)
+                        .setRandomizedEncryptionRequired(false)
+                        .build());
+                cachedKey = generator.generateKey();
+            }
+            return cachedKey;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Recording key unavailable", e);
+        }
+    }
+
+    public static DecryptingMediaDataSource openDataSource(File file) throws IOException {
+        return new DecryptingMediaDataSource(new EncryptedFileReader(file, getOrCreateKey()));
+    }
+
+    static byte[] nonce(byte[] prefix, long chunkIndex, boolean finalChunk) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(prefix, 0, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (chunkIndex >>> 24);
+        nonce[8] = (byte) (chunkIndex >>> 16);
+        nonce[9] = (byte) (chunkIndex >>> 8);
+        nonce[10] = (byte) chunkIndex;
+        nonce[11] = (byte) (finalChunk ? 1 : 0);
+        return nonce;
+    }
+}
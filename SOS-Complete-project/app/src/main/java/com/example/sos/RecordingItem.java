@@ -0,0 +1,52 @@
+// RecordingItem.java
+package com.example.sos;
+
+import java.io.File;
+
+// One row of the recordings list. The file attributes are captured once while listing (on a background
+// thread) so binding a row never has to stat the file again.
+public final class RecordingItem {
+
+    private final File file;
+    private final long lastModified;
+    private final long sizeBytes;
+
+    public RecordingItem(File file, long lastModified, long sizeBytes) {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.sizeBytes = sizeBytes;
+    }
+
+    public static RecordingItem from(File file) {
+        return new RecordingItem(file, file.lastModified(), file.length());
+    }
+
+    public File getFile() { return file; }
+
+    public String getName() { return file.getName(); }
+
+    public long getLastModified() { return lastModified; }
+
+    public long getSizeBytes() { return sizeBytes; }
+
+    // Changes whenever the file is rewritten, so cached data keyed on it can never go stale
+    public String getCacheKey() {
+        return file.getName() + "_" + lastModified + "_" + sizeBytes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof RecordingItem)) return false;
+        RecordingItem other = (RecordingItem) o;
+        return lastModified == other.lastModified && sizeBytes == other.sizeBytes && file.equals(other.file);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = file.hashCode();
+        result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+        result = 31 * result + (int) (sizeBytes ^ (sizeBytes >>> 32));
+        return result;
+    }
+}
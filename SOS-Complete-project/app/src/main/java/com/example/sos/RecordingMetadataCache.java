@@ -0,0 +1,144 @@
+// RecordingMetadataCache.java
+package com.example.sos;
+
+import android.content.Context;
+import android.media.MediaMetadataRetriever;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Duration of each recording, extracted lazily with MediaMetadataRetriever and kept in a memory LRU
+// plus one tiny file per recording in the cache dir. Opening a recording with the retriever is the
+// expensive part, so it only ever happens once per file version.
+public class RecordingMetadataCache {
+
+    private static final String TAG = "RecordingMetadataCache";
+    private static final String DISK_DIR = "recording_meta";
+    private static final int MEMORY_ENTRIES = 512;
+    private static final int DISK_FORMAT_VERSION = 1;
+
+    public static final long UNKNOWN_DURATION = -1;
+
+    private static RecordingMetadataCache instance;
+
+    private final LruCache<String, Long> memoryCache = new LruCache<>(MEMORY_ENTRIES);
+    private final File diskDir;
+    // Callbacks waiting for a key that is already being extracted (main thread only)
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+
+    public interface Callback {
+        void onDurationLoaded(RecordingItem item, long durationMs);
+    }
+
+    public static synchronized RecordingMetadataCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new RecordingMetadataCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private RecordingMetadataCache(Context context) {
+        diskDir = new File(context.getCacheDir(), DISK_DIR);
+    }
+
+    // Memory-only lookup, safe to call from onBindViewHolder
+    public Long getCachedDuration(RecordingItem item) {
+        return memoryCache.get(item.getCacheKey());
+    }
+
+    // Must be called on the main thread; the callback is delivered on the main thread too
+    public void loadDuration(RecordingItem item, Callback callback) {
+        final String key = item.getCacheKey();
+        Long cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onDurationLoaded(item, cached);
+            return;
+        }
+        List<Callback> waiting = pending.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        pending.put(key, waiting);
+
+        AppExecutors.media().execute(() -> {
+            long duration = readFromDisk(key);
+            if (duration == UNKNOWN_DURATION) {
+                duration = extractDuration(item.getFile());
+                if (duration != UNKNOWN_DURATION) writeToDisk(key, duration);
+            }
+            final long result = duration;
+            AppExecutors.mainThread().execute(() -> {
+                if (result != UNKNOWN_DURATION) memoryCache.put(key, result);
+                List<Callback> callbacks = pending.remove(key);
+                if (callbacks != null) {
+                    for (Callback c : callbacks) c.onDurationLoaded(item, result);
+                }
+            });
+        });
+    }
+
+    // Drops both cache levels for a recording that has been deleted
+    public void evict(RecordingItem item) {
+        final String key = item.getCacheKey();
+        memoryCache.remove(key);
+        AppExecutors.diskIO().execute(() -> {
+            File entry = new File(diskDir, key);
+            if (entry.exists() && !entry.delete()) {
+                Log.w(TAG, "Could not delete metadata cache entry " + key);
+            }
+        });
+    }
+
+    private long extractDuration(File file) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            if (RecordingCrypto.isEncrypted(file)) {
+                retriever.setDataSource(RecordingCrypto.openDataSource(file));
+            } else {
+                retriever.setDataSource(file.getAbsolutePath());
+            }
+            String value = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+            return value != null ? Long.parseLong(value) : UNKNOWN_DURATION;
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not read duration of " + file.getName(), e);
+            return UNKNOWN_DURATION;
+        } finally {
+            try { retriever.release(); } catch (IOException | RuntimeException ignored) { }
+        }
+    }
+
+    private long readFromDisk(String key) {
+        File entry = new File(diskDir, key);
+        if (!entry.exists()) return UNKNOWN_DURATION;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(entry))) {
+            if (in.readInt() != DISK_FORMAT_VERSION) return UNKNOWN_DURATION;
+            return in.readLong();
+        } catch (IOException e) {
+            Log.w(TAG, "Corrupt metadata cache entry " + key, e);
+            return UNKNOWN_DURATION;
+        }
+    }
+
+    private void writeToDisk(String key, long durationMs) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) return;
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(diskDir, key)))) {
+            out.writeInt(DISK_FORMAT_VERSION);
+            out.writeLong(durationMs);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write metadata cache entry " + key, e);
+        }
+    }
+}
@@ -1,14 +1,17 @@
 // RecordingsActivity.java
 package com.example.sos;
 
-import android.content.DialogInterface;
 import android.content.Intent;
+import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Bundle;
+import android.util.Log;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.content.FileProvider;
@@ -18,20 +21,27 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 // We now implement the listener interface from our adapter
 public class RecordingsActivity extends AppCompatActivity implements RecordingsAdapter.OnRecordingClickListener {
 
+    private static final String TAG = "RecordingsActivity";
+    private static final int PAGE_SIZE = 30;
+    // Start loading the next page when the user is this close to the end of what is shown
+    private static final int PREFETCH_DISTANCE = 10;
+
     private RecyclerView recyclerView;
     private TextView noRecordingsView;
     private RecordingsAdapter adapter;
     private MaterialToolbar topAppBar;
 
-    private List<File> recordingFiles; // Make the list a class-level variable
+    private List<RecordingItem> allRecordings = new ArrayList<>(); // Every recording on disk, newest first
+    private int shownCount = 0; // How many of them have been handed to the adapter so far
+    private MediaPlayer player; // In-app player for encrypted recordings
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -42,44 +52,102 @@ public class RecordingsActivity extends AppCompatActivity implements RecordingsA
         noRecordingsView = findViewById(R.id.tvNoRecordings);
         topAppBar = findViewById(R.id.topAppBar);
 
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
+        // "this" works because our Activity now implements the listener interface
+        adapter = new RecordingsAdapter(this, this);
+        recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= shownCount - PREFETCH_DISTANCE) {
+                    showNextPage();
+                }
+            }
+        });
 
         topAppBar.setNavigationOnClickListener(v -> finish());
+        setupEncryptionToggle();
 
         loadRecordings();
     }
 
     private void loadRecordings() {
-        recordingFiles = getRecordingFiles(); // Load files into the class-level list
+        // Listing and stat-ing hundreds of files is disk work, keep it off the UI thread
+        AppExecutors.diskIO().execute(() -> {
+            List<RecordingItem> recordings = getRecordingFiles();
+            AppExecutors.mainThread().execute(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                allRecordings = recordings;
+                shownCount = 0;
+                showNextPage();
+                updateEmptyState();
+            });
+        });
+    }
+
+    private void showNextPage() {
+        if (shownCount >= allRecordings.size()) return;
+        shownCount = Math.min(shownCount + PAGE_SIZE, allRecordings.size());
+        adapter.submitList(new ArrayList<>(allRecordings.subList(0, shownCount)), null);
+    }
 
-        if (recordingFiles.isEmpty()) {
+    private void updateEmptyState() {
+        if (allRecordings.isEmpty()) {
             noRecordingsView.setVisibility(View.VISIBLE);
             recyclerView.setVisibility(View.GONE);
         } else {
             noRecordingsView.setVisibility(View.GONE);
             recyclerView.setVisibility(View.VISIBLE);
-            // "this" works because our Activity now implements the listener interface
-            adapter = new RecordingsAdapter(recordingFiles, this);
-            recyclerView.setAdapter(adapter);
         }
     }
 
-    private List<File> getRecordingFiles() {
+    // Runs on a background thread
+    private List<RecordingItem> getRecordingFiles() {
         File recordingsDir = new File(getExternalFilesDir(null), "Recordings");
+        List<RecordingItem> recordings = new ArrayList<>();
         if (recordingsDir.exists() && recordingsDir.isDirectory()) {
             File[] files = recordingsDir.listFiles();
             if (files != null) {
-                List<File> fileList = new ArrayList<>(Arrays.asList(files));
-                Collections.sort(fileList, (f1, f2) -> Long.compare(f2.lastModified(), f1.lastModified()));
-                return fileList;
+                for (File file : files) {
+                    recordings.add(RecordingItem.from(file));
+                }
+                // Sort on the captured timestamps so the comparator doesn't stat every file again
+                Collections.sort(recordings, (r1, r2) -> Long.compare(r2.getLastModified(), r1.getLastModified()));
             }
         }
-        return new ArrayList<>();
+        Log.d(TAG, "Found " + recordings.size() + " recordings.");
+        return recordings;
+    }
+    private void setupEncryptionToggle() {
+        final ConfigStore configStore = ConfigStore.getInstance(this);
+        topAppBar.inflateMenu(R.menu.recordings_menu);
+        MenuItem encryptItem = topAppBar.getMenu().findItem(R.id.action_encrypt_recordings);
+        encryptItem.setChecked(configStore.get().encryptRecordings);
+        topAppBar.setOnMenuItemClickListener(item -> {
+            if (item.getItemId() == R.id.action_encrypt_recordings) {
+                boolean enabled = !item.isChecked();
+                item.setChecked(enabled);
+                configStore.update(config -> config.withEncryptRecordings(enabled));
+                Toast.makeText(this, enabled ? "New recordings will be encrypted." : "New recordings will not be encrypted.", Toast.LENGTH_SHORT).show();
+                return true;
+            }
+            if (item.getItemId() == R.id.action_alert_history) {
+                startActivity(new Intent(this, AlertHistoryActivity.class));
+                return true;
+            }
+            return false;
+        });
     }
 
     // This method is called when the user clicks anywhere on the list item EXCEPT the delete icon
     @Override
     public void onRecordingClick(File file) {
+        if (RecordingCrypto.isEncrypted(file)) {
+            // Other apps can't read our encrypted files, so these are played in-app and decrypted on the fly
+            playEncryptedRecording(file);
+            return;
+        }
         Uri fileUri = FileProvider.getUriForFile(this, getApplicationContext().getPackageName() + ".provider", file);
         Intent intent = new Intent(Intent.ACTION_VIEW);
         intent.setDataAndType(fileUri, "audio/*");
@@ -92,43 +160,136 @@ public class RecordingsActivity extends AppCompatActivity implements RecordingsA
         }
     }
 
+    private void playEncryptedRecording(File file) {
+        AppExecutors.diskIO().execute(() -> {
+            DecryptingMediaDataSource dataSource;
+            try {
+                dataSource = RecordingCrypto.openDataSource(file);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not open encrypted recording " + file.getName(), e);
+                dataSource = null;
+            }
+            final DecryptingMediaDataSource source = dataSource;
+            AppExecutors.mainThread().execute(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                if (source == null) {
+                    Toast.makeText(this, "Could not decrypt this recording.", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                releasePlayer();
+                player = new MediaPlayer();
+                try {
+                    player.setDataSource(source);
+                } catch (IllegalArgumentException | IllegalStateException e) {
+                    Log.e(TAG, "MediaPlayer rejected encrypted recording.", e);
+                    try { source.close(); } catch (IOException ignored) { }
+                    releasePlayer();
+                    return;
+                }
+                final AlertDialog playingDialog = new AlertDialog.Builder(this)
+                        .setTitle(RecordingCrypto.plainName(file))
+                        .setMessage("Playing encrypted recording...")
+                        .setPositiveButton("Stop", null)
+                        .setOnDismissListener(dialog -> releasePlayer())
+                        .show();
+                player.setOnPreparedListener(MediaPlayer::start);
+                player.setOnCompletionListener(mp -> playingDialog.dismiss());
+                player.setOnErrorListener((mp, what, extra) -> {
+                    Toast.makeText(this, "Playback failed.", Toast.LENGTH_SHORT).show();
+                    playingDialog.dismiss();
+                    return true;
+                });
+                player.prepareAsync();
+            });
+        });
+    }
+
+    private void releasePlayer() {
+        if (player != null) {
+            player.release();
+            player = null;
+        }
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        releasePlayer();
+    }
+
+    // Long press offers to bundle the whole alert session (recordings, alert log, locations) into one archive
+    @Override
+    public void onRecordingLongClick(RecordingItem recording) {
+        final String sessionId = EvidenceExporter.sessionIdFromRecording(recording.getFile());
+        if (sessionId == null) {
+            Toast.makeText(this, "This recording is not part of an incident.", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Export Incident")
+                .setMessage("Bundle all recordings, locations and the alert log of this incident into one file and share it?")
+                .setPositiveButton("Export", (dialog, which) -> exportIncident(sessionId))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    // Nothing is built here: EvidenceProvider writes the bundle while the chosen app reads it
+    private void exportIncident(String sessionId) {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType(EvidenceExporter.MIME_TYPE);
+        intent.putExtra(Intent.EXTRA_STREAM, EvidenceProvider.uriForSession(this, sessionId));
+        intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        try {
+            startActivity(Intent.createChooser(intent, "Share Incident Evidence"));
+        } catch (Exception e) {
+            Toast.makeText(this, "No app found to share the evidence bundle.", Toast.LENGTH_SHORT).show();
+        }
+    }
+
     // This method is called ONLY when the user clicks the delete icon
     @Override
-    public void onDeleteClick(final File file, final int position) {
+    public void onDeleteClick(final RecordingItem recording) {
         // Build an alert dialog to confirm the deletion
         new AlertDialog.Builder(this)
                 .setTitle("Delete Recording")
                 .setMessage("Are you sure you want to permanently delete this recording?")
                 .setPositiveButton("Delete", (dialog, which) -> {
                     // User clicked "Delete"
-                    deleteFileAndRefreshList(file, position);
+                    deleteFileAndRefreshList(recording);
                 })
                 .setNegativeButton("Cancel", null) // User clicked "Cancel", do nothing
                 .setIcon(android.R.drawable.ic_dialog_alert)
                 .show();
     }
 
-    private void deleteFileAndRefreshList(File fileToDelete, int position) {
-        try {
-            if (fileToDelete.delete()) {
-                // File was deleted successfully
-                recordingFiles.remove(position); // Remove the file from our list
-                adapter.notifyItemRemoved(position); // Tell the adapter to update the UI
-                adapter.notifyItemRangeChanged(position, recordingFiles.size()); // Update positions for remaining items
-
+    private void deleteFileAndRefreshList(RecordingItem recording) {
+        AppExecutors.diskIO().execute(() -> {
+            boolean deleted;
+            try {
+                deleted = recording.getFile().delete();
+            } catch (SecurityException e) {
+                Log.e(TAG, "Error deleting " + recording.getName(), e);
+                deleted = false;
+            }
+            final boolean success = deleted;
+            AppExecutors.mainThread().execute(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                if (!success) {
+                    // File could not be deleted
+                    Toast.makeText(this, "Failed to delete recording.", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                RecordingMetadataCache.getInstance(this).evict(recording);
+                WaveformCache.getInstance(this).evict(recording);
+                if (allRecordings.indexOf(recording) < shownCount) shownCount--;
+                allRecordings.remove(recording);
+                // DiffUtil works out the single removal, so only that row animates and nothing else rebinds
+                adapter.submitList(new ArrayList<>(allRecordings.subList(0, shownCount)), null);
                 Toast.makeText(this, "Recording deleted.", Toast.LENGTH_SHORT).show();
 
                 // If the list is now empty, show the "No Recordings Found" text
-                if (recordingFiles.isEmpty()) {
-                    noRecordingsView.setVisibility(View.VISIBLE);
-                    recyclerView.setVisibility(View.GONE);
-                }
-            } else {
-                // File could not be deleted
-                Toast.makeText(this, "Failed to delete recording.", Toast.LENGTH_SHORT).show();
-            }
-        } catch (Exception e) {
-            Toast.makeText(this, "Error deleting file.", Toast.LENGTH_SHORT).show();
-        }
+                updateEmptyState();
+            });
+        });
     }
 }
@@ -1,31 +1,62 @@
 // RecordingsAdapter.java
 package com.example.sos;
 
+import android.content.Context;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.TextView;
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 import java.io.File;
 import java.util.List;
+import java.util.Locale;
 
 public class RecordingsAdapter extends RecyclerView.Adapter<RecordingsAdapter.ViewHolder> {
 
-    private final List<File> recordingFiles;
+    // Rows are the same recording when they point at the same file; contents only change if the file was rewritten
+    private static final DiffUtil.ItemCallback<RecordingItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<RecordingItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull RecordingItem oldItem, @NonNull RecordingItem newItem) {
+            return oldItem.getFile().equals(newItem.getFile());
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull RecordingItem oldItem, @NonNull RecordingItem newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    // Diffs are computed on a background thread, so large lists never stall the UI when they change
+    private final AsyncListDiffer<RecordingItem> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
     private final OnRecordingClickListener listener;
+    private final RecordingMetadataCache metadataCache;
+    private final WaveformCache waveformCache;
 
-    // We create a listener interface that can handle two different events:
-    // a click on the item itself (to play) and a click on the delete icon.
+    // We create a listener interface that can handle three different events:
+    // a click on the item itself (to play), a long press (to export the incident) and a click on the delete icon.
     public interface OnRecordingClickListener {
         void onRecordingClick(File file);
-        void onDeleteClick(File file, int position); // We also pass the position
+        void onRecordingLongClick(RecordingItem recording);
+        void onDeleteClick(RecordingItem recording);
     }
 
-    public RecordingsAdapter(List<File> recordingFiles, OnRecordingClickListener listener) {
-        this.recordingFiles = recordingFiles;
+    public RecordingsAdapter(Context context, OnRecordingClickListener listener) {
         this.listener = listener;
+        this.metadataCache = RecordingMetadataCache.getInstance(context);
+        this.waveformCache = WaveformCache.getInstance(context);
+    }
+
+    public void submitList(List<RecordingItem> recordings, Runnable commitCallback) {
+        differ.submitList(recordings, commitCallback);
+    }
+
+    public List<RecordingItem> getCurrentList() {
+        return differ.getCurrentList();
     }
 
     @NonNull
@@ -37,29 +68,73 @@ public class RecordingsAdapter extends RecyclerView.Adapter<RecordingsAdapter.Vi
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        File file = recordingFiles.get(position);
-        holder.recordingName.setText(file.getName());
+        RecordingItem recording = differ.getCurrentList().get(position);
+        holder.boundKey = recording.getCacheKey();
+        holder.recordingName.setText(recording.getName());
+
+        // Duration comes from the cache when we have it, otherwise it is filled in once extracted
+        Long duration = metadataCache.getCachedDuration(recording);
+        if (duration != null) {
+            holder.recordingDetails.setText(formatDetails(holder.itemView.getContext(), duration, recording.getSizeBytes()));
+        } else {
+            holder.recordingDetails.setText(Formatter.formatShortFileSize(holder.itemView.getContext(), recording.getSizeBytes()));
+            metadataCache.loadDuration(recording, (item, durationMs) -> {
+                // The holder may have been recycled for another row while we were extracting
+                if (item.getCacheKey().equals(holder.boundKey)) {
+                    holder.recordingDetails.setText(formatDetails(holder.itemView.getContext(), durationMs, item.getSizeBytes()));
+                }
+            });
+        }
+
+        // Same for the waveform thumbnail: flat placeholder until the peaks are decoded or read from disk
+        byte[] peaks = waveformCache.getCachedPeaks(recording);
+        holder.waveform.setPeaks(peaks);
+        if (peaks == null) {
+            waveformCache.loadPeaks(recording, (item, loadedPeaks) -> {
+                if (item.getCacheKey().equals(holder.boundKey)) {
+                    holder.waveform.setPeaks(loadedPeaks);
+                }
+            });
+        }
 
         // Set the listener for the entire item (to play the recording)
-        holder.itemView.setOnClickListener(v -> listener.onRecordingClick(file));
+        holder.itemView.setOnClickListener(v -> listener.onRecordingClick(recording.getFile()));
+        holder.itemView.setOnLongClickListener(v -> {
+            listener.onRecordingLongClick(recording);
+            return true;
+        });
 
         // Set the listener specifically for the delete icon
-        holder.deleteIcon.setOnClickListener(v -> listener.onDeleteClick(file, holder.getAdapterPosition()));
+        holder.deleteIcon.setOnClickListener(v -> listener.onDeleteClick(recording));
     }
 
     @Override
     public int getItemCount() {
-        return recordingFiles.size();
+        return differ.getCurrentList().size();
+    }
+
+    private static String formatDetails(Context context, long durationMs, long sizeBytes) {
+        String size = Formatter.formatShortFileSize(context, sizeBytes);
+        if (durationMs == RecordingMetadataCache.UNKNOWN_DURATION) {
+            return size;
+        }
+        long totalSeconds = durationMs / 1000;
+        return String.format(Locale.getDefault(), "%d:%02d  •  %s", totalSeconds / 60, totalSeconds % 60, size);
     }
 
     // The ViewHolder now also holds a reference to the delete icon
     public static class ViewHolder extends RecyclerView.ViewHolder {
         TextView recordingName;
+        TextView recordingDetails;
+        WaveformView waveform;
         ImageView deleteIcon; // The new delete icon
+        String boundKey; // Cache key of the recording currently shown in this row
 
         public ViewHolder(@NonNull View itemView) {
             super(itemView);
             recordingName = itemView.findViewById(R.id.tvRecordingName);
+            recordingDetails = itemView.findViewById(R.id.tvRecordingDetails);
+            waveform = itemView.findViewById(R.id.waveform);
             deleteIcon = itemView.findViewById(R.id.ivDeleteIcon); // Find the delete icon by its ID
         }
     }
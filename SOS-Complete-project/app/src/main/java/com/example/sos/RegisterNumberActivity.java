@@ -1,23 +1,20 @@
 package com.example.sos;
 
 import android.Manifest;
-import android.app.Activity;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.pm.PackageManager;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.provider.ContactsContract;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
 import android.widget.EditText;
+import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.AppCompatButton;
 import androidx.core.app.ActivityCompat;
@@ -25,12 +22,14 @@ import androidx.core.content.ContextCompat;
 
 import com.google.android.material.button.MaterialButton;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class RegisterNumberActivity extends AppCompatActivity {
-    private static final int PICK_CONTACT = 1;
     private static final int REQUEST_READ_CONTACTS_PERMISSION = 100;
     EditText contactName, contactNumber;
     AppCompatButton btnAddContact, btnContactBook;
-    DatabaseHelper databaseHelper;
+    ContactRepository contactRepository;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,36 +40,18 @@ public class RegisterNumberActivity extends AppCompatActivity {
         contactName = findViewById(R.id.contactName);
         btnAddContact = findViewById(R.id.btnAddContact);
         btnContactBook = findViewById(R.id.btnContactBook);
-        databaseHelper = new DatabaseHelper(this);
+        contactRepository = ContactRepository.getInstance(this);
 
        btnAddContact.setOnClickListener(new View.OnClickListener() {
            @Override
            public void onClick(View view) {
                String name = contactName.getText().toString();
                String number = contactNumber.getText().toString();
-                int a = databaseHelper.count();
-
-               if ( a < 5) {
-                   if (number.length()!=10){
-                       contactNumber.setError("Enter valid number");
-                       return;
-                   }
-                   boolean checkData = databaseHelper.insertDataFunc(name, number);
-
-                   if (checkData) {
-                       Toast.makeText(RegisterNumberActivity.this, "Contact is registered", Toast.LENGTH_SHORT).show();
-                       contactName.setText("");
-                       contactNumber.setText("");
-                   }
-                   else {
-                       Toast.makeText(RegisterNumberActivity.this, "Contact doesn't registered", Toast.LENGTH_SHORT).show();
-                   }
+               if (number.length()!=10){
+                   contactNumber.setError("Enter valid number");
+                   return;
                }
-               else {
-                       Toast.makeText(RegisterNumberActivity.this, "Can't Add more than 5 Contacts", Toast.LENGTH_SHORT).show();
-                   }
-
-
+               addContact(name, number, true);
            }
        });
 
@@ -78,12 +59,10 @@ public class RegisterNumberActivity extends AppCompatActivity {
             @Override
             public void onClick(View view) {
                 if (ContextCompat.checkSelfPermission(RegisterNumberActivity.this, Manifest.permission.READ_CONTACTS) == PackageManager.PERMISSION_GRANTED) {
-                    int a = databaseHelper.count();
-                    if (a < 5) {
-                        Intent intent = new Intent(Intent.ACTION_PICK, ContactsContract.Contacts.CONTENT_URI);
-                        startActivityForResult(intent, PICK_CONTACT);
+                    if (contactRepository.getCount() < ContactPolicy.getMaxContacts(RegisterNumberActivity.this)) {
+                        showContactPicker();
                     } else {
-                        Toast.makeText(RegisterNumberActivity.this, "Can't Add more than 5 Contacts", Toast.LENGTH_SHORT).show();
+                        showLimitReached();
                     }
                 }
                 else {
@@ -93,67 +72,121 @@ public class RegisterNumberActivity extends AppCompatActivity {
         });
     }
 
-    @Override
-    protected void onActivityResult(int requestCode, int resultCode, @Nullable Intent data) {
-        super.onActivityResult(requestCode, resultCode, data);
-        if (requestCode == PICK_CONTACT) {
-            if (resultCode == Activity.RESULT_OK) {
-
-                Uri contactData = data.getData();
-                Cursor c = managedQuery(contactData, null, null, null, null);
-
-                if (c != null && c.getCount() > 0) {
-                    c.moveToFirst();
-                    int nameColIndex = c.getColumnIndex(ContactsContract.Contacts.DISPLAY_NAME);
-                    int numColIndex = c.getColumnIndex(ContactsContract.Contacts.HAS_PHONE_NUMBER);
-                    int idColIndex = c.getColumnIndex(ContactsContract.Contacts._ID);
-
-                    if (nameColIndex >= 0 && idColIndex >= 0 && numColIndex >= 0) {
-                        String contactName = c.getString(nameColIndex);
-                        String contactId = c.getString(idColIndex);
-                        String contactNum = c.getString(numColIndex);
-                        String phone="";
-
-                        if (contactNum.equalsIgnoreCase("1")) {
-                            Cursor phones = getContentResolver().query(ContactsContract.CommonDataKinds.Phone.CONTENT_URI, null, ContactsContract.CommonDataKinds.Phone.CONTACT_ID + " = " + contactId, null, null);
-                            if (phones != null && phones.getCount() > 0){
-                                phones.moveToFirst();
-                                int index = phones.getColumnIndex("data1");
-                                if (index>=0){
-                                    phone = phones.getString(index);
-                                }
+    // Lets the user tick several contacts at once instead of one picker round trip per contact
+    private void showContactPicker() {
+        btnContactBook.setEnabled(false);
+        AppExecutors.diskIO().execute(() -> {
+            List<ContactImporter.Candidate> candidates = ContactImporter.loadCandidates(getContentResolver());
+            AppExecutors.mainThread().execute(() -> {
+                btnContactBook.setEnabled(true);
+                if (isFinishing() || isDestroyed()) return;
+                if (candidates.isEmpty()) {
+                    Toast.makeText(this, "No contacts with a phone number", Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                showCandidates(candidates);
+            });
+        });
+    }
+
+    private void showCandidates(List<ContactImporter.Candidate> candidates) {
+        final int maxContacts = ContactPolicy.getMaxContacts(this);
+        final int remaining = maxContacts == ContactPolicy.UNLIMITED ? candidates.size() : maxContacts - contactRepository.getCount();
+        String[] names = new String[candidates.size()];
+        for (int i = 0; i < names.length; i++) names[i] = candidates.get(i).name;
+        final boolean[] checked = new boolean[names.length];
+        final int[] checkedCount = {0};
+
+        new AlertDialog.Builder(this)
+                .setTitle(remaining >= candidates.size() ? "Choose contacts" : "Choose up to " + remaining + " contacts")
+                .setMultiChoiceItems(names, checked, (dialog, which, isChecked) -> {
+                    if (isChecked && checkedCount[0] >= remaining) {
+                        // Over the limit: undo the tick
+                        checked[which] = false;
+                        ((AlertDialog) dialog).getListView().setItemChecked(which, false);
+                        showLimitReached();
+                        return;
+                    }
+                    checkedCount[0] += isChecked ? 1 : -1;
+                })
+                .setPositiveButton("Import", (dialog, which) -> {
+                    List<ContactImporter.Candidate> selected = new ArrayList<>();
+                    for (int i = 0; i < checked.length; i++) {
+                        if (checked[i]) selected.add(candidates.get(i));
+                    }
+                    if (!selected.isEmpty()) importContacts(selected);
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
 
-                            }
+    private void importContacts(List<ContactImporter.Candidate> selected) {
+        ProgressBar progressBar = new ProgressBar(this, null, android.R.attr.progressBarStyleHorizontal);
+        progressBar.setIndeterminate(true);
+        int padding = (int) (24 * getResources().getDisplayMetrics().density);
+        progressBar.setPadding(padding, padding, padding, 0);
+        AlertDialog progressDialog = new AlertDialog.Builder(this)
+                .setTitle("Importing contacts")
+                .setView(progressBar)
+                .setCancelable(false)
+                .show();
+
+        AppExecutors.diskIO().execute(() -> {
+            // One provider query for every selected contact's number
+            List<ContactModel> contacts = ContactImporter.resolveNumbers(getContentResolver(), selected);
+            contactRepository.insertAll(contacts, ContactPolicy.getMaxContacts(this), new ContactRepository.ImportListener() {
+                @Override
+                public void onImportProgress(int done, int total) {
+                    progressBar.setIndeterminate(false);
+                    progressBar.setMax(total);
+                    progressBar.setProgress(done);
+                }
 
-                        }
-                        int a = databaseHelper.count();
-                        if (a < 5) {
-                            boolean checkData = databaseHelper.insertDataFunc(contactName, phone);
+                @Override
+                public void onImportFinished(ContactRepository.ImportResult result) {
+                    if (isFinishing() || isDestroyed()) return;
+                    progressDialog.dismiss();
+                    int skipped = selected.size() - result.inserted;
+                    String message = result.inserted + (result.inserted == 1 ? " contact" : " contacts") + " registered";
+                    if (result.duplicates > 0) message += ", " + result.duplicates + " already registered";
+                    if (skipped - result.duplicates > 0) message += ", " + (skipped - result.duplicates) + " skipped";
+                    Toast.makeText(RegisterNumberActivity.this, message, Toast.LENGTH_LONG).show();
+                    Log.i("content_provider", "Imported " + result.inserted + " of " + selected.size() + " selected contacts");
+                }
+            });
+        });
+    }
 
-                            if (checkData) {
-                                Toast.makeText(RegisterNumberActivity.this, "Contact is registered", Toast.LENGTH_SHORT).show();
-                            } else {
-                                Toast.makeText(RegisterNumberActivity.this, "Contact doesn't registered", Toast.LENGTH_SHORT).show();
-                            }
-                        }
-                        Log.i("content_provider", "Name : " + contactName + " Number : " + phone);
-                    } else {
-                        Toast.makeText(this, "Column not found", Toast.LENGTH_SHORT).show();
-                    }
+    // The repository checks the limit against its in-memory snapshot and inserts on the database thread
+    private void addContact(String name, String number, boolean clearForm) {
+        contactRepository.insert(name, number, ContactPolicy.getMaxContacts(this), result -> {
+            if (result == ContactRepository.LIMIT_REACHED) {
+                showLimitReached();
+            } else if (result == ContactRepository.DUPLICATE) {
+                Toast.makeText(RegisterNumberActivity.this, "This number is already registered", Toast.LENGTH_SHORT).show();
+            } else if (result == ContactRepository.INSERTED) {
+                Toast.makeText(RegisterNumberActivity.this, "Contact is registered", Toast.LENGTH_SHORT).show();
+                if (clearForm) {
+                    contactName.setText("");
+                    contactNumber.setText("");
                 }
+            } else {
+                Toast.makeText(RegisterNumberActivity.this, "Contact doesn't registered", Toast.LENGTH_SHORT).show();
             }
-        }
-
+        });
+    }
 
+    private void showLimitReached() {
+        Toast.makeText(this, "Can't Add more than " + ContactPolicy.getMaxContacts(this) + " Contacts", Toast.LENGTH_SHORT).show();
     }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == REQUEST_READ_CONTACTS_PERMISSION) {
             if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                // Permission granted, make the phone call
-                Intent intent = new Intent(Intent.ACTION_PICK, ContactsContract.Contacts.CONTENT_URI);
-                startActivityForResult(intent, PICK_CONTACT);
+                // Permission granted, open the contact picker
+                showContactPicker();
                 Toast.makeText(this, "Call permission granted", Toast.LENGTH_SHORT).show();
             } else {
                 if (ActivityCompat.shouldShowRequestPermissionRationale(this, Manifest.permission.READ_CONTACTS)) {
@@ -0,0 +1,109 @@
+// SafetyZones.java
+package com.example.sos;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// The user's safety zones (a commute route stop, the late-shift car park, ...): places where protection
+// should arm itself, so it doesn't have to listen all day. Rows live in the zones table; every change is
+// handed to ZoneReceiver, which registers the zones with the platform geofencing API in the detector
+// process. Queries run on the database executor, callbacks on the main thread.
+public class SafetyZones {
+
+    private static final String TAG = "SafetyZones";
+    // Smaller than this and location noise alone makes the geofence flap in and out
+    public static final float MIN_RADIUS_M = 100;
+    public static final float DEFAULT_RADIUS_M = 250;
+    // The geofencing API allows 100 per app; nobody needs that many places to be protected in
+    public static final int MAX_ZONES = 20;
+
+    public static final class Zone {
+        public final long id;
+        public final String name;
+        public final double latitude;
+        public final double longitude;
+        public final float radiusM;
+
+        public Zone(long id, String name, double latitude, double longitude, float radiusM) {
+            this.id = id;
+            this.name = name;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radiusM = radiusM;
+        }
+
+        // Geofence request id; ZoneReceiver maps it back to the zone
+        public String requestId() {
+            return String.valueOf(id);
+        }
+    }
+
+    private static SafetyZones instance;
+
+    private final Context context;
+    private final DatabaseHelper db;
+
+    public static synchronized SafetyZones getInstance(Context context) {
+        if (instance == null) {
+            instance = new SafetyZones(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SafetyZones(Context context) {
+        this.context = context;
+        this.db = DatabaseHelper.getInstance(context);
+    }
+
+    public void list(ContactDao.Callback<List<Zone>> callback) {
+        AppExecutors.database().execute(() -> {
+            List<Zone> zones = fetchAll();
+            AppExecutors.mainThread().execute(() -> callback.onResult(zones));
+        });
+    }
+
+    // The callback gets false if the zone couldn't be saved (or there are already MAX_ZONES)
+    public void add(String name, double latitude, double longitude, float radiusM, ContactDao.Callback<Boolean> callback) {
+        AppExecutors.database().execute(() -> {
+            boolean added = false;
+            try {
+                if (db.fetchZones().size() < MAX_ZONES) {
+                    added = db.insertZone(name, latitude, longitude, Math.max(MIN_RADIUS_M, radiusM)) != -1;
+                }
+            } catch (SQLException e) {
+                Log.e(TAG, "Could not save zone.", e);
+            }
+            if (added) ZoneReceiver.requestSync(context);
+            final boolean result = added;
+            AppExecutors.mainThread().execute(() -> callback.onResult(result));
+        });
+    }
+
+    public void delete(long zoneId, ContactDao.Callback<Boolean> callback) {
+        AppExecutors.database().execute(() -> {
+            boolean deleted = false;
+            try {
+                deleted = db.deleteZone(zoneId);
+            } catch (SQLException e) {
+                Log.e(TAG, "Could not delete zone.", e);
+            }
+            if (deleted) ZoneReceiver.requestSync(context);
+            final boolean result = deleted;
+            AppExecutors.mainThread().execute(() -> callback.onResult(result));
+        });
+    }
+
+    // Blocking; database or other background threads only
+    public List<Zone> fetchAll() {
+        try {
+            return db.fetchZones();
+        } catch (SQLException e) {
+            Log.e(TAG, "Could not read zones.", e);
+            return new ArrayList<>();
+        }
+    }
+}
@@ -0,0 +1,255 @@
+// SafetyZonesActivity.java
+package com.example.sos;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.text.TextUtils;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.materialswitch.MaterialSwitch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// The user's safety zones and the zone arming switch. A zone is added where the user is standing (the
+// place they want covered, e.g. the car park at the end of a late shift) with a name and a radius;
+// long-press removes one. Registering them with the platform is ZoneReceiver's job.
+public class SafetyZonesActivity extends AppCompatActivity {
+
+    private RecyclerView recyclerView;
+    private TextView noZonesView;
+    private TextView savingsView;
+    private MaterialSwitch zoneArmingSwitch;
+    private ZoneAdapter adapter;
+    private SafetyZones safetyZones;
+    private ConfigStore configStore;
+
+    private ActivityResultLauncher<String[]> foregroundLocationLauncher;
+    private ActivityResultLauncher<String> backgroundLocationLauncher;
+    private Runnable afterForegroundLocation; // What to do once the foreground location grant comes back
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_safety_zones);
+
+        recyclerView = findViewById(R.id.recyclerViewZones);
+        noZonesView = findViewById(R.id.tvNoZones);
+        savingsView = findViewById(R.id.tvZoneSavings);
+        zoneArmingSwitch = findViewById(R.id.switchZoneArming);
+        MaterialToolbar topAppBar = findViewById(R.id.topAppBar);
+        topAppBar.setNavigationOnClickListener(v -> finish());
+
+        safetyZones = SafetyZones.getInstance(this);
+        configStore = ConfigStore.getInstance(this);
+        adapter = new ZoneAdapter();
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        recyclerView.setAdapter(adapter);
+
+        foregroundLocationLauncher = registerForActivityResult(new ActivityResultContracts.RequestMultiplePermissions(), result -> {
+            Runnable next = afterForegroundLocation;
+            afterForegroundLocation = null;
+            if (hasForegroundLocation()) {
+                if (next != null) next.run();
+            } else {
+                Toast.makeText(this, "Location permission is needed for safety zones.", Toast.LENGTH_LONG).show();
+                zoneArmingSwitch.setChecked(configStore.get().zoneArmingEnabled);
+            }
+        });
+        backgroundLocationLauncher = registerForActivityResult(new ActivityResultContracts.RequestPermission(), granted -> {
+            if (granted) {
+                setZoneArming(true);
+            } else {
+                Toast.makeText(this, "Choose \"Allow all the time\" so zones work while the app is closed.", Toast.LENGTH_LONG).show();
+                zoneArmingSwitch.setChecked(false);
+            }
+        });
+
+        zoneArmingSwitch.setChecked(configStore.get().zoneArmingEnabled);
+        zoneArmingSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked == configStore.get().zoneArmingEnabled) return; // Set back by us, not the user
+            if (isChecked) enableZoneArming();
+            else setZoneArming(false);
+        });
+        findViewById(R.id.fabAddZone).setOnClickListener(v -> withForegroundLocation(this::addZoneHere));
+
+        loadZones();
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        loadSavings();
+    }
+
+    private void loadZones() {
+        safetyZones.list(zones -> {
+            if (isFinishing() || isDestroyed()) return;
+            adapter.setZones(zones);
+            boolean empty = zones.isEmpty();
+            noZonesView.setVisibility(empty ? View.VISIBLE : View.GONE);
+            recyclerView.setVisibility(empty ? View.GONE : View.VISIBLE);
+        });
+    }
+
+    private void loadSavings() {
+        AppExecutors.diskIO().execute(() -> {
+            String savings = ZoneReceiver.describeSavings(this);
+            AppExecutors.mainThread().execute(() -> {
+                if (isFinishing() || isDestroyed()) return;
+                savingsView.setText("So far: " + savings);
+                savingsView.setVisibility(configStore.get().zoneArmingEnabled ? View.VISIBLE : View.GONE);
+            });
+        });
+    }
+
+    // Android only offers "Allow all the time" once foreground location has been granted, in a second step
+    private void enableZoneArming() {
+        withForegroundLocation(() -> {
+            if (ZoneReceiver.hasLocationPermissions(this)) {
+                setZoneArming(true);
+            } else {
+                backgroundLocationLauncher.launch(Manifest.permission.ACCESS_BACKGROUND_LOCATION);
+            }
+        });
+    }
+
+    private void setZoneArming(boolean enabled) {
+        configStore.update(config -> config.withZoneArmingEnabled(enabled));
+        ZoneReceiver.requestSync(this);
+        zoneArmingSwitch.setChecked(enabled);
+        savingsView.setVisibility(enabled ? View.VISIBLE : View.GONE);
+        Toast.makeText(this, enabled ? "Monitoring will follow your zones." : "Zones no longer turn monitoring on.", Toast.LENGTH_SHORT).show();
+    }
+
+    private void withForegroundLocation(Runnable action) {
+        if (hasForegroundLocation()) {
+            action.run();
+            return;
+        }
+        afterForegroundLocation = action;
+        foregroundLocationLauncher.launch(new String[]{
+                Manifest.permission.ACCESS_FINE_LOCATION, Manifest.permission.ACCESS_COARSE_LOCATION});
+    }
+
+    private boolean hasForegroundLocation() {
+        return ContextCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    @SuppressLint("MissingPermission") // Checked by withForegroundLocation
+    private void addZoneHere() {
+        Toast.makeText(this, "Finding your location...", Toast.LENGTH_SHORT).show();
+        LocationServices.getFusedLocationProviderClient(this)
+                .getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, null)
+                .addOnSuccessListener(this, location -> {
+                    if (location == null) {
+                        Toast.makeText(this, "Could not get your location. Is location turned on?", Toast.LENGTH_LONG).show();
+                        return;
+                    }
+                    showAddZoneDialog(location.getLatitude(), location.getLongitude());
+                })
+                .addOnFailureListener(this, e ->
+                        Toast.makeText(this, "Could not get your location.", Toast.LENGTH_LONG).show());
+    }
+
+    private void showAddZoneDialog(double latitude, double longitude) {
+        View view = LayoutInflater.from(this).inflate(R.layout.dialog_add_zone, null);
+        EditText nameInput = view.findViewById(R.id.etZoneName);
+        EditText radiusInput = view.findViewById(R.id.etZoneRadius);
+        new AlertDialog.Builder(this)
+                .setTitle("Add Safety Zone")
+                .setView(view)
+                .setPositiveButton("Add", (dialog, which) -> {
+                    String name = nameInput.getText().toString().trim();
+                    if (TextUtils.isEmpty(name)) name = "Zone";
+                    float radius = SafetyZones.DEFAULT_RADIUS_M;
+                    try {
+                        radius = Float.parseFloat(radiusInput.getText().toString());
+                    } catch (NumberFormatException ignored) {
+                        // Keep the default
+                    }
+                    final float radiusM = Math.max(SafetyZones.MIN_RADIUS_M, radius);
+                    safetyZones.add(name, latitude, longitude, radiusM, added -> {
+                        if (!added) {
+                            Toast.makeText(this, "Could not add the zone (at most " + SafetyZones.MAX_ZONES + ").", Toast.LENGTH_LONG).show();
+                        }
+                        loadZones();
+                    });
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private void confirmDelete(SafetyZones.Zone zone) {
+        new AlertDialog.Builder(this)
+                .setTitle("Remove Zone")
+                .setMessage("Remove \"" + zone.name + "\"?")
+                .setPositiveButton("Remove", (dialog, which) -> safetyZones.delete(zone.id, deleted -> loadZones()))
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
+    private class ZoneAdapter extends RecyclerView.Adapter<ZoneAdapter.ViewHolder> {
+        private final List<SafetyZones.Zone> zones = new ArrayList<>();
+
+        @SuppressLint("NotifyDataSetChanged") // A handful of rows at most
+        void setZones(List<SafetyZones.Zone> newZones) {
+            zones.clear();
+            zones.addAll(newZones);
+            notifyDataSetChanged();
+        }
+
+        @NonNull
+        @Override
+        public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            return new ViewHolder(LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item_zone, parent, false));
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+            SafetyZones.Zone zone = zones.get(position);
+            holder.name.setText(zone.name);
+            holder.details.setText(String.format(Locale.US, "%.0f m around %.4f, %.4f", zone.radiusM, zone.latitude, zone.longitude));
+            holder.itemView.setOnLongClickListener(v -> {
+                confirmDelete(zone);
+                return true;
+            });
+        }
+
+        @Override
+        public int getItemCount() {
+            return zones.size();
+        }
+
+        class ViewHolder extends RecyclerView.ViewHolder {
+            final TextView name;
+            final TextView details;
+
+            ViewHolder(View itemView) {
+                super(itemView);
+                name = itemView.findViewById(R.id.tvZoneName);
+                details = itemView.findViewById(R.id.tvZoneDetails);
+            }
+        }
+    }
+}
@@ -2,70 +2,210 @@ package com.example.sos;
 
 import android.Manifest;
 import android.app.Notification;
+import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.location.Location;
 import android.media.MediaRecorder;
 import android.os.Build;
+import android.os.Debug;
 import android.os.Handler;
 import android.os.IBinder;
 import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
-import android.telephony.SmsManager;
 import android.util.Log;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.ActivityCompat;
 import androidx.core.app.NotificationCompat;
 import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 import java.io.File;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ServiceMine extends Service implements SensorEventListener, VoiceActivationManager.ActivationCallback {
 
     private static final String TAG = "ServiceMine";
     private static final int SHAKE_THRESHOLD_G_FORCE = 3;
-    private static final long ALERT_COOLDOWN_MS = 20000; // 20-second cooldown
+    // Per-source limits for TriggerBus: debounce, burst, then one more alert every refill period.
+    // These replace the old global 20 s cooldown, so a false-alarming shake can't lock out voice.
+    private static final TriggerBus.Limits SHAKE_LIMITS = new TriggerBus.Limits(2000, 2, 60000);
+    private static final TriggerBus.Limits VOICE_LIMITS = new TriggerBus.Limits(3000, 3, 30000); // Partial and final results both match
+    private static final TriggerBus.Limits NOTIFICATION_LIMITS = new TriggerBus.Limits(1000, 3, 10000); // A deliberate tap
+    static final String ACTION_TRIGGER = "com.example.sos.action.TRIGGER";
     private static final long RECORDING_DURATION_MS = 40000; // 40 seconds
+    private static final long LOCATION_WAIT_MS = 4000; // Longest the first SMS waits for a fresh location fix
+    private static final long LAST_LOCATION_MAX_AGE_MS = 120000; // Older last-known locations aren't worth sending
+    private static final long LOCATION_STAGE_MAX_MS = 30000; // Longest we keep the CPU up for a late fix
+    private static final long RECORDING_STAGE_SLACK_MS = 5000; // Recording wakelock outlives the timer by this much
+    private static final int NOTIFICATION_ID = 115;
+    private static final long WATCHDOG_INTERVAL_MS = 15000;
+    private static final long SENSOR_STALL_MS = 10000; // Even the slowest mode samples at 5 Hz and batches at most 2 s
+    private static final long VOICE_STALL_MS = 30000; // The recognizer calls back at least every few seconds, even if only with a timeout
+    private static final long MEMORY_SAMPLE_DELAY_MS = 10000; // Let startup settle before measuring
+
+    // What the service needs to do its job; MainActivity asks for them, BootReceiver checks them
+    static final String[] REQUIRED_PERMISSIONS = {
+            Manifest.permission.SEND_SMS, Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION, Manifest.permission.RECORD_AUDIO,
+            Manifest.permission.FOREGROUND_SERVICE, Manifest.permission.FOREGROUND_SERVICE_LOCATION
+    };
+    // Asked for together with the required ones, but the service runs without them
+    static final String[] OPTIONAL_PERMISSIONS = {
+            Manifest.permission.READ_PHONE_STATE // Dual-SIM failover, see SimRouter
+    };
+    // Set by BootReceiver and ZoneReceiver: why the service was started and when (elapsedRealtime) that was asked for
+    static final String EXTRA_START_REASON = "start_reason";
+    static final String EXTRA_REQUESTED_AT = "requested_at";
 
     private Vibrator vibrator;
-    private DatabaseHelper db;
+    private volatile ContactRepository contactRepository; // Set from the database thread during startup; see contacts()
+    private ConfigStore configStore;
+    private ServiceStatus serviceStatus; // What MainActivity shows; see setAlertInProgress and onVoiceArmedChanged
+    private InputWatchdog watchdog;
+    private InputWatchdog.Heartbeat sensorHeartbeat;
+    private InputWatchdog.Heartbeat voiceHeartbeat;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper()); // Watchdog ticks and the voice duty cycle
+    private final Runnable watchdogTick = new Runnable() {
+        @Override
+        public void run() {
+            watchdog.check(SystemClock.elapsedRealtime());
+            serviceStatus.setWatchdogCounts(watchdog.getStalls(), watchdog.getRecoveries());
+            mainHandler.postDelayed(this, WATCHDOG_INTERVAL_MS);
+        }
+    };
+    private final Runnable memoryProbe = () -> AppExecutors.diskIO().execute(this::sampleMemory);
+    // Startup, after the notification is up and shake is armed: each runs as its own main-thread message
+    private final Runnable initLocation = this::initLocation;
+    private final Runnable initVoice = this::initVoice;
+    private StartupMetrics startupMetrics;
+    private boolean screenOn = true; // As last reported by the governor
+    private String startReason; // From BootReceiver or ZoneReceiver, null when the user started it
+    private long startRequestedAt;
+    private ProtectionGovernor governor;
+    private ProtectionPolicy.Mode protectionMode; // null until the governor has reported
+    private boolean voiceWanted = false; // Whether the current mode (and screen state) wants voice at all
+    // In the duty-cycled modes the recognizer listens for a while, then pauses, and so on
+    private final Runnable voiceDutyCycle = new Runnable() {
+        @Override
+        public void run() {
+            if (!voiceWanted) return;
+            if (voiceManager.isListening()) {
+                voiceManager.stopListening();
+                mainHandler.postDelayed(this, protectionMode.voicePauseMs);
+            } else {
+                voiceManager.startListening();
+                mainHandler.postDelayed(this, protectionMode.voiceListenMs);
+            }
+        }
+    };
+    // Only there so the fused provider keeps a warm fix for getLastLocation() at alert time
+    private final LocationCallback warmLocationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) { }
+    };
     private FusedLocationProviderClient fusedLocationClient;
     private SensorManager sensorManager;
     private Sensor accelerometer;
     private VoiceActivationManager voiceManager;
     private MediaRecorder mediaRecorder;
-
-    private long lastAlertTime = 0;
+    private EncryptedRecordingSink encryptedSink; // Only set while an encrypted recording is running
+    private MicrophoneArbiter.Lease recordingMicLease; // Held for the whole recording; pauses voice listening
+
+    private IncidentLog incidentLog; // Evidence trail of the current (or last) alert session
+    private AlertHistory.Recorder alertHistory; // History row of the current (or last) alert
+    private AlertExecutor alertExecutor; // Wakelocks for the current (or last) alert's stages
+    private AlertExecutor.Stage recordingStage;
+    private TriggerBus triggerBus;
+    private TriggerBus.Source shakeTrigger;
+    private TriggerBus.Source voiceTrigger;
+    private TriggerBus.Source notificationTrigger;
+    private ButtonTrigger buttonTrigger; // Power/volume press patterns; registers its own sources
+    private Deterrent deterrent; // Optional siren + strobe, on its own thread
+    // The user can switch the deterrent on while we're running; load the siren then rather than at the alert.
+    // Switching it off is also the way to silence a siren that's going.
+    private final ConfigStore.Listener configListener = config -> {
+        if (config.deterrentEnabled) deterrent.prepare();
+        else deterrent.stop();
+    };
     private volatile boolean isAlertInProgress = false;
 
     @Override
     public void onCreate() {
         super.onCreate();
-        updateServiceStatus(true);
-        Log.d(TAG, "Service CREATED.");
-
-        db = new DatabaseHelper(this);
+        startupMetrics = new StartupMetrics(SystemClock.elapsedRealtime());
+        Log.i(TAG, "Service CREATED " + (SystemClock.elapsedRealtime() - Process.getStartElapsedRealtime()) + " ms after the process started.");
+        // Only what's needed to post the notification and arm shake happens here; the rest is staged
+        // (see onStartCommand). The config store loads itself in the background.
+        configStore = ConfigStore.getInstance(this);
+        serviceStatus = ServiceStatus.getInstance();
         vibrator = (Vibrator) getSystemService(VIBRATOR_SERVICE);
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
         sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
         if (sensorManager != null) {
             accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
         }
-        voiceManager = new VoiceActivationManager(this, this);
+        governor = new ProtectionGovernor(this, this::applyProtectionMode);
+        setupTriggers();
+        deterrent = new Deterrent(this);
+        configStore.addListener(configListener);
+        setupWatchdog();
+        // Status out to the UI process, contact/settings changes in from it
+        DetectorChannel.getInstance().start(this);
+    }
+
+    // Every trigger fires into the bus; alerts come out on the main thread
+    private void setupTriggers() {
+        triggerBus = new TriggerBus(AppExecutors.mainThread(), SystemClock::elapsedRealtime, new TriggerBus.Listener() {
+            @Override
+            public boolean onAlert(TriggerBus.Alert alert) {
+                return triggerAlert(alert);
+            }
+
+            @Override
+            public void onSuppressed(String source, String reason) {
+                // Debounced events are the normal tail of a gesture, not worth a line each
+                if ("rate limited".equals(reason)) Log.w(TAG, "Trigger from [" + source + "] rate limited.");
+            }
+        });
+        shakeTrigger = triggerBus.register("Shake", SHAKE_LIMITS);
+        voiceTrigger = triggerBus.register("Voice", VOICE_LIMITS);
+        notificationTrigger = triggerBus.register("Notification", NOTIFICATION_LIMITS);
+        buttonTrigger = new ButtonTrigger(this, triggerBus);
+    }
+
+    // Restarts a trigger source that has gone quiet while it should be listening
+    private void setupWatchdog() {
+        watchdog = new InputWatchdog(WATCHDOG_INTERVAL_MS, new InputWatchdog.Listener() {
+            @Override
+            public void onStalled(String source, long silentMs) {
+                Log.w(TAG, source + " silent for " + silentMs + " ms, restarting it (stalls so far: " + watchdog.getStalls() + ")");
+            }
+
+            @Override
+            public void onRecovered(String source) {
+                Log.i(TAG, source + " is back after the restart (recoveries so far: " + watchdog.getRecoveries() + ")");
+            }
+        });
+        sensorHeartbeat = watchdog.add("Accelerometer", SENSOR_STALL_MS, this::registerAccelerometer);
+        voiceHeartbeat = watchdog.add("Voice recognizer", VOICE_STALL_MS, () -> {
+            if (voiceManager != null) voiceManager.restartRecognizer();
+        });
     }
 
     @Override
@@ -74,126 +214,353 @@ public class ServiceMine extends Service implements SensorEventListener, VoiceAc
             stopSelf();
             return START_NOT_STICKY;
         }
-        startForegroundServiceNotification();
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_NORMAL);
-            Log.d(TAG, "Accelerometer listener registered.");
+        if (intent != null && ACTION_TRIGGER.equals(intent.getAction())) {
+            // "Send SOS now" on the notification; the service is already running
+            notificationTrigger.fire();
+            return START_STICKY;
+        }
+        // Staged startup: the notification first (the foreground deadline is running), then shake, which
+        // is the cheapest trigger, straight away. Contacts and housekeeping go to the database thread;
+        // location and voice follow as separate main-thread messages, so none of them delays shake.
+        if (intent != null && intent.hasExtra(EXTRA_START_REASON)) {
+            startReason = intent.getStringExtra(EXTRA_START_REASON);
+            startRequestedAt = intent.getLongExtra(EXTRA_REQUESTED_AT, 0);
+        }
+        if (!startForegroundServiceNotification()) {
+            stopSelf();
+            return START_NOT_STICKY;
         }
-        // Start listening for the "helpMe" command
-        voiceManager.startListening();
+        markStartup("notification");
+        serviceStatus.setRunning(true);
+        // Registers the accelerometer (and voice/location once they're initialized), as much as the battery allows
+        governor.start();
+        buttonTrigger.start();
+        AppExecutors.database().execute(this::initDatabase);
+        mainHandler.removeCallbacks(initLocation);
+        mainHandler.post(initLocation);
+        mainHandler.removeCallbacks(initVoice);
+        mainHandler.post(initVoice);
+        mainHandler.removeCallbacks(watchdogTick);
+        mainHandler.postDelayed(watchdogTick, WATCHDOG_INTERVAL_MS);
+        mainHandler.removeCallbacks(memoryProbe);
+        mainHandler.postDelayed(memoryProbe, MEMORY_SAMPLE_DELAY_MS);
         return START_STICKY;
     }
 
     @Override
     public void onDestroy() {
         super.onDestroy();
-        updateServiceStatus(false);
-        Log.d(TAG, "Service DESTROYED.");
+        serviceStatus.setRunning(false);
+        Log.d(TAG, "Service DESTROYED. " + shakeTrigger.stats() + "; " + voiceTrigger.stats() + "; " + notificationTrigger.stats());
+        mainHandler.removeCallbacks(watchdogTick);
+        mainHandler.removeCallbacks(memoryProbe);
+        mainHandler.removeCallbacks(initLocation);
+        mainHandler.removeCallbacks(initVoice);
+        DetectorChannel.getInstance().stop();
+        governor.stop();
+        buttonTrigger.stop();
+        configStore.removeListener(configListener);
+        deterrent.release();
+        voiceWanted = false;
+        mainHandler.removeCallbacks(voiceDutyCycle);
+        if (fusedLocationClient != null) fusedLocationClient.removeLocationUpdates(warmLocationCallback);
+        sensorHeartbeat.disarm();
+        voiceHeartbeat.disarm();
         if (sensorManager != null) sensorManager.unregisterListener(this);
         if (voiceManager != null) voiceManager.destroy();
         stopAudioRecording();
         stopForeground(true);
     }
 
+    // --- STAGED STARTUP ---
+
+    // Database thread: opens the database and loads the contacts ready for the first alert
+    private void initDatabase() {
+        contactRepository = ContactRepository.getInstance(this);
+        AlertHistoryCompactionJob.scheduleIfNeeded(this);
+        // Decoded now so the siren can start the moment an alert fires
+        if (configStore.get().deterrentEnabled) deterrent.prepare();
+        contactRepository.whenLoaded(contacts -> markStartup("contacts"));
+    }
+
+    private void initLocation() {
+        locationClient();
+        if (protectionMode != null) updateWarmLocation();
+        markStartup("location");
+    }
+
+    // SpeechRecognizer has to be created on the main thread, so this can't go to a background executor;
+    // it just runs after shake is armed
+    private void initVoice() {
+        if (voiceManager != null) return;
+        voiceManager = new VoiceActivationManager(this, this);
+        voiceManager.setHeartbeat(voiceHeartbeat);
+        if (protectionMode != null) updateVoiceListening(ProtectionPolicy.listenForVoice(protectionMode, screenOn), true);
+    }
+
+    // True the first time a stage is marked
+    private boolean markStartup(String stage) {
+        long elapsed = startupMetrics.mark(stage, SystemClock.elapsedRealtime());
+        if (elapsed < 0) return false;
+        Log.i(TAG, "Startup: " + stage + " ready after " + elapsed + " ms (" + startupMetrics.summary() + ")");
+        return true;
+    }
+
+    // The unprotected window after a reboot, an update or entering a zone; elapsedRealtime counts from boot
+    private void logArmedAfterRestore() {
+        long now = SystemClock.elapsedRealtime();
+        Log.i(TAG, "Protection started for " + startReason + ": armed " + (now - startRequestedAt)
+                + " ms after the broadcast, " + now + " ms after boot.");
+    }
+
+    // Created on first use: normally by initLocation, or by an alert that beats it
+    private FusedLocationProviderClient locationClient() {
+        if (fusedLocationClient == null) {
+            fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
+        }
+        return fusedLocationClient;
+    }
+
+    // Normally set by initDatabase; an alert right after start may get here first
+    private ContactRepository contacts() {
+        ContactRepository repository = contactRepository;
+        return repository != null ? repository : ContactRepository.getInstance(this);
+    }
+
+    // Resident memory of this process. ServiceMine runs alone in ":detector", so this is the always-on cost
+    // (compare with "dumpsys meminfo" of the whole app from before the split). Disk thread: it reads smaps.
+    private void sampleMemory() {
+        Debug.MemoryInfo info = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(info);
+        int pssKb = info.getTotalPss();
+        Log.i(TAG, "Detector PSS " + pssKb + " kB (java " + info.getMemoryStat("summary.java-heap")
+                + " kB, native " + info.getMemoryStat("summary.native-heap")
+                + " kB, code " + info.getMemoryStat("summary.code") + " kB)");
+        serviceStatus.setMemory(pssKb);
+    }
+
+    // --- PROTECTION MODE (see ProtectionPolicy) ---
+
+    private void applyProtectionMode(ProtectionPolicy.Mode mode, boolean screenOn) {
+        boolean modeChanged = mode != protectionMode;
+        protectionMode = mode;
+        this.screenOn = screenOn;
+        if (modeChanged) {
+            registerAccelerometer();
+            if (fusedLocationClient != null) updateWarmLocation();
+            updateNotification();
+        }
+        updateVoiceListening(ProtectionPolicy.listenForVoice(mode, screenOn), modeChanged);
+    }
+
+    private void registerAccelerometer() {
+        if (accelerometer == null) return;
+        sensorManager.unregisterListener(this);
+        boolean registered = sensorManager.registerListener(this, accelerometer, protectionMode.sensorPeriodUs, protectionMode.sensorBatchUs);
+        serviceStatus.setSensorArmed(registered);
+        if (registered) {
+            sensorHeartbeat.arm(SystemClock.elapsedRealtime());
+            if (markStartup("shake") && startReason != null) logArmedAfterRestore();
+        }
+        Log.d(TAG, "Accelerometer registered at " + protectionMode.sensorPeriodUs + " us: " + registered);
+    }
+
+    private void updateVoiceListening(boolean wanted, boolean modeChanged) {
+        if (voiceManager == null) return; // initVoice picks up the current mode when it runs
+        if (wanted == voiceWanted && !modeChanged) return;
+        voiceWanted = wanted;
+        mainHandler.removeCallbacks(voiceDutyCycle);
+        if (!wanted) {
+            voiceManager.stopListening();
+            return;
+        }
+        if (!voiceManager.isListening()) voiceManager.startListening();
+        if (protectionMode.voiceListenMs > 0) mainHandler.postDelayed(voiceDutyCycle, protectionMode.voiceListenMs);
+    }
+
+    private void updateWarmLocation() {
+        fusedLocationClient.removeLocationUpdates(warmLocationCallback);
+        if (protectionMode.warmLocationMs < 0) return;
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) return;
+        LocationRequest request = protectionMode.warmLocationMs == 0
+                // Free: only picks up fixes other apps ask for
+                ? new LocationRequest.Builder(Priority.PRIORITY_PASSIVE, 60000).build()
+                : new LocationRequest.Builder(Priority.PRIORITY_BALANCED_POWER_ACCURACY, protectionMode.warmLocationMs).build();
+        fusedLocationClient.requestLocationUpdates(request, warmLocationCallback, Looper.getMainLooper());
+    }
+
     // --- DETECTION METHODS ---
 
     @Override
     public void onSensorChanged(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            sensorHeartbeat.beat(SystemClock.elapsedRealtime());
             double gForce = Math.sqrt(Math.pow(event.values[0], 2) + Math.pow(event.values[1], 2) + Math.pow(event.values[2], 2)) / SensorManager.GRAVITY_EARTH;
             if (gForce > SHAKE_THRESHOLD_G_FORCE) {
-                // When a shake is detected, call the master trigger method.
-                triggerAlert("Shake");
+                // Every sample over the threshold fires; the bus turns the burst into one alert
+                shakeTrigger.fire();
             }
         }
     }
 
     @Override
     public void onVoiceCommandDetected() {
-        // When the voice command is heard, call the same master trigger method.
-        triggerAlert("Voice");
+        voiceTrigger.fire();
+    }
+
+    @Override
+    public void onVoiceArmedChanged(boolean armed) {
+        serviceStatus.setVoiceArmed(armed);
+        // Paused while recording has the microphone; that silence is expected
+        if (armed) {
+            voiceHeartbeat.arm(SystemClock.elapsedRealtime());
+            markStartup("voice");
+        } else {
+            voiceHeartbeat.disarm();
+        }
     }
 
     // --- MASTER ALERT TRIGGER ---
 
-    private synchronized void triggerAlert(String source) {
-        long currentTime = System.currentTimeMillis();
+    // Called by the trigger bus (main thread), which has already debounced and rate limited each source
+    // False if the alert was ignored because another one is running
+    private synchronized boolean triggerAlert(TriggerBus.Alert alert) {
+        String source = alert.describe();
 
         // **CRITICAL CHECK**: Only proceed if an alert is NOT already in progress
-        // AND the 20-second cooldown period has passed.
-        if (isAlertInProgress || (currentTime - lastAlertTime) < ALERT_COOLDOWN_MS) {
-            Log.w(TAG, "Alert trigger from [" + source + "] ignored: Cooldown active or another alert is already in progress.");
-            return;
+        if (isAlertInProgress) {
+            Log.w(TAG, "Alert trigger from [" + source + "] ignored: another alert is already in progress.");
+            incidentLog.logEvent("Also triggered by " + source + " during the alert");
+            return false;
         }
 
         // --- START THE ALERT PROCESS ---
         Log.d(TAG, "ALERT TRIGGERED by [" + source + "]. Locking process.");
 
         // 1. Lock the process immediately
-        isAlertInProgress = true;
-        lastAlertTime = currentTime;
+        setAlertInProgress(true);
+        incidentLog = new IncidentLog(this, IncidentLog.newSessionId());
+        // Trigger latency: from the source firing (e.g. the fifth button press) to the alert starting here
+        long latencyMs = SystemClock.elapsedRealtime() - alert.firstAt;
+        Log.i(TAG, "Trigger latency " + latencyMs + " ms.");
+        incidentLog.logEvent("Alert triggered by " + source + ", " + latencyMs + " ms after the trigger fired");
+        alertHistory = AlertHistory.getInstance(this).begin(incidentLog.getSessionId(), source);
+        // A shake only wakes the CPU for a moment; each stage below keeps it up until it's done
+        alertExecutor = new AlertExecutor(this, incidentLog);
 
         // 2. Vibrate for feedback
         if (vibrator != null && vibrator.hasVibrator()) {
             vibrator.vibrate(VibrationEffect.createOneShot(500, VibrationEffect.DEFAULT_AMPLITUDE));
         }
+        if (configStore.get().deterrentEnabled) {
+            deterrent.start(); // Only posts to the deterrent thread; stops when the recording ends, or after Deterrent.MAX_MS
+            incidentLog.logEvent("Siren and strobe started");
+        }
 
         // 3. Send SMS with Location (in the background)
         updateLocationAndSendSms();
 
         // 4. Start Audio Recording (which will unlock the process when finished)
         startAudioRecording();
+        return true;
     }
 
 
     // --- ACTION METHODS ---
 
     private void updateLocationAndSendSms() {
+        final SmsDispatcher dispatcher = new SmsDispatcher(this, incidentLog, SystemClock.elapsedRealtime());
+        dispatcher.setHistory(alertHistory);
+        dispatcher.setExecutor(alertExecutor);
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
             Log.e(TAG, "SMS not sent. Location permission denied.");
-            sendSmsMessages("Location permission denied.");
+            incidentLog.logEvent("Location permission denied, sending without location");
+            sendSmsMessages(dispatcher, "Location permission denied.", false);
             return;
         }
-        fusedLocationClient.getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, null)
+        // Covers the LOCATION_WAIT_MS timer and a late fix; ends when the lookup finishes either way
+        final AlertExecutor.Stage locationStage = alertExecutor.begin("location", LOCATION_STAGE_MAX_MS);
+        // The first SMS waits at most LOCATION_WAIT_MS for a fresh fix. If the fix is slower, the alert goes out
+        // with a recent last-known location (or none) and the fix follows in a second SMS when it arrives.
+        final AtomicBoolean alertSent = new AtomicBoolean(false);
+        final Location[] lastKnown = new Location[1];
+        locationClient().getLastLocation().addOnSuccessListener(location -> lastKnown[0] = location);
+        final Handler handler = new Handler(Looper.getMainLooper());
+        final Runnable sendWithoutFix = () -> {
+            if (!alertSent.compareAndSet(false, true)) return;
+            Location last = lastKnown[0];
+            boolean recent = last != null
+                    && SystemClock.elapsedRealtimeNanos() - last.getElapsedRealtimeNanos() < LAST_LOCATION_MAX_AGE_MS * 1000000L;
+            incidentLog.logEvent("No fix after " + LOCATION_WAIT_MS + " ms, sending " + (recent ? "last known location" : "without location"));
+            if (recent) alertHistory.location(last);
+            sendSmsMessages(dispatcher, recent ? mapsLink(last) + " (last known)" : "Location still being determined, will follow.", false);
+        };
+        handler.postDelayed(sendWithoutFix, LOCATION_WAIT_MS);
+
+        locationClient().getCurrentLocation(Priority.PRIORITY_HIGH_ACCURACY, null)
                 .addOnSuccessListener(location -> {
-                    String myLocation = (location != null) ? "https://maps.google.com/maps?q=" + location.getLatitude() + "," + location.getLongitude() : "Could not get current location.";
-                    sendSmsMessages(myLocation);
+                    handler.removeCallbacks(sendWithoutFix);
+                    locationStage.end();
+                    if (location != null) {
+                        incidentLog.logLocation(location);
+                        alertHistory.location(location);
+                    }
+                    String myLocation = (location != null) ? mapsLink(location) : "Could not get current location.";
+                    if (alertSent.compareAndSet(false, true)) {
+                        sendSmsMessages(dispatcher, myLocation, false);
+                    } else if (location != null) {
+                        incidentLog.logEvent("Fix arrived after the alert went out, sending location follow-up");
+                        sendSmsMessages(dispatcher, myLocation, true);
+                    }
                 })
                 .addOnFailureListener(e -> {
+                    handler.removeCallbacks(sendWithoutFix);
+                    locationStage.end();
                     Log.e(TAG, "Failed to get location.", e);
-                    sendSmsMessages("Failed to get location.");
+                    incidentLog.logEvent("Location lookup failed: " + e.getMessage());
+                    if (alertSent.compareAndSet(false, true)) {
+                        sendSmsMessages(dispatcher, "Failed to get location.", false);
+                    }
                 });
     }
 
-    private void sendSmsMessages(String location) {
-        ArrayList<ContactModel> list = db.fetchData();
+    private static String mapsLink(Location location) {
+        return "https://maps.google.com/maps?q=" + location.getLatitude() + "," + location.getLongitude();
+    }
+
+    private void sendSmsMessages(SmsDispatcher dispatcher, String location, boolean followUp) {
+        // Normally an in-memory read; only waits on the database if the process was just started
+        ContactRepository repository = contacts();
+        if (repository.isLoaded()) {
+            sendSmsMessages(dispatcher, repository.getContacts(), location, followUp);
+        } else {
+            repository.whenLoaded(list -> sendSmsMessages(dispatcher, list, location, followUp));
+        }
+    }
+
+    private void sendSmsMessages(SmsDispatcher dispatcher, List<ContactModel> list, String location, boolean followUp) {
         if (list.isEmpty()) {
             Log.w(TAG, "No contacts found to send SMS.");
             return; // No contacts registered, no need to proceed.
         }
-        SharedPreferences sp = getSharedPreferences("message", MODE_PRIVATE);
-        String customMsg = sp.getString("msg", "I am in DANGER, I need help. Please urgently reach me out.");
-        String finalMessage = String.format("Hey, %%s! %s\n\nMy location:\n%s", customMsg, location);
-        SmsManager smsManager = SmsManager.getDefault();
-        for (ContactModel contact : list) {
-            try {
-                smsManager.sendTextMessage(contact.getNumber(), null, String.format(finalMessage, contact.getName()), null, null);
-                Log.d(TAG, "SMS sent successfully to " + contact.getName());
-            } catch (Exception e) {
-                Log.e(TAG, "Failed to send SMS to " + contact.getNumber(), e);
-            }
-        }
+        String customMsg = configStore.get().getAlertMessage();
+        String finalMessage = followUp
+                ? "Hey, %s! My updated location:\n" + location
+                : String.format("Hey, %%s! %s\n\nMy location:\n%s", customMsg, location);
+        // Tier 1 (the contacts marked "alert first") goes out first, the rest follow in batches
+        dispatcher.dispatch(list, contact -> String.format(finalMessage, contact.getName()));
     }
 
     private void startAudioRecording() {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
             Log.e(TAG, "Audio permission denied. Unlocking process.");
-            isAlertInProgress = false; // Unlock if we can't record
+            setAlertInProgress(false); // Unlock if we can't record
             return;
         }
 
-        String timeStamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
-        String fileName = "SOS_Recording_" + timeStamp + ".3gp";
+        // Recording names carry the session id so the export can find them again
+        boolean encrypt = configStore.get().encryptRecordings;
+        String fileName = "SOS_Recording_" + incidentLog.getSessionId() + (encrypt ? ".amr" + RecordingCrypto.ENCRYPTED_SUFFIX : ".3gp");
         File recordingsDir = new File(getExternalFilesDir(null), "Recordings");
         if (!recordingsDir.exists()) {
             recordingsDir.mkdirs();
@@ -201,31 +568,61 @@ public class ServiceMine extends Service implements SensorEventListener, VoiceAc
         File audioFile = new File(recordingsDir, fileName);
         String audioFilePath = audioFile.getAbsolutePath();
 
+        // Take the microphone away from the voice listener before opening it; it resumes when we release
+        recordingMicLease = MicrophoneArbiter.getInstance().acquire("EvidenceRecording",
+                MicrophoneArbiter.PRIORITY_EVIDENCE_RECORDING, new MicrophoneArbiter.Client() {
+                    @Override public void onMicrophonePreempted() { Log.w(TAG, "Recording lost the microphone."); }
+                    @Override public void onMicrophoneAvailable() { }
+                });
+
         mediaRecorder = new MediaRecorder();
         try {
             mediaRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-            mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
-            mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-            mediaRecorder.setOutputFile(audioFilePath);
+            if (encrypt) {
+                // 3GP needs a seekable file to write its index at the end; raw AMR streams straight through the pipe
+                encryptedSink = new EncryptedRecordingSink(audioFile, RecordingCrypto.getOrCreateKey());
+                mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.AMR_NB);
+                mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
+                mediaRecorder.setOutputFile(encryptedSink.getRecorderFd());
+            } else {
+                mediaRecorder.setOutputFormat(MediaRecorder.OutputFormat.THREE_GPP);
+                mediaRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
+                mediaRecorder.setOutputFile(audioFilePath);
+            }
             mediaRecorder.prepare();
             mediaRecorder.start();
             Log.d(TAG, "Audio recording started. Saving to: " + audioFilePath);
+            incidentLog.logEvent("Recording started: " + fileName);
+            alertHistory.recording(fileName);
+            alertHistory.stage(AlertHistory.STAGE_RECORDING_STARTED);
+            // Handler delays stop while the CPU sleeps; without this the recording could run on for minutes
+            recordingStage = alertExecutor.begin("recording", RECORDING_DURATION_MS + RECORDING_STAGE_SLACK_MS);
 
             // Schedule the stop and the final unlock after 40 seconds
             new Handler(Looper.getMainLooper()).postDelayed(() -> {
                 Log.d(TAG, "40 seconds passed. Stopping audio and unlocking process.");
                 stopAudioRecording();
-                isAlertInProgress = false; // **UNLOCK** after recording is done
+                incidentLog.logEvent("Recording stopped, alert session finished");
+                alertHistory.stage(AlertHistory.STAGE_RECORDING_ENDED);
+                incidentLog.logEvent(alertExecutor.summary());
+                mainHandler.post(memoryProbe); // An alert is the peak: recorder, location, SMS all loaded
+                deterrent.stop(); // The session ran its course; the recording failure paths leave it to MAX_MS
+                setAlertInProgress(false); // **UNLOCK** after recording is done
             }, RECORDING_DURATION_MS);
 
         } catch (IOException | IllegalStateException e) {
             Log.e(TAG, "MediaRecorder setup failed. Unlocking process.", e);
+            incidentLog.logEvent("Recording failed to start: " + e.getMessage());
             releaseMediaRecorder();
-            isAlertInProgress = false; // **UNLOCK** on failure
+            setAlertInProgress(false); // **UNLOCK** on failure
         }
     }
 
     private void stopAudioRecording() {
+        if (recordingStage != null) {
+            recordingStage.end();
+            recordingStage = null;
+        }
         if (mediaRecorder != null) {
             try { mediaRecorder.stop(); Log.d(TAG, "Audio recording stopped."); }
             catch (RuntimeException e) { Log.e(TAG, "MediaRecorder stop failed.", e); }
@@ -237,27 +634,61 @@ public class ServiceMine extends Service implements SensorEventListener, VoiceAc
         if (mediaRecorder != null) {
             mediaRecorder.reset(); mediaRecorder.release(); mediaRecorder = null;
         }
+        if (encryptedSink != null) {
+            encryptedSink.finish(); encryptedSink = null;
+        }
+        if (recordingMicLease != null) {
+            recordingMicLease.release(); recordingMicLease = null;
+            MicrophoneArbiter arbiter = MicrophoneArbiter.getInstance();
+            Log.d(TAG, "Microphone conflicts so far: " + arbiter.getConflictCount() + " (" + arbiter.getPreemptionCount() + " pre-emptions)");
+        }
+    }
+
+    private void setAlertInProgress(boolean inProgress) {
+        isAlertInProgress = inProgress;
+        serviceStatus.setAlertInProgress(inProgress);
+        // The deterrent isn't stopped here: a recording that fails to start also ends the session, and
+        // that's exactly when the siren is still needed. The recording timer stops it on a normal end.
+    }
+
+    // False if the system won't let us run in the foreground right now, e.g. a location service started
+    // from the background without background location (Android 14+), or a start the system no longer
+    // allows (ForegroundServiceStartNotAllowedException is an IllegalStateException). The user is told,
+    // the same way as when BootReceiver can't restore protection.
+    private boolean startForegroundServiceNotification() {
+        try {
+            startForeground(NOTIFICATION_ID, buildNotification());
+            return true;
+        } catch (SecurityException | IllegalStateException e) {
+            Log.e(TAG, "Could not go to the foreground" + (startReason != null ? " (" + startReason + ")" : "") + ".", e);
+            BootReceiver.notifyNeedsAttention(this);
+            return false;
+        }
     }
 
-    private void updateServiceStatus(boolean isRunning) {
-        SharedPreferences prefs = getSharedPreferences("SOS_SERVICE_STATUS", MODE_PRIVATE);
-        SharedPreferences.Editor editor = prefs.edit();
-        editor.putBoolean("is_running", isRunning);
-        editor.apply();
+    // Shows the protection mode, so the user knows when the battery has cut detection back
+    private void updateNotification() {
+        NotificationManager manager = getSystemService(NotificationManager.class);
+        if (manager != null) manager.notify(NOTIFICATION_ID, buildNotification());
     }
 
-    private void startForegroundServiceNotification() {
+    private Notification buildNotification() {
         Intent notificationIntent = new Intent(this, MainActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, notificationIntent, PendingIntent.FLAG_IMMUTABLE);
-        Notification notification = new NotificationCompat.Builder(this, "MYID")
+        // Goes through the trigger bus like any other source
+        PendingIntent triggerIntent = PendingIntent.getService(this, 1,
+                new Intent(this, ServiceMine.class).setAction(ACTION_TRIGGER), PendingIntent.FLAG_IMMUTABLE);
+        return new NotificationCompat.Builder(this, "MYID")
                 .setContentTitle("SOS Service is Active")
-                .setContentText("Listening for shake & voice commands.")
+                .setContentText(protectionMode != null ? protectionMode.describe() : "Listening for shake & voice commands.")
                 .setSmallIcon(R.drawable.siren)
                 .setContentIntent(pendingIntent)
+                .addAction(R.drawable.siren, "Send SOS now", triggerIntent)
+                .setOnlyAlertOnce(true)
                 .build();
-        startForeground(115, notification);
     }
 
-    @Nullable @Override public IBinder onBind(Intent intent) { return null; }
+    // Only DetectorLink binds, to receive status; starting and stopping still go through onStartCommand
+    @Nullable @Override public IBinder onBind(Intent intent) { return DetectorChannel.getInstance().getBinder(); }
     @Override public void onAccuracyChanged(Sensor sensor, int accuracy) { }
 }
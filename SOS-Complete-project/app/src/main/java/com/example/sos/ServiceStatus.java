@@ -0,0 +1,137 @@
+// ServiceStatus.java
+package com.example.sos;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// What ServiceMine is actually doing right now, pushed to whoever is watching (MainActivity).
+// There is one per process: ServiceMine writes the one in the ":detector" process, and DetectorLink
+// mirrors it into the UI process over DetectorChannel.
+// Lives in memory only: if the process dies the status dies with it, so a screen can never show
+// "active" for a service that isn't there any more (the old persisted flag could).
+// Observers are called on the main thread, and only when something really changed.
+public final class ServiceStatus {
+
+    public static final class State {
+        public final boolean running;         // Foreground service started
+        public final boolean sensorArmed;     // Shake detection registered
+        public final boolean voiceArmed;      // Recognizer holds the microphone and is listening
+        public final boolean alertInProgress;
+        public final int stalls;              // Trigger sources the watchdog found silent and restarted
+        public final int recoveries;          // ...and that came back after the restart
+        public final int pssKb;               // Resident memory (PSS) of the detector process, 0 until measured
+
+        State(boolean running, boolean sensorArmed, boolean voiceArmed, boolean alertInProgress, int stalls, int recoveries, int pssKb) {
+            this.running = running;
+            this.sensorArmed = sensorArmed;
+            this.voiceArmed = voiceArmed;
+            this.alertInProgress = alertInProgress;
+            this.stalls = stalls;
+            this.recoveries = recoveries;
+            this.pssKb = pssKb;
+        }
+
+        // At least one trigger can fire
+        public boolean isArmed() {
+            return running && (sensorArmed || voiceArmed);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof State)) return false;
+            State other = (State) o;
+            return running == other.running && sensorArmed == other.sensorArmed
+                    && voiceArmed == other.voiceArmed && alertInProgress == other.alertInProgress
+                    && stalls == other.stalls && recoveries == other.recoveries && pssKb == other.pssKb;
+        }
+
+        @Override
+        public int hashCode() {
+            int flags = (running ? 1 : 0) | (sensorArmed ? 2 : 0) | (voiceArmed ? 4 : 0) | (alertInProgress ? 8 : 0);
+            return 31 * (31 * (31 * flags + stalls) + recoveries) + pssKb;
+        }
+
+        @Override
+        public String toString() {
+            return "running=" + running + ", sensor=" + sensorArmed + ", voice=" + voiceArmed + ", alert=" + alertInProgress
+                    + ", stalls=" + stalls + ", recoveries=" + recoveries + ", pss=" + pssKb + "kB";
+        }
+    }
+
+    public interface Observer {
+        void onStatusChanged(State state);
+    }
+
+    private static final State STOPPED = new State(false, false, false, false, 0, 0, 0);
+    private static final ServiceStatus INSTANCE = new ServiceStatus();
+
+    private final CopyOnWriteArrayList<Observer> observers = new CopyOnWriteArrayList<>();
+    private volatile State state = STOPPED;
+
+    public static ServiceStatus getInstance() {
+        return INSTANCE;
+    }
+
+    private ServiceStatus() { }
+
+    public State get() {
+        return state;
+    }
+
+    // The observer gets the current state straight away, then every change
+    public void addObserver(Observer observer) {
+        observers.addIfAbsent(observer);
+        AppExecutors.mainThread().execute(() -> {
+            if (observers.contains(observer)) observer.onStatusChanged(state);
+        });
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    // --- Written by ServiceMine ---
+
+    synchronized void setRunning(boolean running) {
+        // Stopping disarms everything at once
+        publish(running ? new State(true, state.sensorArmed, state.voiceArmed, state.alertInProgress, state.stalls, state.recoveries, state.pssKb) : STOPPED);
+    }
+
+    synchronized void setSensorArmed(boolean armed) {
+        publish(new State(state.running, armed, state.voiceArmed, state.alertInProgress, state.stalls, state.recoveries, state.pssKb));
+    }
+
+    synchronized void setVoiceArmed(boolean armed) {
+        publish(new State(state.running, state.sensorArmed, armed, state.alertInProgress, state.stalls, state.recoveries, state.pssKb));
+    }
+
+    synchronized void setAlertInProgress(boolean inProgress) {
+        publish(new State(state.running, state.sensorArmed, state.voiceArmed, inProgress, state.stalls, state.recoveries, state.pssKb));
+    }
+
+    synchronized void setWatchdogCounts(int stalls, int recoveries) {
+        publish(new State(state.running, state.sensorArmed, state.voiceArmed, state.alertInProgress, stalls, recoveries, state.pssKb));
+    }
+
+    synchronized void setMemory(int pssKb) {
+        if (!state.running) return; // A late sample after stopping
+        publish(new State(state.running, state.sensorArmed, state.voiceArmed, state.alertInProgress, state.stalls, state.recoveries, pssKb));
+    }
+
+    // --- Written by DetectorLink, in the UI process ---
+
+    // ServiceMine runs in its own process; this copies what it reported over DetectorChannel
+    synchronized void mirror(State remote) {
+        publish(remote);
+    }
+
+    private void publish(State next) {
+        if (next.equals(state)) return;
+        state = next;
+        AppExecutors.mainThread().execute(() -> {
+            // Several quick changes may land here together; everyone just gets the newest one
+            State latest = state;
+            for (Observer observer : observers) observer.onStatusChanged(latest);
+        });
+    }
+}
@@ -138,9 +138,11 @@
 
 package com.example.sos;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
@@ -151,25 +153,51 @@ import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextUtils;
+import android.text.TextWatcher;
+import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
+import android.widget.EditText;
 import android.widget.LinearLayout;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 
 import java.util.ArrayList;
+import java.util.List;
 
-public class ShowContact extends AppCompatActivity implements ContactRecyclerAdapter.OnContactDeleteListener {
+public class ShowContact extends AppCompatActivity implements ContactRecyclerAdapter.OnContactDeleteListener, ContactRepository.Observer {
     private static final int REQUEST_CALL_PHONE_PERMISSION = 1;
+    private static final int PAGE_SIZE = 30;
+    // Start loading the next page when the user is this close to the end of what is shown
+    private static final int PREFETCH_DISTANCE = 10;
+    // Wait for a short pause in typing before querying
+    private static final long SEARCH_DELAY_MS = 150;
+
     RecyclerView contactRecyclerView;
     ArrayList<ContactModel> modelArrayList;
     ContactRecyclerAdapter adapter;
-    DatabaseHelper helper;
+    ContactRepository contactRepository;
+    ContactDao contactDao;
     MaterialToolbar appBar;
     LinearLayout emptyStateLayout;
     MaterialButton addFirstContactButton;
+    EditText searchInput;
+    TextView noResultsText;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable reloadRunnable = this::reload;
+    private String currentQuery = "";
+    // Bumped on every reload so pages from an older query are dropped when they arrive
+    private int queryGeneration = 0;
+    private boolean loadingPage = false;
+    private boolean reachedEnd = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -178,13 +206,36 @@ public class ShowContact extends AppCompatActivity implements ContactRecyclerAda
         appBar = findViewById(R.id.toolbar);
         setSupportActionBar(appBar);
         contactRecyclerView = findViewById(R.id.contactRecylerView);
-        contactRecyclerView.setLayoutManager(new LinearLayoutManager(this));
-        helper = new DatabaseHelper(this);
-        modelArrayList = helper.fetchData();
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        contactRecyclerView.setLayoutManager(layoutManager);
+        contactRepository = ContactRepository.getInstance(this);
+        contactDao = ContactDao.getInstance(this);
+        modelArrayList = new ArrayList<>(); // Filled a page at a time from the database
 
         // Pass the delete listener to the adapter
         adapter = new ContactRecyclerAdapter(this, modelArrayList, this);
         contactRecyclerView.setAdapter(adapter);
+        contactRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView rv, int dx, int dy) {
+                if (dy > 0 && layoutManager.findLastVisibleItemPosition() >= modelArrayList.size() - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
+
+        noResultsText = findViewById(R.id.noResultsText);
+        searchInput = findViewById(R.id.searchInput);
+        searchInput.addTextChangedListener(new TextWatcher() {
+            @Override public void beforeTextChanged(CharSequence s, int start, int count, int after) { }
+            @Override public void onTextChanged(CharSequence s, int start, int before, int count) { }
+            @Override
+            public void afterTextChanged(Editable s) {
+                currentQuery = s.toString();
+                handler.removeCallbacks(reloadRunnable);
+                handler.postDelayed(reloadRunnable, SEARCH_DELAY_MS);
+            }
+        });
 
         emptyStateLayout = findViewById(R.id.emptyStateLayout);
         addFirstContactButton = findViewById(R.id.addFirstContactButton);
@@ -203,12 +254,15 @@ public class ShowContact extends AppCompatActivity implements ContactRecyclerAda
 
     // Method to update empty state visibility
     private void updateEmptyState() {
-        if (modelArrayList.isEmpty()) {
+        if (contactRepository.getCount() == 0) {
             emptyStateLayout.setVisibility(View.VISIBLE);
             contactRecyclerView.setVisibility(View.GONE);
+            noResultsText.setVisibility(View.GONE);
         } else {
             emptyStateLayout.setVisibility(View.GONE);
             contactRecyclerView.setVisibility(View.VISIBLE);
+            // Only once the query has actually come back empty
+            noResultsText.setVisibility(modelArrayList.isEmpty() && !loadingPage ? View.VISIBLE : View.GONE);
         }
     }
 
@@ -219,15 +273,103 @@ public class ShowContact extends AppCompatActivity implements ContactRecyclerAda
     }
 
     @Override
-    protected void onResume() {
-        super.onResume();
-        // Refresh data when returning from RegisterNumberActivity
+    protected void onStart() {
+        super.onStart();
+        // Delivers the current contacts right away and again on every insert, update or delete
+        contactRepository.addObserver(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        contactRepository.removeObserver(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        handler.removeCallbacks(reloadRunnable);
+    }
+
+    // The contact table changed (or we just became visible): re-run the current query, keeping as many
+    // rows as are already shown so the list doesn't jump back to the top
+    @Override
+    public void onContactsChanged(List<ContactModel> contacts) {
+        reload();
+    }
+
+    private void reload() {
+        final int generation = ++queryGeneration;
+        final int limit = Math.max(PAGE_SIZE, modelArrayList.size());
+        loadingPage = true;
+        contactDao.search(currentQuery, 0, limit, page -> {
+            if (generation != queryGeneration || isDestroyed()) return;
+            loadingPage = false;
+            reachedEnd = page.size() < limit;
+            showContacts(page);
+        });
+    }
+
+    private void loadNextPage() {
+        if (loadingPage || reachedEnd || modelArrayList.isEmpty()) return;
+        final int generation = queryGeneration;
+        long lastId = Long.parseLong(modelArrayList.get(modelArrayList.size() - 1).getId());
+        loadingPage = true;
+        contactDao.search(currentQuery, lastId, PAGE_SIZE, page -> {
+            if (generation != queryGeneration || isDestroyed()) return;
+            loadingPage = false;
+            reachedEnd = page.size() < PAGE_SIZE;
+            List<ContactModel> next = new ArrayList<>(modelArrayList);
+            next.addAll(page);
+            showContacts(next);
+        });
+    }
+
+    private void showContacts(List<ContactModel> contacts) {
+        final List<ContactModel> old = new ArrayList<>(modelArrayList);
+        DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override public int getOldListSize() { return old.size(); }
+            @Override public int getNewListSize() { return contacts.size(); }
+            @Override public boolean areItemsTheSame(int oldPos, int newPos) {
+                return old.get(oldPos).getId().equals(contacts.get(newPos).getId());
+            }
+            @Override public boolean areContentsTheSame(int oldPos, int newPos) {
+                ContactModel before = old.get(oldPos);
+                ContactModel after = contacts.get(newPos);
+                return TextUtils.equals(before.getName(), after.getName()) && TextUtils.equals(before.getNumber(), after.getNumber())
+                        && before.getPriority() == after.getPriority();
+            }
+        });
         modelArrayList.clear();
-        modelArrayList.addAll(helper.fetchData());
-        adapter.notifyDataSetChanged();
+        modelArrayList.addAll(contacts);
+        diff.dispatchUpdatesTo(adapter);
         updateEmptyState();
     }
 
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.show_contact_menu, menu);
+        return true;
+    }
+
+    private void showContactLimitDialog() {
+        int current = ContactPolicy.getMaxContacts(this);
+        String[] labels = new String[ContactPolicy.CHOICES.length];
+        int checked = -1;
+        for (int i = 0; i < labels.length; i++) {
+            labels[i] = ContactPolicy.describe(ContactPolicy.CHOICES[i]);
+            if (ContactPolicy.CHOICES[i] == current) checked = i;
+        }
+        new AlertDialog.Builder(this)
+                .setTitle("Contact limit")
+                .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                    ContactPolicy.setMaxContacts(this, ContactPolicy.CHOICES[which]);
+                    dialog.dismiss();
+                })
+                .setNegativeButton("Cancel", null)
+                .show();
+    }
+
     @Override
     public void onRequestPermissionsResult(int requestCode, String[] permissions, int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
@@ -289,6 +431,10 @@ public class ShowContact extends AppCompatActivity implements ContactRecyclerAda
             onBackPressed(); // or finish();
             return true;
         }
+        if (item.getItemId() == R.id.action_contact_limit) {
+            showContactLimitDialog();
+            return true;
+        }
         return super.onOptionsItemSelected(item);
     }
 }
\ No newline at end of file
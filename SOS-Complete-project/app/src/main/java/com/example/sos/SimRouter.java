@@ -0,0 +1,105 @@
+// SimRouter.java
+package com.example.sos;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.telephony.SmsManager;
+import android.telephony.SubscriptionInfo;
+import android.telephony.SubscriptionManager;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Which SIM(s) one alert's SMS go out on, in the order to try them. On a dual-SIM phone the default
+// SIM can have no signal or no credit, and then every message failed; SmsDispatcher now retries failed
+// messages on the next SIM here. The SIM that last got a message out is remembered (only this process
+// writes the file), so the next alert starts on it instead of on the one that just failed.
+// Listing SIMs needs READ_PHONE_STATE; without it we only know the default and behave as before.
+public class SimRouter {
+
+    private static final String TAG = "SimRouter";
+    private static final String PREFS_NAME = "sms_routing";
+    private static final String KEY_HEALTHY_SUBSCRIPTION = "healthy_subscription";
+    static final int DEFAULT_SUBSCRIPTION = SubscriptionManager.INVALID_SUBSCRIPTION_ID; // SmsManager.getDefault()
+
+    private final SharedPreferences prefs;
+    private final List<Integer> order; // Guarded by this
+    private final Map<Integer, String> labels = new HashMap<>();
+
+    public static SimRouter forAlert(Context context) {
+        return new SimRouter(context.getApplicationContext());
+    }
+
+    private SimRouter(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        List<Integer> active = new ArrayList<>();
+        try {
+            SubscriptionManager subscriptions = context.getSystemService(SubscriptionManager.class);
+            List<SubscriptionInfo> infos = subscriptions != null ? subscriptions.getActiveSubscriptionInfoList() : null;
+            if (infos != null) {
+                for (SubscriptionInfo info : infos) {
+                    active.add(info.getSubscriptionId());
+                    labels.put(info.getSubscriptionId(), "SIM " + (info.getSimSlotIndex() + 1) + " (" + info.getCarrierName() + ")");
+                }
+            }
+        } catch (SecurityException e) {
+            Log.w(TAG, "No READ_PHONE_STATE, using the default SIM only.");
+        }
+        order = order(active, SmsManager.getDefaultSmsSubscriptionId(), prefs.getInt(KEY_HEALTHY_SUBSCRIPTION, DEFAULT_SUBSCRIPTION));
+        Log.d(TAG, "SMS route: " + describeAll());
+    }
+
+    // Last healthy SIM first, then the default, then the rest; only SIMs that are active right now
+    static List<Integer> order(List<Integer> active, int defaultSub, int healthySub) {
+        List<Integer> order = new ArrayList<>();
+        if (active.contains(healthySub)) order.add(healthySub);
+        if (active.contains(defaultSub) && !order.contains(defaultSub)) order.add(defaultSub);
+        for (Integer sub : active) {
+            if (!order.contains(sub)) order.add(sub);
+        }
+        if (order.isEmpty()) order.add(DEFAULT_SUBSCRIPTION);
+        return order;
+    }
+
+    // The order as it is now. onSent() can reorder the live list from the receiver thread at any time,
+    // so one batch walks a copy: otherwise a late confirmation could move a SIM between two attempts and
+    // the retry would land on the SIM that just failed, or skip one.
+    public synchronized List<Integer> snapshot() {
+        return new ArrayList<>(order);
+    }
+
+    @SuppressWarnings("deprecation")
+    public static SmsManager managerFor(int subscriptionId) {
+        return subscriptionId == DEFAULT_SUBSCRIPTION
+                ? SmsManager.getDefault()
+                : SmsManager.getSmsManagerForSubscriptionId(subscriptionId);
+    }
+
+    // A message got out on this SIM: later batches of this alert and the next alert start on it
+    public void onSent(int subscriptionId) {
+        synchronized (this) {
+            if (order.indexOf(subscriptionId) <= 0) return; // Already first (or unknown)
+            order.remove(Integer.valueOf(subscriptionId));
+            order.add(0, subscriptionId);
+        }
+        Log.i(TAG, "Switching SMS to " + label(subscriptionId));
+        prefs.edit().putInt(KEY_HEALTHY_SUBSCRIPTION, subscriptionId).apply();
+    }
+
+    public String label(int subscriptionId) {
+        String label = labels.get(subscriptionId);
+        return label != null ? label : "default SIM";
+    }
+
+    private synchronized String describeAll() {
+        StringBuilder sb = new StringBuilder();
+        for (Integer sub : order) {
+            if (sb.length() > 0) sb.append(" > ");
+            sb.append(label(sub));
+        }
+        return sb.toString();
+    }
+}
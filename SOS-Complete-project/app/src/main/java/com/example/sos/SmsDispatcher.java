@@ -0,0 +1,301 @@
+// SmsDispatcher.java
+package com.example.sos;
+
+import android.app.Activity;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.SystemClock;
+import android.telephony.SmsManager;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Sends the alert SMS in priority tiers so the most important contacts hear first:
+//  1. every tier-1 contact is handed to the radio at once, then we wait (up to FIRST_TIER_DEADLINE_MS)
+//     for their "sent" confirmations, so lower tiers can't crowd the radio queue ahead of them;
+//  2. the remaining tiers go out in batches of BATCH_SIZE, each batch getting a shorter confirmation wait.
+// Latency of each tier (from the alert trigger) is logged and written to the incident log.
+// Messages that fail on one SIM are retried on the next active one (see SimRouter) while time allows.
+public class SmsDispatcher {
+
+    private static final String TAG = "SmsDispatcher";
+    private static final String ACTION_SMS_SENT = "com.example.sos.SMS_SENT";
+    private static final String EXTRA_REQUEST_CODE = "request_code";
+
+    private static final long FIRST_TIER_DEADLINE_MS = 8000;
+    private static final int BATCH_SIZE = 10;
+    private static final long BATCH_DEADLINE_MS = 3000;
+    // Hard upper bound for the whole dispatch, however many contacts there are
+    private static final long TOTAL_BUDGET_MS = 30000;
+
+    private static final AtomicInteger nextRequestCode = new AtomicInteger(1);
+
+    public interface MessageBuilder {
+        String build(ContactModel contact);
+    }
+
+    private final Context context;
+    private final IncidentLog incidentLog;
+    private final long alertStartMs; // SystemClock.elapsedRealtime() when the alert was triggered
+    private final Map<Integer, PendingSms> inFlight = new ConcurrentHashMap<>();
+    private AlertHistory.Recorder history; // Optional, gets the first-SMS time and the totals
+    private AlertExecutor executor; // Optional, keeps the CPU awake while we wait on the radio
+    private SimRouter router; // Per run(); SIMs in the order to try them
+
+    private final BroadcastReceiver sentReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            PendingSms sms = inFlight.remove(intent.getIntExtra(EXTRA_REQUEST_CODE, -1));
+            if (sms == null) return; // Arrived after we stopped waiting
+            boolean ok = getResultCode() == Activity.RESULT_OK;
+            if (ok) {
+                sms.metrics.onConfirmed(elapsed(), true);
+                router.onSent(sms.subscriptionId);
+            } else {
+                // Counted as failed only once no other SIM is left to try (see sendBatch)
+                sms.failed = true;
+                Log.w(TAG, "SMS to " + sms.contact.getName() + " failed on " + router.label(sms.subscriptionId) + " with result " + getResultCode());
+                incidentLog.logEvent("SMS to " + sms.contact.getNumber() + " failed on " + router.label(sms.subscriptionId) + " (result " + getResultCode() + ")");
+            }
+            sms.latch.countDown();
+        }
+    };
+
+    public SmsDispatcher(Context context, IncidentLog incidentLog, long alertStartMs) {
+        this.context = context.getApplicationContext();
+        this.incidentLog = incidentLog;
+        this.alertStartMs = alertStartMs;
+    }
+
+    public void setHistory(AlertHistory.Recorder history) {
+        this.history = history;
+    }
+
+    public void setExecutor(AlertExecutor executor) {
+        this.executor = executor;
+    }
+
+    // Returns straight away; sending happens on AppExecutors.sms()
+    public void dispatch(List<ContactModel> contacts, MessageBuilder messageBuilder) {
+        // Taken here rather than on the sms thread so there's no gap to sleep in. A follow-up can queue
+        // behind the first dispatch, hence room for two budgets.
+        final AlertExecutor.Stage stage = executor != null ? executor.begin("sms", 2 * TOTAL_BUDGET_MS) : null;
+        AppExecutors.sms().execute(() -> {
+            try {
+                run(contacts, messageBuilder);
+            } finally {
+                if (stage != null) stage.end();
+            }
+        });
+    }
+
+    private void run(List<ContactModel> contacts, MessageBuilder messageBuilder) {
+        // Lower priority value = earlier tier; insertion order is kept inside a tier
+        TreeMap<Integer, List<ContactModel>> tiers = new TreeMap<>();
+        for (ContactModel contact : contacts) {
+            List<ContactModel> tier = tiers.get(contact.getPriority());
+            if (tier == null) {
+                tier = new ArrayList<>();
+                tiers.put(contact.getPriority(), tier);
+            }
+            tier.add(contact);
+        }
+
+        router = SimRouter.forAlert(context);
+        ContextCompat.registerReceiver(context, sentReceiver, new IntentFilter(ACTION_SMS_SENT), ContextCompat.RECEIVER_NOT_EXPORTED);
+        try {
+            long deadline = SystemClock.elapsedRealtime() + TOTAL_BUDGET_MS;
+            int tierNumber = 0;
+            int reached = 0;
+            int confirmed = 0;
+            int failed = 0;
+            for (List<ContactModel> tier : tiers.values()) {
+                tierNumber++;
+                TierMetrics metrics = new TierMetrics(tierNumber, tier.size());
+                int batchSize = tierNumber == 1 ? tier.size() : BATCH_SIZE;
+                long batchDeadline = tierNumber == 1 ? FIRST_TIER_DEADLINE_MS : BATCH_DEADLINE_MS;
+                for (int start = 0; start < tier.size(); start += batchSize) {
+                    if (SystemClock.elapsedRealtime() > deadline) break;
+                    List<ContactModel> batch = tier.subList(start, Math.min(start + batchSize, tier.size()));
+                    sendBatch(batch, messageBuilder, metrics, batchDeadline, deadline);
+                    reached += batch.size();
+                }
+                report(metrics);
+                confirmed += metrics.confirmed();
+                failed += metrics.failed();
+                if (SystemClock.elapsedRealtime() > deadline) break;
+            }
+            if (reached < contacts.size()) {
+                Log.e(TAG, "SMS budget used up; " + (contacts.size() - reached) + " contacts not reached.");
+                incidentLog.logEvent("SMS budget of " + TOTAL_BUDGET_MS + " ms used up, " + (contacts.size() - reached) + " contacts not reached");
+            }
+            if (history != null) history.dispatchOutcome(confirmed, failed, contacts.size() - confirmed - failed);
+        } finally {
+            context.unregisterReceiver(sentReceiver);
+            inFlight.clear();
+        }
+    }
+
+    // Sends on the first SIM, then retries whatever failed on the next one, and so on. Each attempt waits
+    // up to waitMs for its confirmations; no attempt starts after the overall deadline.
+    private void sendBatch(List<ContactModel> batch, MessageBuilder messageBuilder, TierMetrics metrics,
+                           long waitMs, long deadline) {
+        List<ContactModel> pending = batch;
+        List<Integer> routes = router.snapshot(); // Fixed for this batch, see SimRouter.snapshot
+        for (int route = 0; ; route++) {
+            long wait = Math.min(waitMs, deadline - SystemClock.elapsedRealtime());
+            List<ContactModel> failed = sendAttempt(routes.get(route), pending, messageBuilder, metrics, wait);
+            if (failed.isEmpty()) return;
+            if (route + 1 >= routes.size() || SystemClock.elapsedRealtime() >= deadline) {
+                for (int i = 0; i < failed.size(); i++) metrics.onConfirmed(elapsed(), false);
+                return;
+            }
+            Log.w(TAG, failed.size() + " SMS failed, retrying on " + router.label(routes.get(route + 1)));
+            incidentLog.logEvent(failed.size() + " SMS failed, retrying on " + router.label(routes.get(route + 1)));
+            pending = failed;
+        }
+    }
+
+    // Returns the contacts whose message failed outright; unconfirmed ones aren't retried (they may
+    // still arrive, and a duplicate alert is worse than a late one)
+    private List<ContactModel> sendAttempt(int subscriptionId, List<ContactModel> contacts, MessageBuilder messageBuilder,
+                                           TierMetrics metrics, long waitMs) {
+        SmsManager smsManager = SimRouter.managerFor(subscriptionId);
+        CountDownLatch latch = new CountDownLatch(contacts.size());
+        List<PendingSms> sent = new ArrayList<>(contacts.size());
+        List<ContactModel> failed = new ArrayList<>();
+        for (ContactModel contact : contacts) {
+            int requestCode = nextRequestCode.getAndIncrement();
+            PendingSms sms = new PendingSms(contact, metrics, latch, subscriptionId);
+            inFlight.put(requestCode, sms);
+            try {
+                send(smsManager, contact.getNumber(), messageBuilder.build(contact), requestCode);
+                sent.add(sms);
+                metrics.onHandedToRadio(elapsed());
+                if (history != null) history.stage(AlertHistory.STAGE_FIRST_SMS);
+                incidentLog.logEvent("SMS handed to radio for " + contact.getName() + " (" + contact.getNumber() + "), tier " + metrics.tier + ", " + router.label(subscriptionId));
+            } catch (Exception e) {
+                inFlight.remove(requestCode);
+                failed.add(contact);
+                latch.countDown();
+                Log.e(TAG, "Failed to send SMS to " + contact.getNumber(), e);
+                incidentLog.logEvent("SMS to " + contact.getNumber() + " failed on " + router.label(subscriptionId) + ": " + e.getMessage());
+            }
+        }
+        try {
+            if (!latch.await(Math.max(0, waitMs), TimeUnit.MILLISECONDS)) {
+                Log.w(TAG, "Tier " + metrics.tier + " batch not fully confirmed after " + waitMs + " ms, moving on.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (PendingSms sms : sent) {
+            if (sms.failed) failed.add(sms.contact);
+        }
+        return failed;
+    }
+
+    // Long messages (custom text plus a maps link easily pass 160 characters) must go out as multipart.
+    // Only the last part carries the sent intent, so one confirmation means the whole message left.
+    private void send(SmsManager smsManager, String number, String message, int requestCode) {
+        Intent sent = new Intent(ACTION_SMS_SENT).setPackage(context.getPackageName()).putExtra(EXTRA_REQUEST_CODE, requestCode);
+        PendingIntent sentIntent = PendingIntent.getBroadcast(context, requestCode, sent,
+                PendingIntent.FLAG_ONE_SHOT | PendingIntent.FLAG_IMMUTABLE);
+        ArrayList<String> parts = smsManager.divideMessage(message);
+        if (parts.size() <= 1) {
+            smsManager.sendTextMessage(number, null, message, sentIntent, null);
+        } else {
+            ArrayList<PendingIntent> sentIntents = new ArrayList<>(parts.size());
+            for (int i = 0; i < parts.size(); i++) {
+                sentIntents.add(i == parts.size() - 1 ? sentIntent : null);
+            }
+            smsManager.sendMultipartTextMessage(number, null, parts, sentIntents, null);
+        }
+    }
+
+    private void report(TierMetrics metrics) {
+        String summary = metrics.summary();
+        Log.d(TAG, summary);
+        incidentLog.logEvent(summary);
+    }
+
+    private long elapsed() {
+        return SystemClock.elapsedRealtime() - alertStartMs;
+    }
+
+    private static final class PendingSms {
+        final ContactModel contact;
+        final TierMetrics metrics;
+        final CountDownLatch latch;
+        final int subscriptionId;
+        volatile boolean failed = false; // Set by the receiver
+
+        PendingSms(ContactModel contact, TierMetrics metrics, CountDownLatch latch, int subscriptionId) {
+            this.contact = contact;
+            this.metrics = metrics;
+            this.latch = latch;
+            this.subscriptionId = subscriptionId;
+        }
+    }
+
+    // Times are ms since the alert was triggered; -1 until the event happens.
+    // Written from the sms thread and the receiver (main thread), hence synchronized.
+    private static final class TierMetrics {
+        final int tier;
+        final int size;
+        private long firstHandedMs = -1;
+        private long lastHandedMs = -1;
+        private long firstConfirmedMs = -1;
+        private long lastConfirmedMs = -1;
+        private int confirmed = 0;
+        private int failed = 0;
+
+        TierMetrics(int tier, int size) {
+            this.tier = tier;
+            this.size = size;
+        }
+
+        synchronized void onHandedToRadio(long atMs) {
+            if (firstHandedMs < 0) firstHandedMs = atMs;
+            lastHandedMs = atMs;
+        }
+
+        synchronized void onConfirmed(long atMs, boolean ok) {
+            if (ok) {
+                if (firstConfirmedMs < 0) firstConfirmedMs = atMs;
+                lastConfirmedMs = atMs;
+                confirmed++;
+            } else {
+                failed++;
+            }
+        }
+
+        synchronized int confirmed() {
+            return confirmed;
+        }
+
+        synchronized int failed() {
+            return failed;
+        }
+
+        synchronized String summary() {
+            return String.format(Locale.US,
+                    "Tier %d: %d contacts, first sent +%d ms, last sent +%d ms, first confirmed +%d ms, last confirmed +%d ms, confirmed %d, failed %d, unconfirmed %d",
+                    tier, size, firstHandedMs, lastHandedMs, firstConfirmedMs, lastConfirmedMs,
+                    confirmed, failed, size - confirmed - failed);
+        }
+    }
+}
@@ -12,6 +12,8 @@ public class SplashScreen extends AppCompatActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_splash_screen);
+        // Start loading settings now so they're in memory by the time anything needs them
+        ConfigStore.getInstance(this);
 
         new Handler().postDelayed(new Runnable() {
             @Override
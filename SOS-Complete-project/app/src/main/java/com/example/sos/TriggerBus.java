@@ -0,0 +1,166 @@
+// TriggerBus.java
+package com.example.sos;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+// Every way of raising the alarm (shake, voice, the notification button, ...) fires into here instead of
+// calling ServiceMine directly. fire() only drops the event on a lock-free queue, so it's safe from sensor,
+// binder or recognizer threads; the queue is drained on one executor (the main thread in ServiceMine).
+// Each source has its own limits: a debounce that swallows the burst one gesture produces (a shake is
+// dozens of samples over the threshold), and a token bucket so a misbehaving source runs dry on its own
+// without starving the others the way the old global cooldown did. Whatever gets through in one drain
+// comes out as a single Alert naming every source involved. An alert the listener doesn't act on (one is
+// already running) costs the sources nothing: their tokens are given back, so a real emergency right after
+// isn't rate limited because of presses made during the last one.
+// Plain Java so it can be unit tested.
+public class TriggerBus {
+
+    public static final class Limits {
+        final long debounceMs;  // Events closer together than this are one gesture
+        final int burst;        // Bucket size: how many alerts in a row before the source is throttled
+        final long refillMs;    // One token comes back every refillMs
+
+        public Limits(long debounceMs, int burst, long refillMs) {
+            this.debounceMs = debounceMs;
+            this.burst = burst;
+            this.refillMs = refillMs;
+        }
+    }
+
+    public static final class Alert {
+        public final List<String> sources; // In the order they fired
+        public final long firstAt;         // Clock time of the first event
+
+        Alert(List<String> sources, long firstAt) {
+            this.sources = Collections.unmodifiableList(sources);
+            this.firstAt = firstAt;
+        }
+
+        // e.g. "Shake" or "Shake+Voice"
+        public String describe() {
+            return String.join("+", sources);
+        }
+    }
+
+    public interface Listener {
+        // False if the alert was ignored; the sources get their tokens back
+        boolean onAlert(Alert alert);
+
+        // For the log; reason is "debounced" or "rate limited"
+        default void onSuppressed(String source, String reason) { }
+    }
+
+    public final class Source {
+        private final String name;
+        private final Limits limits;
+        // Only touched while draining
+        private long lastEventAt = Long.MIN_VALUE;
+        private double tokens;
+        private long refilledAt;
+        private int accepted, debounced, limited;
+
+        private Source(String name, Limits limits) {
+            this.name = name;
+            this.limits = limits;
+            this.tokens = limits.burst;
+            this.refilledAt = clock.getAsLong();
+        }
+
+        // Any thread
+        public void fire() {
+            queue.offer(new Event(this, clock.getAsLong()));
+            scheduleDrain();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // e.g. "Shake: 3 accepted, 41 debounced, 1 rate limited"
+        public String stats() {
+            return name + ": " + accepted + " accepted, " + debounced + " debounced, " + limited + " rate limited";
+        }
+
+        private String admit(long at) {
+            boolean sameGesture = lastEventAt != Long.MIN_VALUE && at - lastEventAt < limits.debounceMs;
+            lastEventAt = at; // Keeps sliding while the gesture goes on
+            if (sameGesture) {
+                debounced++;
+                return "debounced";
+            }
+            tokens = Math.min(limits.burst, tokens + (double) (at - refilledAt) / limits.refillMs);
+            refilledAt = at;
+            if (tokens < 1) {
+                limited++;
+                return "rate limited";
+            }
+            tokens -= 1;
+            accepted++;
+            return null;
+        }
+
+        private void refund() {
+            tokens = Math.min(limits.burst, tokens + 1);
+        }
+    }
+
+    private static final class Event {
+        final Source source;
+        final long at;
+
+        Event(Source source, long at) {
+            this.source = source;
+            this.at = at;
+        }
+    }
+
+    private final ConcurrentLinkedQueue<Event> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final Executor drainExecutor;
+    private final LongSupplier clock;
+    private final Listener listener;
+
+    public TriggerBus(Executor drainExecutor, LongSupplier clock, Listener listener) {
+        this.drainExecutor = drainExecutor;
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    // Each trigger registers once, keeps the Source and fires it; nothing else needs to know about it
+    public Source register(String name, Limits limits) {
+        return new Source(name, limits);
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) drainExecutor.execute(this::drain);
+    }
+
+    private void drain() {
+        // Cleared first: an event offered after this point schedules another drain
+        drainScheduled.set(false);
+        List<String> sources = new ArrayList<>();
+        List<Source> admitted = new ArrayList<>();
+        long firstAt = 0;
+        Event event;
+        while ((event = queue.poll()) != null) {
+            String suppressed = event.source.admit(event.at);
+            if (suppressed != null) {
+                listener.onSuppressed(event.source.name, suppressed);
+                continue;
+            }
+            if (sources.isEmpty()) firstAt = event.at;
+            if (!sources.contains(event.source.name)) sources.add(event.source.name);
+            admitted.add(event.source);
+        }
+        if (sources.isEmpty()) return;
+        if (!listener.onAlert(new Alert(sources, firstAt))) {
+            for (Source source : admitted) source.refund();
+        }
+    }
+}
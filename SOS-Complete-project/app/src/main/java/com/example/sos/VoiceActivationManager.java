@@ -6,6 +6,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler; // <<< CRITICAL IMPORT
 import android.os.Looper;   // <<< CRITICAL IMPORT
+import android.os.SystemClock;
 import android.speech.RecognitionListener;
 import android.speech.RecognizerIntent;
 import android.speech.SpeechRecognizer;
@@ -13,22 +14,28 @@ import android.util.Log;
 import java.util.ArrayList;
 import java.util.Locale;
 
-public class VoiceActivationManager implements RecognitionListener {
+public class VoiceActivationManager implements RecognitionListener, MicrophoneArbiter.Client {
 
     private static final String TAG = "VoiceActivationManager";
     private static final String ACTIVATION_PHRASE = "help me";
 
     private final Context context;
-    private final SpeechRecognizer speechRecognizer;
+    private volatile SpeechRecognizer speechRecognizer; // Replaced by restartRecognizer() if it stops calling back
     private final Intent speechRecognizerIntent;
     private final ActivationCallback callback;
     private boolean isListening = false;
+    // Our claim on the microphone; recording pre-empts it and it comes back once recording is done
+    private MicrophoneArbiter.Lease micLease;
+    private InputWatchdog.Heartbeat heartbeat; // Fed from every recognizer callback
 
     // This is the handler that will fix the problem
     private final Handler mainThreadHandler;
 
     public interface ActivationCallback {
         void onVoiceCommandDetected();
+
+        // Whether the recognizer is really listening right now (it isn't while recording has the microphone)
+        default void onVoiceArmedChanged(boolean armed) { }
     }
 
     public VoiceActivationManager(Context context, ActivationCallback callback) {
@@ -38,30 +45,62 @@ public class VoiceActivationManager implements RecognitionListener {
         // Initialize the handler to run on the main application thread
         this.mainThreadHandler = new Handler(Looper.getMainLooper());
 
-        speechRecognizer = SpeechRecognizer.createSpeechRecognizer(context);
-        speechRecognizer.setRecognitionListener(this);
+        speechRecognizer = createRecognizer();
         speechRecognizerIntent = new Intent(RecognizerIntent.ACTION_RECOGNIZE_SPEECH);
         speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE_MODEL, RecognizerIntent.LANGUAGE_MODEL_FREE_FORM);
         speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_LANGUAGE, Locale.getDefault());
         speechRecognizerIntent.putExtra(RecognizerIntent.EXTRA_PARTIAL_RESULTS, true);
     }
 
+    public boolean isListening() {
+        return isListening;
+    }
+
+    public void setHeartbeat(InputWatchdog.Heartbeat heartbeat) {
+        this.heartbeat = heartbeat;
+    }
+
+    // Called by the watchdog when the recognizer has gone silent: throw it away and start a fresh one
+    public void restartRecognizer() {
+        mainThreadHandler.post(() -> {
+            if (!isListening) return; // Stopped or destroyed in the meantime
+            speechRecognizer.destroy();
+            speechRecognizer = createRecognizer();
+            Log.w(TAG, "Recognizer recreated after going silent.");
+            if (isListening && ownsMicrophone()) speechRecognizer.startListening(speechRecognizerIntent);
+        });
+    }
+
+    private SpeechRecognizer createRecognizer() {
+        SpeechRecognizer recognizer = SpeechRecognizer.createSpeechRecognizer(context);
+        recognizer.setRecognitionListener(this);
+        return recognizer;
+    }
+
+    private void beat() {
+        if (heartbeat != null) heartbeat.beat(SystemClock.elapsedRealtime());
+    }
+
     public void startListening() {
         if (!isListening && SpeechRecognizer.isRecognitionAvailable(context)) {
             isListening = true;
-            // Post the startListening call to the main thread to ensure it's safe
-            mainThreadHandler.post(() -> {
-                speechRecognizer.startListening(speechRecognizerIntent);
-                Log.i(TAG, "Voice listener started on main thread.");
-            });
+            micLease = MicrophoneArbiter.getInstance().acquire(TAG, MicrophoneArbiter.PRIORITY_VOICE_TRIGGER, this);
+            if (micLease.isActive()) {
+                startRecognizer();
+            } else {
+                Log.i(TAG, "Microphone busy; voice listener will start when it is free.");
+            }
         } else {
             Log.w(TAG, "Speech recognition not available or already listening.");
+            if (!isListening) notifyArmed(false);
         }
     }
 
     public void stopListening() {
         if (isListening) {
             isListening = false;
+            releaseMicLease();
+            notifyArmed(false);
             mainThreadHandler.post(() -> {
                 speechRecognizer.stopListening();
                 Log.i(TAG, "Voice listener stopped explicitly.");
@@ -71,19 +110,64 @@ public class VoiceActivationManager implements RecognitionListener {
 
     public void destroy() {
         isListening = false;
+        releaseMicLease();
+        notifyArmed(false);
         mainThreadHandler.post(() -> {
             speechRecognizer.destroy();
             Log.i(TAG, "Voice listener destroyed.");
         });
     }
 
+    // Evidence recording needs the microphone: stop the recognizer now instead of letting onError keep restarting it
+    @Override
+    public void onMicrophonePreempted() {
+        speechRecognizer.cancel();
+        notifyArmed(false);
+        Log.i(TAG, "Voice listener paused: microphone taken by recording.");
+    }
+
+    @Override
+    public void onMicrophoneAvailable() {
+        if (isListening) {
+            Log.i(TAG, "Microphone free again; resuming voice listener.");
+            startRecognizer();
+        }
+    }
+
+    private boolean ownsMicrophone() {
+        return micLease != null && micLease.isActive();
+    }
+
+    private void notifyArmed(boolean armed) {
+        if (callback != null) callback.onVoiceArmedChanged(armed);
+    }
+
+    private void releaseMicLease() {
+        if (micLease != null) {
+            micLease.release();
+            micLease = null;
+        }
+    }
+
+    private void startRecognizer() {
+        // Post the startListening call to the main thread to ensure it's safe
+        mainThreadHandler.post(() -> {
+            if (!isListening || !ownsMicrophone()) return;
+            speechRecognizer.startListening(speechRecognizerIntent);
+            notifyArmed(true);
+            Log.i(TAG, "Voice listener started on main thread.");
+        });
+    }
+
     @Override
     public void onResults(Bundle results) {
+        beat();
         // This is not used because we use partial results for faster response.
     }
 
     @Override
     public void onPartialResults(Bundle partialResults) {
+        beat();
         ArrayList<String> matches = partialResults.getStringArrayList(SpeechRecognizer.RESULTS_RECOGNITION);
         if (matches != null && !matches.isEmpty()) {
             String spokenText = matches.get(0).toLowerCase().trim();
@@ -104,6 +188,7 @@ public class VoiceActivationManager implements RecognitionListener {
 
     @Override
     public void onError(int error) {
+        beat(); // An error still proves the recognizer is alive; we restart it below
         String errorMessage;
         switch (error) {
             case SpeechRecognizer.ERROR_SPEECH_TIMEOUT: errorMessage = "No speech input"; break;
@@ -112,9 +197,11 @@ public class VoiceActivationManager implements RecognitionListener {
         }
         Log.d(TAG, "onError: " + errorMessage);
 
-        // When an error occurs, we restart listening to make it continuous
-        if (isListening) {
+        // When an error occurs, we restart listening to make it continuous,
+        // unless recording has the microphone (restarting then would only fail again and burn CPU)
+        if (isListening && ownsMicrophone()) {
             mainThreadHandler.post(() -> {
+                if (!ownsMicrophone()) return;
                 speechRecognizer.cancel();
                 speechRecognizer.startListening(speechRecognizerIntent);
             });
@@ -123,19 +210,19 @@ public class VoiceActivationManager implements RecognitionListener {
 
     // --- Other required methods (no changes needed) ---
     @Override
-    public void onReadyForSpeech(Bundle params) { Log.d(TAG, "onReadyForSpeech"); }
+    public void onReadyForSpeech(Bundle params) { beat(); Log.d(TAG, "onReadyForSpeech"); }
 
     @Override
-    public void onBeginningOfSpeech() { Log.d(TAG, "onBeginningOfSpeech"); }
+    public void onBeginningOfSpeech() { beat(); Log.d(TAG, "onBeginningOfSpeech"); }
 
     @Override
-    public void onRmsChanged(float rmsdB) { /* Not needed */ }
+    public void onRmsChanged(float rmsdB) { beat(); }
 
     @Override
     public void onBufferReceived(byte[] buffer) { /* Not needed */ }
 
     @Override
-    public void onEndOfSpeech() { Log.d(TAG, "onEndOfSpeech"); }
+    public void onEndOfSpeech() { beat(); Log.d(TAG, "onEndOfSpeech"); }
 
     @Override
     public void onEvent(int eventType, Bundle params) { /* Not needed */ }
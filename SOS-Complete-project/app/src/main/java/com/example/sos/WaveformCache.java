@@ -0,0 +1,136 @@
+// WaveformCache.java
+package com.example.sos;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Waveform thumbnails for the recordings list. Each recording is decoded once in the background, the
+// peaks are stored as a small binary file in the cache dir, and recently shown ones stay in a
+// byte-bounded memory LRU so scrolling back and forth never touches the disk.
+public class WaveformCache {
+
+    private static final String TAG = "WaveformCache";
+    private static final String DISK_DIR = "waveforms";
+    private static final int FILE_MAGIC = 0x53574631; // "SWF1"
+    private static final int MEMORY_BYTES = 256 * 1024;
+
+    public static final int PEAK_COUNT = 200;
+
+    private static WaveformCache instance;
+
+    private final LruCache<String, byte[]> memoryCache = new LruCache<String, byte[]>(MEMORY_BYTES) {
+        @Override
+        protected int sizeOf(String key, byte[] value) {
+            return value.length;
+        }
+    };
+    private final File diskDir;
+    // Callbacks waiting for a key that is already being decoded (main thread only)
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+
+    public interface Callback {
+        // peaks is null if the recording could not be decoded
+        void onWaveformLoaded(RecordingItem item, byte[] peaks);
+    }
+
+    public static synchronized WaveformCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new WaveformCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private WaveformCache(Context context) {
+        diskDir = new File(context.getCacheDir(), DISK_DIR);
+    }
+
+    // Memory-only lookup, safe to call from onBindViewHolder
+    public byte[] getCachedPeaks(RecordingItem item) {
+        return memoryCache.get(item.getCacheKey());
+    }
+
+    // Must be called on the main thread; the callback is delivered on the main thread too
+    public void loadPeaks(RecordingItem item, Callback callback) {
+        final String key = item.getCacheKey();
+        byte[] cached = memoryCache.get(key);
+        if (cached != null) {
+            callback.onWaveformLoaded(item, cached);
+            return;
+        }
+        List<Callback> waiting = pending.get(key);
+        if (waiting != null) {
+            waiting.add(callback);
+            return;
+        }
+        waiting = new ArrayList<>();
+        waiting.add(callback);
+        pending.put(key, waiting);
+
+        AppExecutors.media().execute(() -> {
+            byte[] peaks = readFromDisk(key);
+            if (peaks == null) {
+                peaks = WaveformExtractor.extractPeaks(item.getFile(), PEAK_COUNT);
+                if (peaks != null) writeToDisk(key, peaks);
+            }
+            final byte[] result = peaks;
+            AppExecutors.mainThread().execute(() -> {
+                if (result != null) memoryCache.put(key, result);
+                List<Callback> callbacks = pending.remove(key);
+                if (callbacks != null) {
+                    for (Callback c : callbacks) c.onWaveformLoaded(item, result);
+                }
+            });
+        });
+    }
+
+    // Drops both cache levels for a recording that has been deleted
+    public void evict(RecordingItem item) {
+        final String key = item.getCacheKey();
+        memoryCache.remove(key);
+        AppExecutors.diskIO().execute(() -> {
+            File entry = new File(diskDir, key + ".peaks");
+            if (entry.exists() && !entry.delete()) {
+                Log.w(TAG, "Could not delete waveform cache entry " + key);
+            }
+        });
+    }
+
+    private byte[] readFromDisk(String key) {
+        File entry = new File(diskDir, key + ".peaks");
+        if (!entry.exists()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(entry))) {
+            if (in.readInt() != FILE_MAGIC) return null;
+            int count = in.readUnsignedShort();
+            if (count != PEAK_COUNT) return null; // Written with a different resolution, decode again
+            byte[] peaks = new byte[count];
+            in.readFully(peaks);
+            return peaks;
+        } catch (IOException e) {
+            Log.w(TAG, "Corrupt waveform cache entry " + key, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, byte[] peaks) {
+        if (!diskDir.exists() && !diskDir.mkdirs()) return;
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(new File(diskDir, key + ".peaks")))) {
+            out.writeInt(FILE_MAGIC);
+            out.writeShort(peaks.length);
+            out.write(peaks);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write waveform cache entry " + key, e);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+// WaveformExtractor.java
+package com.example.sos;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+
+// Decodes a recording to PCM with MediaExtractor/MediaCodec and downsamples it to a fixed number of
+// peak values (0-255), which is all a list thumbnail needs. Runs synchronously, so call it off the UI thread.
+public final class WaveformExtractor {
+
+    private static final String TAG = "WaveformExtractor";
+    private static final long DEQUEUE_TIMEOUT_US = 10000;
+
+    private WaveformExtractor() { }
+
+    // Returns null when the file has no decodable audio track
+    public static byte[] extractPeaks(File file, int bucketCount) {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            if (RecordingCrypto.isEncrypted(file)) {
+                // Decrypted chunk by chunk as the extractor reads; the extractor closes it on release
+                extractor.setDataSource(RecordingCrypto.openDataSource(file));
+            } else {
+                extractor.setDataSource(file.getAbsolutePath());
+            }
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat candidate = extractor.getTrackFormat(i);
+                String mime = candidate.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = candidate;
+                    break;
+                }
+            }
+            if (format == null) {
+                Log.w(TAG, "No audio track in " + file.getName());
+                return null;
+            }
+
+            // Work out how many PCM frames go into each bucket from the container's duration
+            long durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channels = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            long totalFrames = durationUs * sampleRate / 1000000L;
+            long framesPerBucket = Math.max(1, totalFrames / bucketCount);
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            int[] peaks = new int[bucketCount];
+            int bucket = 0;
+            long framesInBucket = 0;
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean outputDone = false;
+
+            while (!outputDone) {
+                if (!inputDone) {
+                    int inIndex = codec.dequeueInputBuffer(DEQUEUE_TIMEOUT_US);
+                    if (inIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inIndex);
+                        int size = input != null ? extractor.readSampleData(input, 0) : -1;
+                        if (size < 0) {
+                            codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            codec.queueInputBuffer(inIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outIndex = codec.dequeueOutputBuffer(info, DEQUEUE_TIMEOUT_US);
+                if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    channels = codec.getOutputFormat().getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                } else if (outIndex >= 0) {
+                    ByteBuffer output = codec.getOutputBuffer(outIndex);
+                    if (output != null && info.size > 0) {
+                        output.position(info.offset);
+                        output.limit(info.offset + info.size);
+                        // Decoders output 16-bit PCM by default, interleaved by channel
+                        ShortBuffer samples = output.order(ByteOrder.nativeOrder()).asShortBuffer();
+                        while (samples.remaining() >= channels) {
+                            for (int c = 0; c < channels; c++) {
+                                int amplitude = Math.abs((int) samples.get());
+                                if (amplitude > peaks[bucket]) peaks[bucket] = amplitude;
+                            }
+                            // The duration in the header is only an estimate, so pile any overflow into the last bucket
+                            if (++framesInBucket >= framesPerBucket && bucket < bucketCount - 1) {
+                                bucket++;
+                                framesInBucket = 0;
+                            }
+                        }
+                    }
+                    codec.releaseOutputBuffer(outIndex, false);
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        outputDone = true;
+                    }
+                }
+            }
+            return normalize(peaks);
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not decode waveform of " + file.getName(), e);
+            return null;
+        } finally {
+            if (codec != null) {
+                try { codec.stop(); } catch (IllegalStateException ignored) { }
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+
+    // Scales to the loudest peak so quiet recordings still produce a readable thumbnail
+    private static byte[] normalize(int[] peaks) {
+        int max = 1;
+        for (int peak : peaks) max = Math.max(max, peak);
+        byte[] result = new byte[peaks.length];
+        for (int i = 0; i < peaks.length; i++) {
+            result[i] = (byte) (peaks[i] * 255 / max);
+        }
+        return result;
+    }
+}
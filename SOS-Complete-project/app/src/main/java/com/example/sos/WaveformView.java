@@ -0,0 +1,70 @@
+// WaveformView.java
+package com.example.sos;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+// Draws a row of vertical bars from the 0-255 peaks produced by WaveformExtractor.
+// onDraw reuses one line buffer, so scrolling the list allocates nothing here.
+public class WaveformView extends View {
+
+    private final Paint barPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint placeholderPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private byte[] peaks;
+    private float[] lines = new float[0];
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        barPaint.setColor(ContextCompat.getColor(context, android.R.color.holo_red_dark));
+        barPaint.setStrokeCap(Paint.Cap.ROUND);
+        placeholderPaint.setColor(ContextCompat.getColor(context, android.R.color.darker_gray));
+        placeholderPaint.setAlpha(80);
+    }
+
+    // Pass null to show the flat placeholder while the thumbnail is loading
+    public void setPeaks(@Nullable byte[] peaks) {
+        if (this.peaks == peaks) return;
+        this.peaks = peaks;
+        if (peaks != null && lines.length != peaks.length * 4) {
+            lines = new float[peaks.length * 4];
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        int width = getWidth() - getPaddingLeft() - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        float centerY = getPaddingTop() + height / 2f;
+
+        if (peaks == null || peaks.length == 0) {
+            placeholderPaint.setStrokeWidth(2f);
+            canvas.drawLine(getPaddingLeft(), centerY, getPaddingLeft() + width, centerY, placeholderPaint);
+            return;
+        }
+
+        float step = (float) width / peaks.length;
+        barPaint.setStrokeWidth(Math.max(1f, step * 0.6f));
+        for (int i = 0; i < peaks.length; i++) {
+            // Keep a 1px sliver for silent parts so the shape of the recording stays visible
+            float half = Math.max(0.5f, (peaks[i] & 0xFF) / 255f * height / 2f);
+            float x = getPaddingLeft() + step * i + step / 2f;
+            lines[i * 4] = x;
+            lines[i * 4 + 1] = centerY - half;
+            lines[i * 4 + 2] = x;
+            lines[i * 4 + 3] = centerY + half;
+        }
+        canvas.drawLines(lines, 0, peaks.length * 4, barPaint);
+    }
+}
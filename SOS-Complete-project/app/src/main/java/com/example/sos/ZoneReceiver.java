@@ -0,0 +1,338 @@
+// ZoneReceiver.java
+package com.example.sos;
+
+import android.Manifest;
+import android.app.PendingIntent;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingEvent;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Zone arming: protection is on while the phone is inside one of the user's SafetyZones and off outside
+// them, instead of listening all day. The zones are registered with the platform geofencing API, which
+// wakes us on the way in and out and costs next to nothing in between (it piggybacks on the location
+// the system is getting anyway). Entering starts ServiceMine; leaving the last zone stops it again,
+// unless the user turned protection on themselves or an alert is running.
+// Every transition is logged (logcat and files/zone_arming.log) with an ArmingLedger summary of the time
+// and battery saved against always-on. Runs in the ":detector" process, which owns the arming state.
+public class ZoneReceiver extends BroadcastReceiver {
+
+    private static final String TAG = "ZoneReceiver";
+    private static final String ACTION_GEOFENCE = "com.example.sos.action.ZONE_GEOFENCE";
+    private static final String ACTION_SYNC = "com.example.sos.action.ZONE_SYNC";
+    private static final String PREFS_NAME = "zone_arming";
+    private static final String KEY_INSIDE = "inside"; // Request ids of the zones we're in
+    private static final String ARMING_LOG = "zone_arming.log";
+    // How late the platform may tell us about a transition. Shorter costs battery, longer leaves the
+    // first part of the car park unprotected; half a minute is about a walk from the car.
+    private static final int RESPONSIVENESS_MS = 30000;
+    private static final long TASK_TIMEOUT_S = 5; // goAsync gives us about 10 s in total
+    private static final Object lock = new Object(); // Arming state; every path below runs on the disk executor anyway
+
+    // Zones or the setting changed (SafetyZones, SafetyZonesActivity). Queued on the disk executor so a
+    // config write the caller has just made reaches the file before the detector reads it.
+    public static void requestSync(Context context) {
+        final Context appContext = context.getApplicationContext();
+        AppExecutors.diskIO().execute(() -> appContext.sendBroadcast(
+                new Intent(appContext, ZoneReceiver.class).setAction(ACTION_SYNC)));
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        final String action = intent.getAction();
+        if (!ACTION_GEOFENCE.equals(action) && !ACTION_SYNC.equals(action)) return;
+        final Context appContext = context.getApplicationContext();
+        final PendingResult result = goAsync();
+        // The UI process may have changed the config since we last read it; reload() runs on the disk
+        // executor too, so the work queued after it sees the file as it is now
+        ConfigStore.getInstance(appContext).reload();
+        AppExecutors.diskIO().execute(() -> {
+            try {
+                if (ACTION_SYNC.equals(action)) {
+                    sync(appContext, false);
+                } else {
+                    onGeofenceEvent(appContext, GeofencingEvent.fromIntent(intent));
+                }
+            } finally {
+                result.finish();
+            }
+        });
+    }
+
+    // Registers the zones (or removes them if zone arming is off) and re-checks whether we should be armed.
+    // Background thread only. After a reboot the platform has forgotten both the geofences and where we
+    // were; the initial-enter trigger tells us again if we're inside one.
+    static void sync(Context context, boolean rebooted) {
+        ConfigStore.Config config = ConfigStore.getInstance(context).get();
+        List<SafetyZones.Zone> zones = SafetyZones.getInstance(context).fetchAll();
+        synchronized (lock) {
+            SharedPreferences prefs = prefs(context);
+            Set<String> inside = new HashSet<>(prefs.getStringSet(KEY_INSIDE, new HashSet<>()));
+            if (rebooted) inside.clear();
+            // A deleted zone never reports an exit
+            Set<String> known = new HashSet<>();
+            for (SafetyZones.Zone zone : zones) known.add(zone.requestId());
+            inside.retainAll(known);
+
+            GeofencingClient client = LocationServices.getGeofencingClient(context);
+            await(client.removeGeofences(geofenceIntent(context)), "remove geofences");
+            if (config.zoneArmingEnabled && !zones.isEmpty()) {
+                register(context, client, zones);
+            } else {
+                inside.clear();
+            }
+            update(context, config, inside, rebooted ? "reboot" : "zones changed");
+        }
+    }
+
+    private static void register(Context context, GeofencingClient client, List<SafetyZones.Zone> zones) {
+        if (!hasLocationPermissions(context)) {
+            Log.w(TAG, "Zone arming needs fine and background location; not registering zones.");
+            BootReceiver.notifyNeedsAttention(context);
+            return;
+        }
+        List<Geofence> geofences = new ArrayList<>();
+        for (SafetyZones.Zone zone : zones) {
+            geofences.add(new Geofence.Builder()
+                    .setRequestId(zone.requestId())
+                    .setCircularRegion(zone.latitude, zone.longitude, zone.radiusM)
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER | Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .setNotificationResponsiveness(RESPONSIVENESS_MS)
+                    .build());
+        }
+        GeofencingRequest request = new GeofencingRequest.Builder()
+                .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER) // Arm now if we're already inside
+                .addGeofences(geofences)
+                .build();
+        try {
+            if (await(client.addGeofences(request, geofenceIntent(context)), "add geofences")) {
+                Log.i(TAG, "Registered " + geofences.size() + " zone(s).");
+            }
+        } catch (SecurityException e) {
+            Log.e(TAG, "Location permission went away while registering zones.", e);
+        }
+    }
+
+    private static void onGeofenceEvent(Context context, GeofencingEvent event) {
+        if (event == null) return;
+        if (event.hasError()) {
+            // GEOFENCE_NOT_AVAILABLE means location was switched off: the platform has dropped the zones
+            // and we'll only hear about them again after the next sync
+            Log.w(TAG, "Geofence error: " + GeofenceStatusCodes.getStatusCodeString(event.getErrorCode()));
+            return;
+        }
+        int transition = event.getGeofenceTransition();
+        List<Geofence> triggering = event.getTriggeringGeofences();
+        if (triggering == null) return;
+        ConfigStore.Config config = ConfigStore.getInstance(context).get();
+        Map<String, String> names = new HashMap<>();
+        for (SafetyZones.Zone zone : SafetyZones.getInstance(context).fetchAll()) names.put(zone.requestId(), zone.name);
+        synchronized (lock) {
+            Set<String> inside = new HashSet<>(prefs(context).getStringSet(KEY_INSIDE, new HashSet<>()));
+            List<String> zoneNames = new ArrayList<>();
+            for (Geofence geofence : triggering) {
+                String id = geofence.getRequestId();
+                String name = names.get(id);
+                if (name == null) continue; // Deleted since; the next sync removes its geofence
+                zoneNames.add("'" + name + "'");
+                if (transition == Geofence.GEOFENCE_TRANSITION_ENTER) inside.add(id);
+                else if (transition == Geofence.GEOFENCE_TRANSITION_EXIT) inside.remove(id);
+            }
+            if (zoneNames.isEmpty()) return;
+            String verb = transition == Geofence.GEOFENCE_TRANSITION_ENTER ? "entered " : "left ";
+            update(context, config, inside, verb + TextUtils.join(", ", zoneNames));
+        }
+    }
+
+    // Saves where we are and arms or disarms if that changed. Caller holds the lock.
+    private static void update(Context context, ConfigStore.Config config, Set<String> inside, String cause) {
+        SharedPreferences prefs = prefs(context);
+        ArmingLedger ledger = loadLedger(prefs);
+        long now = System.currentTimeMillis();
+        if (!config.zoneArmingEnabled) {
+            // The ledger only counts while zone arming is on; switching it off closes the books
+            if (ledger.since >= 0) {
+                boolean wasArmed = ledger.armed;
+                ledger.transition(false, now, batteryLevel(context));
+                String line = "Zone arming off; " + ledger.describe(now);
+                Log.i(TAG, line);
+                appendToLog(context, line);
+                if (wasArmed) disarm(context, config);
+            }
+            prefs.edit().clear().apply();
+            return;
+        }
+        boolean wanted = !inside.isEmpty();
+        boolean firstTransition = ledger.since < 0;
+        long spent = ledger.transition(wanted, now, batteryLevel(context));
+        SharedPreferences.Editor editor = prefs.edit().putStringSet(KEY_INSIDE, inside);
+        saveLedger(editor, ledger);
+        editor.apply();
+        if (spent < 0) {
+            Log.d(TAG, "Zones: " + cause + ", still " + (wanted ? "armed" : "disarmed") + ".");
+            return;
+        }
+        String line = (wanted ? "Armed" : "Disarmed") + " (" + cause + ")"
+                + (firstTransition ? "" : String.format(Locale.US, " after %.1f h %s", spent / 3600000.0, wanted ? "disarmed" : "armed"))
+                + "; " + ledger.describe(now);
+        Log.i(TAG, line);
+        appendToLog(context, line);
+        if (wanted) {
+            arm(context);
+        } else if (!firstTransition) {
+            disarm(context, config);
+        }
+    }
+
+    private static void arm(Context context) {
+        if (ServiceStatus.getInstance().get().running) {
+            Log.d(TAG, "Protection is already on.");
+            return;
+        }
+        List<String> missing = BootReceiver.missingForBackgroundStart(context);
+        if (!missing.isEmpty()) {
+            Log.w(TAG, "Not arming, missing " + missing);
+            BootReceiver.notifyNeedsAttention(context);
+            return;
+        }
+        Intent serviceIntent = new Intent(context, ServiceMine.class)
+                .setAction("Start")
+                .putExtra(ServiceMine.EXTRA_START_REASON, "zone")
+                .putExtra(ServiceMine.EXTRA_REQUESTED_AT, SystemClock.elapsedRealtime());
+        try {
+            // Geofence transitions are one of the cases allowed to start a foreground service from the background
+            context.startForegroundService(serviceIntent);
+        } catch (IllegalStateException e) {
+            Log.e(TAG, "Could not start protection for the zone.", e);
+            BootReceiver.notifyNeedsAttention(context);
+        }
+    }
+
+    private static void disarm(Context context, ConfigStore.Config config) {
+        ServiceStatus.State state = ServiceStatus.getInstance().get();
+        if (!state.running) return;
+        if (config.protectionEnabled) {
+            Log.i(TAG, "Leaving protection on: the user turned it on.");
+            return;
+        }
+        if (state.alertInProgress) {
+            Log.i(TAG, "Leaving protection on: an alert is in progress.");
+            return;
+        }
+        context.startService(new Intent(context, ServiceMine.class).setAction("stop"));
+    }
+
+    private static PendingIntent geofenceIntent(Context context) {
+        // Mutable: the geofencing API fills in the transition and the zones
+        int flags = PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? PendingIntent.FLAG_MUTABLE : 0);
+        return PendingIntent.getBroadcast(context, 0,
+                new Intent(context, ZoneReceiver.class).setAction(ACTION_GEOFENCE), flags);
+    }
+
+    static boolean hasLocationPermissions(Context context) {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        return Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+                || ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_BACKGROUND_LOCATION) == PackageManager.PERMISSION_GRANTED;
+    }
+
+    private static boolean await(Task<Void> task, String what) {
+        try {
+            Tasks.await(task, TASK_TIMEOUT_S, TimeUnit.SECONDS);
+            return true;
+        } catch (Exception e) {
+            Log.w(TAG, "Could not " + what + ".", e);
+            return false;
+        }
+    }
+
+    // Charging readings say nothing about what protection costs
+    private static int batteryLevel(Context context) {
+        BatteryManager battery = context.getSystemService(BatteryManager.class);
+        if (battery == null || battery.isCharging()) return ArmingLedger.UNKNOWN_LEVEL;
+        int level = battery.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        return level > 0 ? level : ArmingLedger.UNKNOWN_LEVEL;
+    }
+
+    // The summary SafetyZonesActivity shows. Only this process writes the file, the UI just reads it.
+    @SuppressWarnings("deprecation")
+    public static String describeSavings(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_MULTI_PROCESS);
+        return loadLedger(prefs).describe(System.currentTimeMillis());
+    }
+
+    private static ArmingLedger loadLedger(SharedPreferences prefs) {
+        ArmingLedger ledger = new ArmingLedger();
+        ledger.since = prefs.getLong("since", -1);
+        ledger.armed = prefs.getBoolean("armed", false);
+        ledger.changedAt = prefs.getLong("changed_at", -1);
+        ledger.levelAtChange = prefs.getInt("level_at_change", ArmingLedger.UNKNOWN_LEVEL);
+        ledger.armedMs = prefs.getLong("armed_ms", 0);
+        ledger.unarmedMs = prefs.getLong("unarmed_ms", 0);
+        ledger.armedMeasuredMs = prefs.getLong("armed_measured_ms", 0);
+        ledger.unarmedMeasuredMs = prefs.getLong("unarmed_measured_ms", 0);
+        ledger.armedDrain = prefs.getInt("armed_drain", 0);
+        ledger.unarmedDrain = prefs.getInt("unarmed_drain", 0);
+        return ledger;
+    }
+
+    private static void saveLedger(SharedPreferences.Editor editor, ArmingLedger ledger) {
+        editor.putLong("since", ledger.since)
+                .putBoolean("armed", ledger.armed)
+                .putLong("changed_at", ledger.changedAt)
+                .putInt("level_at_change", ledger.levelAtChange)
+                .putLong("armed_ms", ledger.armedMs)
+                .putLong("unarmed_ms", ledger.unarmedMs)
+                .putLong("armed_measured_ms", ledger.armedMeasuredMs)
+                .putLong("unarmed_measured_ms", ledger.unarmedMeasuredMs)
+                .putInt("armed_drain", ledger.armedDrain)
+                .putInt("unarmed_drain", ledger.unarmedDrain);
+    }
+
+    private static void appendToLog(Context context, String line) {
+        String stamped = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US).format(new Date()) + "  " + line + "\n";
+        try (Writer writer = new FileWriter(new File(context.getFilesDir(), ARMING_LOG), true)) {
+            writer.write(stamped);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write the arming log.", e);
+        }
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.sos;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArmingLedgerTest {
+
+    private static final long HOUR = 3600000;
+
+    @Test
+    public void countsTimeInEachState() {
+        ArmingLedger ledger = new ArmingLedger();
+        ledger.transition(false, 0, 100);
+        assertEquals(-1, ledger.transition(false, HOUR, 99)); // No change
+        assertEquals(10 * HOUR, ledger.transition(true, 10 * HOUR, 90));
+        assertEquals(2 * HOUR, ledger.transition(false, 12 * HOUR, 84));
+        assertEquals(2 * HOUR, ledger.armedMs(13 * HOUR));
+        assertEquals(11 * HOUR, ledger.unarmedMs(13 * HOUR));
+    }
+
+    @Test
+    public void savingIsTheExtraDrainTimesUnarmedHours() {
+        ArmingLedger ledger = new ArmingLedger();
+        ledger.transition(false, 0, 100);
+        ledger.transition(true, 10 * HOUR, 90);  // 1%/h unarmed
+        ledger.transition(false, 12 * HOUR, 84); // 3%/h armed, so protection costs 2%/h
+        assertEquals(2.0, ledger.protectionCostPerHour(), 1e-9);
+        assertEquals(20.0, ledger.savedPercent(12 * HOUR), 1e-9);
+        assertEquals(22.0, ledger.savedPercent(13 * HOUR), 1e-9); // Still unarmed
+    }
+
+    @Test
+    public void chargingStretchesAreNotMeasured() {
+        ArmingLedger ledger = new ArmingLedger();
+        ledger.transition(false, 0, ArmingLedger.UNKNOWN_LEVEL);
+        ledger.transition(true, 5 * HOUR, 80);
+        ledger.transition(false, 6 * HOUR, 95); // Went up: was on the charger
+        assertEquals(-1, ledger.protectionCostPerHour(), 0);
+        assertEquals(-1, ledger.savedPercent(7 * HOUR), 0);
+        assertTrue(ledger.describe(7 * HOUR), ledger.describe(7 * HOUR).contains("not measured yet"));
+    }
+
+    @Test
+    public void clockSetBackCountsAsNoTime() {
+        ArmingLedger ledger = new ArmingLedger();
+        ledger.transition(true, 10 * HOUR, 50);
+        assertEquals(0, ledger.transition(false, 9 * HOUR, 49));
+        assertEquals(0, ledger.armedMs(9 * HOUR));
+    }
+}
@@ -0,0 +1,327 @@
+package com.example.sos;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Runs the real migration SQL against an in-memory SQLite database seeded with v1 rows
+public class ContactMigrationsTest {
+
+    private Connection connection;
+    private ContactMigrations.Database db;
+
+    @Before
+    public void setUp() throws SQLException {
+        connection = DriverManager.getConnection("jdbc:sqlite::memory:");
+        db = new JdbcDatabase(connection);
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Test
+    public void v1ToV2NormalizesAndDropsDuplicates() {
+        createV1(
+                "Mom", "98765 43210",
+                "Dad", "+91 91234 56789",
+                "Mom again", "098765-43210",
+                "Dad (work)", "919123456789",
+                "Police", "100",
+                "Blank", null);
+
+        ContactMigrations.migrate(db, 1, 2, "91");
+
+        List<String[]> rows = db.query("SELECT ID, NAME, MOBILE, PRIORITY, CHANNEL FROM contact_table ORDER BY ID");
+        assertEquals(4, rows.size());
+        assertRow(rows.get(0), "1", "Mom", "+919876543210");
+        assertRow(rows.get(1), "2", "Dad", "+919123456789");
+        assertRow(rows.get(2), "5", "Police", "100");
+        assertRow(rows.get(3), "6", "Blank", null);
+        for (String[] row : rows) {
+            assertEquals(String.valueOf(ContactModel.PRIORITY_PRIMARY), row[3]);
+            assertEquals(ContactModel.CHANNEL_SMS, row[4]);
+        }
+    }
+
+    @Test
+    public void v1ToV2ClearsNumbersThatWontNormalize() {
+        // The old import saved "" for contacts without a number; repeated, it used to break the unique index
+        createV1(
+                "No number", "",
+                "No number either", "",
+                "Typo", "abc",
+                "Typo again", "abc",
+                "Mom", "98765 43210");
+
+        ContactMigrations.migrate(db, 1, ContactMigrations.LATEST_VERSION, "91");
+
+        List<String[]> rows = db.query("SELECT ID, NAME, MOBILE FROM contact_table ORDER BY ID");
+        assertEquals(5, rows.size());
+        assertRow(rows.get(0), "1", "No number", null);
+        assertRow(rows.get(1), "2", "No number either", null);
+        assertRow(rows.get(2), "3", "Typo", null);
+        assertRow(rows.get(3), "4", "Typo again", null);
+        assertRow(rows.get(4), "5", "Mom", "+919876543210");
+    }
+
+    @Test
+    public void numbersThatWontNormalizeArePlannedAsCleared() {
+        List<String[]> rows = Arrays.asList(
+                new String[]{"1", ""},
+                new String[]{"2", ""},
+                new String[]{"3", "-- --"},
+                new String[]{"4", "-- --"},
+                new String[]{"5", null});
+
+        ContactMigrations.NormalizationPlan plan = ContactMigrations.planNormalization(rows, "91");
+
+        assertEquals(Arrays.asList("1", "2", "3", "4"), plan.clears);
+        assertTrue(plan.deletes.isEmpty());
+        assertTrue(plan.updates.isEmpty());
+    }
+
+    @Test
+    public void v2RejectsDuplicateNumbers() {
+        createV1("Mom", "9876543210");
+        ContactMigrations.migrate(db, 1, 2, "91");
+
+        try {
+            db.execSQL("INSERT INTO contact_table (NAME, MOBILE) VALUES (?, ?)", new Object[]{"Copy", "+919876543210"});
+            fail("Unique index should reject a second copy of the number");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause() instanceof SQLException);
+        }
+    }
+
+    @Test
+    public void freshInstallMatchesUpgradedSchema() {
+        ContactMigrations.create(db, "91");
+        List<String[]> fresh = schema();
+
+        tearDownQuietly();
+        connection = newConnection();
+        db = new JdbcDatabase(connection);
+        createV1();
+        ContactMigrations.migrate(db, 1, ContactMigrations.LATEST_VERSION, "91");
+
+        assertEquals(toString(fresh), toString(schema()));
+    }
+
+    @Test
+    public void oldestRowWinsWhenPlanningDuplicates() {
+        List<String[]> rows = Arrays.asList(
+                new String[]{"3", "+919876543210"},
+                new String[]{"7", "9876543210"},
+                new String[]{"9", "0044 7700 900123"});
+
+        ContactMigrations.NormalizationPlan plan = ContactMigrations.planNormalization(rows, "91");
+
+        assertEquals(Arrays.asList("7"), plan.deletes);
+        assertEquals(1, plan.updates.size());
+        assertEquals("+447700900123", plan.updates.get("9"));
+    }
+
+    @Test
+    public void v3IndexesExistingAndNewContactsForSearch() {
+        createV1("Asha Verma", "98765 43210");
+        ContactMigrations.migrate(db, 1, 3, "91");
+        db.execSQL("INSERT INTO contact_table (NAME, MOBILE) VALUES (?, ?)", new Object[]{"Ravi Kumar", "+919123456789"});
+
+        assertEquals(Arrays.asList("Asha Verma"), search("ash"));
+        assertEquals(Arrays.asList("Ravi Kumar"), search("kum"));
+        assertEquals(Arrays.asList("Asha Verma"), search("98765"));
+        assertEquals(Arrays.asList("Ravi Kumar"), search("+91 9123"));
+        assertEquals(Arrays.asList("Asha Verma", "Ravi Kumar"), search(""));
+        assertEquals(Arrays.asList(), search("ravi 98765"));
+    }
+
+    @Test
+    public void v3KeepsSearchInStepWithUpdatesAndDeletes() {
+        ContactMigrations.create(db, "91");
+        db.execSQL("INSERT INTO contact_table (NAME, MOBILE) VALUES (?, ?)", new Object[]{"Asha", "+919876543210"});
+        db.execSQL("UPDATE contact_table SET NAME = ? WHERE ID = 1", new Object[]{"Meera"});
+        assertEquals(Arrays.asList(), search("asha"));
+        assertEquals(Arrays.asList("Meera"), search("mee"));
+
+        db.execSQL("DELETE FROM contact_table WHERE ID = 1", null);
+        assertEquals(Arrays.asList(), search("mee"));
+    }
+
+    @Test
+    public void searchInputCantBreakTheQuery() {
+        ContactMigrations.create(db, "91");
+        db.execSQL("INSERT INTO contact_table (NAME, MOBILE) VALUES (?, ?)", new Object[]{"O'Brien", "+447700900123"});
+        assertEquals(Arrays.asList("O'Brien"), search("\"o'bri* -"));
+    }
+
+    @Test
+    public void v4HistoryPagesSeekIntoTheTimeIndex() {
+        ContactMigrations.create(db, "91");
+        for (int i = 1; i <= 5; i++) insertAlert(i * 1000L);
+        insertAlert(3000L); // Same time as ID 3, the ID breaks the tie
+
+        List<String[]> plan = db.query("EXPLAIN QUERY PLAN " + pageQuery(3000, 6));
+        assertTrue(toString(plan), toString(plan).contains("SEARCH alerts USING INDEX " + ContactMigrations.ALERTS_TIME_INDEX));
+        assertEquals(Arrays.asList("3", "2", "1"), ids(db.query(pageQuery(3000, 6))));
+        assertEquals(Arrays.asList("5", "4", "6", "3", "2", "1"), ids(db.query(pageQuery(Long.MAX_VALUE, Long.MAX_VALUE))));
+    }
+
+    @Test
+    public void retentionCompactsOldAlertsAndDropsExpiredOnes() {
+        ContactMigrations.create(db, "91");
+        long now = 1700000000000L;
+        insertAlert(now - AlertRetention.MAX_AGE_MS - 1);
+        insertAlert(now - AlertRetention.FULL_DETAIL_MS - 1);
+        insertAlert(now - 1000);
+        db.execSQL("UPDATE alerts SET LOCATION_AT = TRIGGERED_AT + 1, LATITUDE = 12.345678, LONGITUDE = 77.123456, ACCURACY = 8", null);
+
+        AlertRetention.Result result = AlertRetention.compact(db, now);
+
+        // The expired row is compacted on its way out, so it counts in both
+        assertEquals(2, result.compacted);
+        assertEquals(1, result.deleted);
+        List<String[]> rows = db.query("SELECT ID, LOCATION_AT, LATITUDE, ACCURACY, COMPACTED FROM alerts ORDER BY ID");
+        assertEquals(2, rows.size());
+        assertEquals(Arrays.asList("2", null, "12.35", null, "1"), Arrays.asList(rows.get(0)));
+        assertEquals("0", rows.get(1)[4]);
+        assertEquals("8.0", rows.get(1)[3]);
+    }
+
+    @Test
+    public void retentionKeepsOnlyTheNewestRows() {
+        ContactMigrations.create(db, "91");
+        for (int i = 0; i < AlertRetention.MAX_ROWS + 3; i++) insertAlert(1000L + i);
+
+        AlertRetention.Result result = AlertRetention.compact(db, 2000L + AlertRetention.MAX_ROWS);
+
+        assertEquals(3, result.deleted);
+        assertEquals(String.valueOf(1003L), db.query("SELECT MIN(TRIGGERED_AT) FROM alerts").get(0)[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void refusesUnknownVersions() {
+        ContactMigrations.migrate(db, 1, ContactMigrations.LATEST_VERSION + 1, "91");
+    }
+
+    // Same query DatabaseHelper.searchContacts runs, returning names in ID order
+    private List<String> search(String input) {
+        String match = ContactSearch.buildMatchQuery(input, "91");
+        List<String[]> rows = match == null
+                ? db.query("SELECT NAME FROM contact_table ORDER BY ID")
+                : db.query("SELECT NAME FROM contact_table WHERE ID IN (SELECT docid FROM contact_fts WHERE contact_fts MATCH '"
+                        + match.replace("'", "''") + "') ORDER BY ID");
+        List<String> names = new ArrayList<>();
+        for (String[] row : rows) names.add(row[0]);
+        return names;
+    }
+
+    // Same query DatabaseHelper.fetchAlerts runs
+    private static String pageQuery(long beforeTime, long beforeId) {
+        return "SELECT ID FROM alerts WHERE TRIGGERED_AT <= " + beforeTime + " AND (TRIGGERED_AT < " + beforeTime +
+                " OR ID < " + beforeId + ") ORDER BY TRIGGERED_AT DESC, ID DESC LIMIT 30";
+    }
+
+    private void insertAlert(long triggeredAt) {
+        db.execSQL("INSERT INTO alerts (SESSION_ID, SOURCE, TRIGGERED_AT) VALUES (?, ?, ?)",
+                new Object[]{"session-" + triggeredAt, "Shake", triggeredAt});
+    }
+
+    private static List<String> ids(List<String[]> rows) {
+        List<String> ids = new ArrayList<>();
+        for (String[] row : rows) ids.add(row[0]);
+        return ids;
+    }
+
+    // Pairs of name, mobile
+    private void createV1(String... nameMobilePairs) {
+        db.execSQL("CREATE TABLE contact_table (ID INTEGER PRIMARY KEY AUTOINCREMENT, NAME TEXT, MOBILE TEXT)", null);
+        for (int i = 0; i < nameMobilePairs.length; i += 2) {
+            db.execSQL("INSERT INTO contact_table (NAME, MOBILE) VALUES (?, ?)",
+                    new Object[]{nameMobilePairs[i], nameMobilePairs[i + 1]});
+        }
+    }
+
+    private List<String[]> schema() {
+        return db.query("SELECT type, name, sql FROM sqlite_master WHERE name NOT LIKE 'sqlite_%' ORDER BY name");
+    }
+
+    private static void assertRow(String[] row, String id, String name, String mobile) {
+        assertEquals(id, row[0]);
+        assertEquals(name, row[1]);
+        assertEquals(mobile, row[2]);
+    }
+
+    private static String toString(List<String[]> rows) {
+        StringBuilder builder = new StringBuilder();
+        for (String[] row : rows) builder.append(Arrays.toString(row)).append('\n');
+        return builder.toString();
+    }
+
+    private void tearDownQuietly() {
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static Connection newConnection() {
+        try {
+            return DriverManager.getConnection("jdbc:sqlite::memory:");
+        } catch (SQLException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // Stands in for the SQLiteDatabase wrapper in DatabaseHelper
+    private static final class JdbcDatabase implements ContactMigrations.Database {
+        private final Connection connection;
+
+        JdbcDatabase(Connection connection) {
+            this.connection = connection;
+        }
+
+        @Override
+        public void execSQL(String sql, Object[] bindArgs) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                if (bindArgs != null) {
+                    for (int i = 0; i < bindArgs.length; i++) statement.setObject(i + 1, bindArgs[i]);
+                }
+                statement.execute();
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public List<String[]> query(String sql) {
+            List<String[]> rows = new ArrayList<>();
+            try (Statement statement = connection.createStatement(); ResultSet result = statement.executeQuery(sql)) {
+                int columns = result.getMetaData().getColumnCount();
+                while (result.next()) {
+                    String[] row = new String[columns];
+                    for (int i = 0; i < columns; i++) row[i] = result.getString(i + 1);
+                    rows.add(row);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException(e);
+            }
+            return rows;
+        }
+    }
+}
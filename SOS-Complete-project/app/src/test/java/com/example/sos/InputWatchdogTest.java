@@ -0,0 +1,98 @@
+package com.example.sos;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class InputWatchdogTest {
+
+    private static final long INTERVAL = 15000;
+    private static final long STALL = 10000;
+
+    private final List<String> events = new ArrayList<>();
+    private InputWatchdog watchdog;
+    private InputWatchdog.Heartbeat sensor;
+    private int restarts;
+
+    @Before
+    public void setUp() {
+        watchdog = new InputWatchdog(INTERVAL, new InputWatchdog.Listener() {
+            @Override
+            public void onStalled(String source, long silentMs) {
+                events.add("stalled " + source + " " + silentMs);
+            }
+
+            @Override
+            public void onRecovered(String source) {
+                events.add("recovered " + source);
+            }
+        });
+        sensor = watchdog.add("sensor", STALL, () -> restarts++);
+    }
+
+    @Test
+    public void beatingSourceIsLeftAlone() {
+        sensor.arm(0);
+        for (long t = 1000; t <= 60000; t += 1000) {
+            sensor.beat(t);
+            if (t % INTERVAL == 0) watchdog.check(t);
+        }
+        assertEquals(0, restarts);
+        assertEquals(0, watchdog.getStalls());
+    }
+
+    @Test
+    public void silentSourceIsRestartedAndCountsAsRecoveredOnceItBeatsAgain() {
+        sensor.arm(0);
+        sensor.beat(2000);
+        watchdog.check(15000);
+        assertEquals(1, restarts);
+        assertEquals("stalled sensor 13000", events.get(0));
+
+        sensor.beat(15400);
+        sensor.beat(29000);
+        watchdog.check(30000);
+        assertEquals(1, restarts);
+        assertEquals(1, watchdog.getStalls());
+        assertEquals(1, watchdog.getRecoveries());
+        assertEquals("recovered sensor", events.get(1));
+    }
+
+    @Test
+    public void sourceThatStaysDeadIsRetriedEveryStallPeriod() {
+        sensor.arm(0);
+        watchdog.check(15000);
+        watchdog.check(20000); // Restart still gets its grace period
+        watchdog.check(30000);
+        assertEquals(2, restarts);
+        assertEquals(0, watchdog.getRecoveries());
+    }
+
+    @Test
+    public void disarmedSourceMayBeSilent() {
+        sensor.arm(0);
+        sensor.disarm();
+        watchdog.check(15000);
+        watchdog.check(30000);
+        assertEquals(0, restarts);
+    }
+
+    @Test
+    public void sleepingCpuIsNotAStall() {
+        sensor.arm(0);
+        watchdog.check(15000);
+        sensor.beat(15100);
+        sensor.beat(29000);
+        watchdog.check(30000);
+        // Device slept for ten minutes: nothing was delivered, but nothing was broken either
+        watchdog.check(630000);
+        assertEquals(1, restarts);
+        // Still nothing a full period after waking up: that is a stall
+        watchdog.check(645000);
+        assertEquals(2, restarts);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.sos;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class PhoneNumberNormalizerTest {
+
+    @Test
+    public void nationalFormatsGetTheDefaultCountryCode() {
+        assertEquals("+919876543210", PhoneNumberNormalizer.normalize("98765 43210", "91"));
+        assertEquals("+919876543210", PhoneNumberNormalizer.normalize("098765-43210", "91"));
+        assertEquals("+15551234567", PhoneNumberNormalizer.normalize("(555) 123-4567", "1"));
+    }
+
+    @Test
+    public void internationalFormatsKeepTheirCountryCode() {
+        assertEquals("+919876543210", PhoneNumberNormalizer.normalize("+91 98765 43210", "44"));
+        assertEquals("+447700900123", PhoneNumberNormalizer.normalize("0044 7700 900123", "91"));
+        assertEquals("+919876543210", PhoneNumberNormalizer.normalize("919876543210", "91"));
+    }
+
+    @Test
+    public void isIdempotent() {
+        String once = PhoneNumberNormalizer.normalize("098765 43210", "91");
+        assertEquals(once, PhoneNumberNormalizer.normalize(once, "91"));
+        String digitsOnly = PhoneNumberNormalizer.normalize("98765 43210", null);
+        assertEquals(digitsOnly, PhoneNumberNormalizer.normalize(digitsOnly, null));
+    }
+
+    @Test
+    public void shortCodesAndUnknownRegionsKeepTheirDigits() {
+        assertEquals("112", PhoneNumberNormalizer.normalize("112", "91"));
+        assertEquals("9876543210", PhoneNumberNormalizer.normalize("98765 43210", null));
+    }
+
+    @Test
+    public void emptyInputHasNoNumber() {
+        assertNull(PhoneNumberNormalizer.normalize(null, "91"));
+        assertNull(PhoneNumberNormalizer.normalize("  - ", "91"));
+    }
+
+    @Test
+    public void regionLookupIgnoresCase() {
+        assertEquals("91", PhoneNumberNormalizer.callingCodeForRegion("in"));
+        assertNull(PhoneNumberNormalizer.callingCodeForRegion("zz"));
+        assertNull(PhoneNumberNormalizer.callingCodeForRegion(null));
+    }
+}
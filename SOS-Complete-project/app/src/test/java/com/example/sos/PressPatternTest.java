@@ -0,0 +1,71 @@
+package com.example.sos;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class PressPatternTest {
+
+    @Test
+    public void fivePressesWithinTheWindowMatch() {
+        PressPattern pattern = new PressPattern(5, 3000);
+        for (long t = 0; t < 2000; t += 500) assertFalse(pattern.press(t));
+        assertTrue(pattern.press(2000));
+        assertEquals(2000, pattern.getLastSpanMs());
+    }
+
+    @Test
+    public void slowPressesDoNotMatch() {
+        PressPattern pattern = new PressPattern(5, 3000);
+        for (long t = 0; t <= 8000; t += 1000) assertFalse(pattern.press(t));
+    }
+
+    @Test
+    public void windowSlidesOverOlderPresses() {
+        PressPattern pattern = new PressPattern(5, 3000);
+        assertFalse(pattern.press(0));
+        assertFalse(pattern.press(5000));
+        assertFalse(pattern.press(5400));
+        assertFalse(pattern.press(5800));
+        assertFalse(pattern.press(6200)); // Five presses, but the first is far too early
+        assertTrue(pattern.press(6600));
+    }
+
+    @Test
+    public void nextMatchNeedsAWholeNewSet() {
+        PressPattern pattern = new PressPattern(5, 3000);
+        for (long t = 0; t < 2000; t += 500) pattern.press(t);
+        assertTrue(pattern.press(2000));
+        for (long t = 2300; t < 3500; t += 300) assertFalse(pattern.press(t));
+        assertTrue(pattern.press(3500));
+    }
+
+    @Test
+    public void heldKeyRepeatsAreNotPresses() {
+        // A key held for 3 s: the first event, then auto-repeat every 50 ms after the usual 500 ms delay
+        PressPattern pattern = new PressPattern(5, 3000, 100);
+        assertFalse(pattern.press(0));
+        for (long t = 500; t <= 3000; t += 50) assertFalse(pattern.press(t));
+    }
+
+    @Test
+    public void fiftyMillisecondBurstCountsOnce() {
+        PressPattern pattern = new PressPattern(5, 3000, 100);
+        for (long t = 0; t <= 1000; t += 50) assertFalse(pattern.press(t));
+        // Four real presses after it: five in total, the burst being the first
+        assertFalse(pattern.press(1300));
+        assertFalse(pattern.press(1600));
+        assertFalse(pattern.press(1900));
+        assertTrue(pattern.press(2200));
+        assertEquals(2200, pattern.getLastSpanMs());
+    }
+
+    @Test
+    public void quickDeliberatePressesStillCount() {
+        PressPattern pattern = new PressPattern(5, 3000, 100);
+        for (long t = 0; t < 800; t += 200) assertFalse(pattern.press(t));
+        assertTrue(pattern.press(800));
+    }
+}
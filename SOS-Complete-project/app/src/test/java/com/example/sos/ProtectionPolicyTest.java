@@ -0,0 +1,58 @@
+package com.example.sos;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProtectionPolicyTest {
+
+    @Test
+    public void chargingAlwaysGetsTheMostEffort() {
+        assertEquals(ProtectionPolicy.Mode.CHARGING, ProtectionPolicy.select(3, true, true));
+    }
+
+    @Test
+    public void onBatteryNeverCostsMoreThanTheOldAlwaysOnService() {
+        // SENSOR_DELAY_NORMAL and no active location request until an alert
+        for (ProtectionPolicy.Mode mode : ProtectionPolicy.Mode.values()) {
+            if (mode == ProtectionPolicy.Mode.CHARGING) continue;
+            assertTrue(mode.name(), mode.sensorPeriodUs >= 200_000);
+            assertTrue(mode.name(), mode.warmLocationMs <= 0);
+        }
+    }
+
+    @Test
+    public void effortDropsWithTheBattery() {
+        assertEquals(ProtectionPolicy.Mode.FULL, ProtectionPolicy.select(80, false, false));
+        assertEquals(ProtectionPolicy.Mode.BALANCED, ProtectionPolicy.select(50, false, false));
+        assertEquals(ProtectionPolicy.Mode.SAVER, ProtectionPolicy.select(20, false, false));
+        assertEquals(ProtectionPolicy.Mode.LAST_RESORT, ProtectionPolicy.select(10, false, false));
+    }
+
+    @Test
+    public void batterySaverMeansSaverModeButNotLastResort() {
+        assertEquals(ProtectionPolicy.Mode.SAVER, ProtectionPolicy.select(90, false, true));
+        assertEquals(ProtectionPolicy.Mode.LAST_RESORT, ProtectionPolicy.select(5, false, true));
+    }
+
+    @Test
+    public void unknownBatteryLevelIsTreatedAsHealthy() {
+        assertEquals(ProtectionPolicy.Mode.FULL, ProtectionPolicy.select(-1, false, false));
+    }
+
+    @Test
+    public void lastResortKeepsOnlyTheShakeTrigger() {
+        assertFalse(ProtectionPolicy.Mode.LAST_RESORT.voiceEnabled());
+        assertFalse(ProtectionPolicy.listenForVoice(ProtectionPolicy.Mode.LAST_RESORT, false));
+        assertTrue(ProtectionPolicy.Mode.LAST_RESORT.warmLocationMs < 0);
+    }
+
+    @Test
+    public void saverSkipsVoiceWhileThePhoneIsInHand() {
+        assertFalse(ProtectionPolicy.listenForVoice(ProtectionPolicy.Mode.SAVER, true));
+        assertTrue(ProtectionPolicy.listenForVoice(ProtectionPolicy.Mode.SAVER, false));
+        assertTrue(ProtectionPolicy.listenForVoice(ProtectionPolicy.Mode.FULL, true));
+    }
+}
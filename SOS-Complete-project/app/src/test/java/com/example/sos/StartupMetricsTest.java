@@ -0,0 +1,28 @@
+package com.example.sos;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StartupMetricsTest {
+
+    @Test
+    public void marksAreTimedFromCreationInOrder() {
+        StartupMetrics metrics = new StartupMetrics(1000);
+        assertEquals(8, metrics.mark("notification", 1008));
+        assertEquals(15, metrics.mark("shake", 1015));
+        assertEquals(480, metrics.mark("voice", 1480));
+        assertEquals(15, metrics.get("shake"));
+        assertEquals(-1, metrics.get("contacts"));
+        assertEquals("notification 8 ms, shake 15 ms, voice 480 ms", metrics.summary());
+    }
+
+    @Test
+    public void rearmingLaterDoesNotCountAsStartup() {
+        StartupMetrics metrics = new StartupMetrics(0);
+        metrics.mark("shake", 20);
+        // The watchdog re-registers the accelerometer a minute later
+        assertEquals(-1, metrics.mark("shake", 60000));
+        assertEquals(20, metrics.get("shake"));
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.sos;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TriggerBusTest {
+
+    private final List<Runnable> pending = new ArrayList<>();
+    private final List<String> alerts = new ArrayList<>();
+    private long now = 0;
+    private boolean alertRunning = false; // What ServiceMine reports while an alert is already in progress
+    private TriggerBus bus;
+
+    @Before
+    public void setUp() {
+        // Drains only when the test says so, like a busy main thread
+        bus = new TriggerBus(pending::add, () -> now, alert -> !alertRunning && alerts.add(alert.describe()));
+    }
+
+    private void drain() {
+        List<Runnable> runs = new ArrayList<>(pending);
+        pending.clear();
+        for (Runnable run : runs) run.run();
+    }
+
+    @Test
+    public void burstFromOneGestureIsOneAlert() {
+        TriggerBus.Source shake = bus.register("Shake", new TriggerBus.Limits(2000, 2, 60000));
+        for (int i = 0; i < 30; i++) {
+            now += 20;
+            shake.fire();
+            drain();
+        }
+        assertEquals(1, alerts.size());
+        assertTrue(shake.stats().startsWith("Shake: 1 accepted, 29 debounced"));
+    }
+
+    @Test
+    public void sourcesFiringTogetherAreConsolidated() {
+        TriggerBus.Source shake = bus.register("Shake", new TriggerBus.Limits(2000, 2, 60000));
+        TriggerBus.Source voice = bus.register("Voice", new TriggerBus.Limits(3000, 3, 30000));
+        shake.fire();
+        now += 5;
+        voice.fire();
+        shake.fire(); // Same gesture, debounced
+        assertEquals(1, pending.size()); // One drain scheduled for all three
+        drain();
+        assertEquals(1, alerts.size());
+        assertEquals("Shake+Voice", alerts.get(0));
+    }
+
+    @Test
+    public void noisySourceRunsDryWithoutStarvingOthers() {
+        TriggerBus.Source shake = bus.register("Shake", new TriggerBus.Limits(2000, 2, 60000));
+        TriggerBus.Source voice = bus.register("Voice", new TriggerBus.Limits(3000, 3, 30000));
+        for (int i = 0; i < 5; i++) {
+            now += 5000; // Separate gestures, but far too many
+            shake.fire();
+            drain();
+        }
+        assertEquals(2, alerts.size());
+        assertTrue(shake.stats().endsWith("3 rate limited"));
+
+        now += 1000;
+        voice.fire();
+        drain();
+        assertEquals(3, alerts.size());
+        assertEquals("Voice", alerts.get(2));
+
+        // A minute later shake has a token again
+        now += 60000;
+        shake.fire();
+        drain();
+        assertEquals("Shake", alerts.get(3));
+    }
+
+    @Test
+    public void ignoredAlertsDoNotSpendTokens() {
+        TriggerBus.Source shake = bus.register("Shake", new TriggerBus.Limits(2000, 2, 60000));
+        shake.fire();
+        drain();
+        assertEquals(1, alerts.size());
+
+        // Shaking again during the recording is ignored by the service...
+        alertRunning = true;
+        now += 10000;
+        shake.fire();
+        drain();
+        alertRunning = false;
+
+        // ...so a real shake right after the alert still gets through
+        now += 31000;
+        shake.fire();
+        drain();
+        assertEquals(2, alerts.size());
+        now += 5000;
+        shake.fire();
+        drain();
+        assertEquals(2, alerts.size()); // Now the bucket is empty
+    }
+}